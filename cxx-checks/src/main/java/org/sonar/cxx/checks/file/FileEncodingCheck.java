@@ -22,9 +22,15 @@ package org.sonar.cxx.checks.file;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.cxx.squidbridge.annotations.ActivatedByDefault;
@@ -34,6 +40,9 @@ import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
 
 /**
  * FileEncodingCheck
+ *
+ * The file is decoded with a {@link CharsetDecoder} in REPORT mode using buffers which are reused for all files. The
+ * first malformed or unmappable input is reported at its line.
  */
 @Rule(
   key = "FileEncoding",
@@ -43,21 +52,94 @@ import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
 @NoSqale
 public class FileEncodingCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
 
+  private static final int BUFFER_SIZE = 8 * 1024;
+
   private Charset charset = StandardCharsets.UTF_8;
+  private CharsetDecoder decoder = null;
+  private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+  private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+  private int line;
+  private boolean lastWasCR;
 
   @Override
   public void setCharset(Charset charset) {
     this.charset = charset;
+    this.decoder = null;
   }
 
   @Override
   public void visitFile(AstNode astNode) {
+    int errorLine;
     try {
-      Files.readAllLines(getContext().getInputFile().file().toPath(), charset);
+      errorLine = findFirstErrorLine(getContext().getInputFile().file().toPath());
     } catch (IOException e) {
-      getContext().createFileViolation(this,
+      errorLine = -1; // file violation
+    }
+    if (errorLine != 0) {
+      getContext().createLineViolation(this,
                                        "Not all characters of the file can be encoded with the predefined charset "
-                                         + charset.name() + ".");
+                                         + charset.name() + ".", errorLine);
+    }
+  }
+
+  /**
+   * Decode the file and search the first malformed or unmappable input.
+   *
+   * @param path file to check
+   * @return line of the first error or 0 if the file can be decoded
+   * @throws IOException file cannot be read
+   */
+  private int findFirstErrorLine(Path path) throws IOException {
+    if (decoder == null) {
+      decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+    decoder.reset();
+    bytes.clear();
+    line = 1;
+    lastWasCR = false;
+
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var endOfInput = false;
+      while (true) {
+        if (!endOfInput && channel.read(bytes) < 0) {
+          endOfInput = true;
+        }
+        bytes.flip();
+        chars.clear();
+        var result = decoder.decode(bytes, chars, endOfInput);
+        countLines();
+        if (result.isError()) {
+          return line;
+        }
+        if (endOfInput && result.isUnderflow()) {
+          // all input decoded, flushing the decoder can't report errors
+          return 0;
+        }
+        bytes.compact();
+      }
+    }
+  }
+
+  /**
+   * Count the line breaks of the decoded characters (CR LF, LF, CR).
+   */
+  private void countLines() {
+    chars.flip();
+    while (chars.hasRemaining()) {
+      char c = chars.get();
+      if (c == '\n') {
+        if (!lastWasCR) {
+          line++;
+        }
+        lastWasCR = false;
+      } else if (c == '\r') {
+        line++;
+        lastWasCR = true;
+      } else {
+        lastWasCR = false;
+      }
     }
   }
 
@@ -56,9 +56,9 @@ public class TabCharacterCheck extends SquidCheck<Grammar> {
   @Override
   public void visitFile(AstNode astNode) {
     var nr = 0;
-    for (var line : getContext().getInputFileLines()) {
+    for (var line : getContext().getInputFileLineViews()) {
       ++nr;
-      if (line.contains("\t")) {
+      if (containsTab(line)) {
         if (createLineViolation) {
           getContext().createLineViolation(
             this,
@@ -73,4 +73,13 @@ public class TabCharacterCheck extends SquidCheck<Grammar> {
     }
   }
 
+  private static boolean containsTab(CharSequence line) {
+    for (var i = 0; i < line.length(); i++) {
+      if (line.charAt(i) == '\t') {
+        return true;
+      }
+    }
+    return false;
+  }
+
 }
@@ -30,6 +30,7 @@ class CommentContainsPatternChecker {
   private final String pattern;
   private final String message;
   private final Pattern p;
+  private int patternId;
 
   /**
    * CommentContainsPatternChecker
@@ -45,6 +46,13 @@ class CommentContainsPatternChecker {
     p = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
   }
 
+  /**
+   * init: add the pattern to the patterns of all checks
+   */
+  public void init() {
+    patternId = check.getContext().getRegexMatcher().add(p);
+  }
+
   /**
    * visitToken
    *
@@ -58,7 +66,8 @@ class CommentContainsPatternChecker {
       var triviaToken = trivia.getToken();
       String comment = triviaToken.getOriginalValue();
       int line = triviaToken.getLine();
-      if (indexOfIgnoreCase(comment) != -1) {
+      if (check.getContext().getRegexMatcher().mayFindInComment(patternId, comment)
+            && indexOfIgnoreCase(comment) != -1) {
         String[] lines = EOL_PATTERN.split(comment);
 
         for (var i = 0; i < lines.length; i++) {
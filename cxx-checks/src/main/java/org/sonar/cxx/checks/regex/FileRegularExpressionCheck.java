@@ -95,6 +95,8 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> {
     defaultValue = DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
   private Pattern pattern = null;
+  private int patternId;
+  private WildcardPattern filePattern = null;
 
   private static boolean compare(boolean invert, boolean condition) {
     return invert ? !condition : condition;
@@ -103,6 +105,10 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> {
   @Override
   public void init() {
     pattern = CheckUtils.compileUserRegexp(regularExpression);
+    patternId = getContext().getRegexMatcher().add(pattern);
+    if (!matchFilePattern.isEmpty()) {
+      filePattern = WildcardPattern.create(matchFilePattern);
+    }
   }
 
   @Override
@@ -111,17 +117,16 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> {
       return;
     }
 
-    String fileContent = getContext().getInputFileContent();
-    var matcher = pattern.matcher(fileContent);
+    boolean found = getContext().getRegexMatcher().mayFindInFile(patternId)
+                      && pattern.matcher(getContext().getInputFileContent()).find();
 
-    if (compare(invertRegularExpression, matcher.find())) {
+    if (compare(invertRegularExpression, found)) {
       getContext().createFileViolation(this, message);
     }
   }
 
   private boolean matchFile() {
-    if (!matchFilePattern.isEmpty()) {
-      var filePattern = WildcardPattern.create(matchFilePattern);
+    if (filePattern != null) {
       String path = PathUtils.sanitize(getContext().getInputFile().file().getPath());
       return path != null ? filePattern.match(path) : false;
     }
@@ -95,6 +95,8 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> {
     defaultValue = DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
   private Pattern pattern = null;
+  private int patternId;
+  private WildcardPattern filePattern = null;
 
   private static boolean compare(boolean invert, boolean condition) {
     return invert ? !condition : condition;
@@ -103,16 +105,22 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> {
   @Override
   public void init() {
     pattern = CheckUtils.compileUserRegexp(regularExpression);
+    patternId = getContext().getRegexMatcher().add(pattern);
+    if (!matchFilePattern.isEmpty()) {
+      filePattern = WildcardPattern.create(matchFilePattern);
+    }
   }
 
   @Override
   public void visitFile(AstNode fileNode) {
     if (compare(invertFilePattern, matchFile())) {
+      // the pattern can only find a match in the candidate lines
+      var candidates = getContext().getRegexMatcher().candidateLines(patternId);
       var nr = 0;
-      for (var line : getContext().getInputFileLines()) {
-        var matcher = pattern.matcher(line);
+      for (var line : getContext().getInputFileLineViews()) {
+        boolean found = candidates.get(nr) && pattern.matcher(line).find();
         ++nr;
-        if (compare(invertRegularExpression, matcher.find())) {
+        if (compare(invertRegularExpression, found)) {
           getContext().createLineViolation(this, message, nr);
         }
       }
@@ -120,8 +128,7 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> {
   }
 
   private boolean matchFile() {
-    if (!matchFilePattern.isEmpty()) {
-      var filePattern = WildcardPattern.create(matchFilePattern);
+    if (filePattern != null) {
       String path = PathUtils.sanitize(getContext().getInputFile().file().getPath());
       return path != null ? filePattern.match(path) : false;
     }
@@ -68,6 +68,8 @@ public class XPathCheck extends AbstractXPathCheck<Grammar> {
     defaultValue = DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
 
+  private WildcardPattern filePattern = null;
+
   private static boolean compare(boolean invert, boolean condition) {
     return invert ? !condition : condition;
   }
@@ -83,11 +85,18 @@ public class XPathCheck extends AbstractXPathCheck<Grammar> {
   }
 
   @Override
-  public void visitFile(AstNode fileNode) {
+  public void init() {
+    super.init();
     if (!matchFilePattern.isEmpty()) {
-      var pattern = WildcardPattern.create(matchFilePattern);
+      filePattern = WildcardPattern.create(matchFilePattern);
+    }
+  }
+
+  @Override
+  public void visitFile(AstNode fileNode) {
+    if (filePattern != null) {
       String path = PathUtils.sanitize(getContext().getInputFile().file().getPath());
-      if (!compare(invertFilePattern, pattern.match(path))) {
+      if (!compare(invertFilePattern, filePattern.match(path))) {
         return;
       }
     }
@@ -79,4 +79,17 @@ public class FileEncodingCheckTest {
       .noMore();
   }
 
+  @Test
+  @SuppressWarnings("squid:S2699") // ... verify contains the assertion
+  public void testLatin1FileUtf8Encoding() throws IOException {
+    Charset charset = StandardCharsets.UTF_8;
+    var squidConfig = new CxxSquidConfiguration("", charset);
+    var tester = CxxFileTesterHelper.create("src/test/resources/checks/FileEncodingLatin1.cc", ".", charset);
+    SourceFile file = CxxAstScanner.scanSingleInputFileConfig(tester.asInputFile(), squidConfig, check);
+    CheckMessagesVerifier.verify(file.getCheckMessages())
+      .next().atLine(3).withMessage("Not all characters of the file can be encoded with the predefined charset "
+                                      + charset.name() + ".")
+      .noMore();
+  }
+
 }
@@ -0,0 +1,4 @@
+int a;
+// comment
+// 
+int b;
@@ -35,6 +35,7 @@ import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.sensors.utils.InvalidReportException;
 import org.sonar.cxx.utils.CxxReportIssue;
@@ -65,6 +66,13 @@ public class CxxClangSASensor extends CxxIssuesReportSensor {
     ));
   }
 
+  public CxxClangSASensor() {
+  }
+
+  public CxxClangSASensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   private static NSObject require(@Nullable NSObject object, String errorMsg) {
     if (object == null) {
       throw new IllegalArgumentException(errorMsg);
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -37,6 +38,7 @@ public class ClangTidyParser {
   private static final Pattern PATTERN = Pattern.compile(REGEX);
 
   private final CxxClangTidySensor sensor;
+  private final Matcher matcher = PATTERN.matcher("");
   private Issue issue = null;
 
   public ClangTidyParser(CxxClangTidySensor sensor) {
@@ -49,7 +51,7 @@ public class ClangTidyParser {
 
       CxxReportIssue currentIssue = null;
       while (scanner.hasNextLine()) {
-        if (!parseLine(scanner.nextLine())) {
+        if (!parseLine(scanner.nextLineView())) {
           continue;
         }
         if ("note".equals(issue.level)) {
@@ -72,8 +74,8 @@ public class ClangTidyParser {
     }
   }
 
-  private boolean parseLine(String data) {
-    var matcher = PATTERN.matcher(data);
+  private boolean parseLine(CharSequence data) {
+    matcher.reset(data);
     issue = null;
     if (matcher.matches()) {
       issue = new Issue();
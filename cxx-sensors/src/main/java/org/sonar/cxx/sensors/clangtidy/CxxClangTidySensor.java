@@ -27,6 +27,7 @@ import java.util.List;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.sensors.utils.InvalidReportException;
 
@@ -64,6 +65,13 @@ public class CxxClangTidySensor extends CxxIssuesReportSensor {
     ));
   }
 
+  public CxxClangTidySensor() {
+  }
+
+  public CxxClangTidySensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   @Override
   public void describe(SensorDescriptor descriptor) {
     descriptor
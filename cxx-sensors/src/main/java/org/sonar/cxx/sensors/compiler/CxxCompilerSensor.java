@@ -20,17 +20,25 @@
 package org.sonar.cxx.sensors.compiler;
 
 import java.io.File;
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.sensors.utils.InvalidReportException;
 import org.sonar.cxx.sensors.utils.TextScanner;
+import org.sonar.cxx.squidbridge.checks.RegexPrefilter;
 import org.sonar.cxx.utils.CxxReportIssue;
 
 /**
@@ -39,7 +47,16 @@ import org.sonar.cxx.utils.CxxReportIssue;
 public abstract class CxxCompilerSensor extends CxxIssuesReportSensor {
 
   private static final Logger LOG = Loggers.get(CxxCompilerSensor.class);
-  private final Set<String> notExistingGroupName = new HashSet<>();
+  private static final int CHUNK_LINES = 4096;
+
+  private final Set<String> notExistingGroupName = ConcurrentHashMap.newKeySet();
+
+  protected CxxCompilerSensor() {
+  }
+
+  protected CxxCompilerSensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
 
   @Override
   protected void processReport(File report) {
@@ -59,30 +76,107 @@ public abstract class CxxCompilerSensor extends CxxIssuesReportSensor {
 
     try ( var scanner = new TextScanner(report, reportEncoding)) {
       var pattern = Pattern.compile(reportRegEx);
+      var prefilter = RegexPrefilter.of(pattern);
       LOG.debug("Processing '{}' report '{}', Encoding='{}', Pattern='{}'",
                 getCompilerKey(), report, scanner.encoding(), pattern);
 
-      while (scanner.hasNextLine()) {
-        var matcher = pattern.matcher(scanner.nextLine());
-        if (matcher.find()) {
-          String filename = alignFilename(getSubSequence(matcher, "file"));
-          String line = alignLine(getSubSequence(matcher, "line"));
-          String column = alignColumn(getSubSequence(matcher, "column"));
-          String id = alignId(getSubSequence(matcher, "id"));
-          String msg = alignMessage(getSubSequence(matcher, "message"));
-          if (isInputValid(filename, line, column, id, msg)) {
-            var issue = new CxxReportIssue(id, filename, line, column, msg);
-            saveUniqueViolation(issue);
-          } else {
-            LOG.debug("Invalid compiler warning: '{}''{}', skipping", id, msg);
+      int threads = isReportWorker() ? 1 : getReportThreads();
+      if (threads < 2) {
+        var matcher = pattern.matcher("");
+        while (scanner.hasNextLine()) {
+          var line = scanner.nextLineView();
+          // most lines of a build log (command lines, progress) don't contain the literals of the regex
+          if (prefilter.mayMatch(line) && matcher.reset(line).find()) {
+            saveMatch(getGroups(matcher));
           }
         }
+      } else {
+        processChunks(scanner, pattern, prefilter, threads);
       }
     } catch (java.io.IOException | java.lang.IllegalArgumentException | java.lang.IllegalStateException e) {
       throw new InvalidReportException("The compiler report is invalid", e);
     }
   }
 
+  /**
+   * Match the lines of the report in parallel.
+   *
+   * The candidate lines (accepted by the prefilter) are matched in chunks by worker threads. The calling thread saves
+   * the matches chunk by chunk in the order of the lines. At most two chunks per thread are pending.
+   */
+  private void processChunks(TextScanner scanner, Pattern pattern, RegexPrefilter prefilter, int threads) {
+    var executor = Executors.newFixedThreadPool(threads);
+    try {
+      var pending = new ArrayDeque<Future<List<String[]>>>();
+      var chunk = new ArrayList<String>(CHUNK_LINES);
+      while (scanner.hasNextLine()) {
+        var line = scanner.nextLineView();
+        if (prefilter.mayMatch(line)) {
+          chunk.add(line.toString());
+          if (chunk.size() == CHUNK_LINES) {
+            var lines = chunk;
+            pending.add(executor.submit(() -> matchLines(pattern, lines)));
+            chunk = new ArrayList<>(CHUNK_LINES);
+            if (pending.size() == 2 * threads) {
+              pending.poll().get().forEach(this::saveMatch);
+            }
+          }
+        }
+      }
+      var lines = chunk;
+      pending.add(executor.submit(() -> matchLines(pattern, lines)));
+      while (!pending.isEmpty()) {
+        pending.poll().get().forEach(this::saveMatch);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Processing of the report interrupted", e);
+    } catch (ExecutionException e) {
+      var cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<String[]> matchLines(Pattern pattern, List<String> lines) {
+    var matches = new ArrayList<String[]>();
+    var matcher = pattern.matcher("");
+    for (var line : lines) {
+      if (matcher.reset(line).find()) {
+        matches.add(getGroups(matcher));
+      }
+    }
+    return matches;
+  }
+
+  private String[] getGroups(Matcher matcher) {
+    return new String[]{
+      getSubSequence(matcher, "file"),
+      getSubSequence(matcher, "line"),
+      getSubSequence(matcher, "column"),
+      getSubSequence(matcher, "id"),
+      getSubSequence(matcher, "message")
+    };
+  }
+
+  private void saveMatch(String[] groups) {
+    String filename = alignFilename(groups[0]);
+    String line = alignLine(groups[1]);
+    String column = alignColumn(groups[2]);
+    String id = alignId(groups[3]);
+    String msg = alignMessage(groups[4]);
+    if (isInputValid(filename, line, column, id, msg)) {
+      var issue = new CxxReportIssue(id, filename, line, column, msg);
+      saveUniqueViolation(issue);
+    } else {
+      LOG.debug("Invalid compiler warning: '{}''{}', skipping", id, msg);
+    }
+  }
+
   /**
    * Unique string to identify the compiler
    *
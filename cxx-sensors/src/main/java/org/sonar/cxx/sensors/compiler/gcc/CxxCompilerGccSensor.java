@@ -29,6 +29,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.cxx.sensors.compiler.CxxCompilerSensor;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 
 public class CxxCompilerGccSensor extends CxxCompilerSensor {
 
@@ -83,6 +84,13 @@ public class CxxCompilerGccSensor extends CxxCompilerSensor {
     ));
   }
 
+  public CxxCompilerGccSensor() {
+  }
+
+  public CxxCompilerGccSensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   @Override
   public void describe(SensorDescriptor descriptor) {
     descriptor
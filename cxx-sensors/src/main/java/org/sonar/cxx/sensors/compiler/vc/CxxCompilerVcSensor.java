@@ -27,6 +27,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.cxx.sensors.compiler.CxxCompilerSensor;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 
 public class CxxCompilerVcSensor extends CxxCompilerSensor {
 
@@ -78,6 +79,13 @@ public class CxxCompilerVcSensor extends CxxCompilerSensor {
     ));
   }
 
+  public CxxCompilerVcSensor() {
+  }
+
+  public CxxCompilerVcSensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   @Override
   public void describe(SensorDescriptor descriptor) {
     descriptor
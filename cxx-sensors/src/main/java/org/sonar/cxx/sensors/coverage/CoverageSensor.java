@@ -27,6 +27,7 @@ import org.sonar.api.batch.sensor.coverage.NewCoverage;
 import org.sonar.api.utils.PathUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 import org.sonar.cxx.sensors.utils.CxxUtils;
 import org.sonar.cxx.sensors.utils.EmptyReportException;
@@ -43,6 +44,11 @@ public abstract class CoverageSensor extends CxxReportSensor {
   private final String reportPathsKey;
 
   protected CoverageSensor(String reportPathsKey, CoverageParser parser) {
+    this(reportPathsKey, parser, new CxxInputFileResolver());
+  }
+
+  protected CoverageSensor(String reportPathsKey, CoverageParser parser, CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
     this.reportPathsKey = reportPathsKey;
     this.parser = parser;
   }
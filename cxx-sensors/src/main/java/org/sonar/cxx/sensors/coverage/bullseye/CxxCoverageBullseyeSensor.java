@@ -26,6 +26,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.cxx.sensors.coverage.CoverageSensor;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 
 public class CxxCoverageBullseyeSensor extends CoverageSensor {
 
@@ -52,6 +53,10 @@ public class CxxCoverageBullseyeSensor extends CoverageSensor {
     super(REPORT_PATH_KEY, new BullseyeParser());
   }
 
+  public CxxCoverageBullseyeSensor(CxxInputFileResolver inputFileResolver) {
+    super(REPORT_PATH_KEY, new BullseyeParser(), inputFileResolver);
+  }
+
   @Override
   public void describe(SensorDescriptor descriptor) {
     descriptor
@@ -26,6 +26,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.cxx.sensors.coverage.CoverageSensor;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 
 public class CxxCoverageCoberturaSensor extends CoverageSensor {
 
@@ -51,6 +52,10 @@ public class CxxCoverageCoberturaSensor extends CoverageSensor {
     super(REPORT_PATH_KEY, new CoberturaParser());
   }
 
+  public CxxCoverageCoberturaSensor(CxxInputFileResolver inputFileResolver) {
+    super(REPORT_PATH_KEY, new CoberturaParser(), inputFileResolver);
+  }
+
   @Override
   public void describe(SensorDescriptor descriptor) {
     descriptor
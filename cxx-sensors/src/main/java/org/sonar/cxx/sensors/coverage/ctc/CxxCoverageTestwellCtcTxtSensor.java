@@ -27,6 +27,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.cxx.sensors.coverage.CoverageSensor;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 
 public class CxxCoverageTestwellCtcTxtSensor extends CoverageSensor {
 
@@ -66,6 +67,10 @@ public class CxxCoverageTestwellCtcTxtSensor extends CoverageSensor {
     super(REPORT_PATH_KEY, new TestwellCtcTxtParser());
   }
 
+  public CxxCoverageTestwellCtcTxtSensor(CxxInputFileResolver inputFileResolver) {
+    super(REPORT_PATH_KEY, new TestwellCtcTxtParser(), inputFileResolver);
+  }
+
   @Override
   public void describe(SensorDescriptor descriptor) {
     descriptor
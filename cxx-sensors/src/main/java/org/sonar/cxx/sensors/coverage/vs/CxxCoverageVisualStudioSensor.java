@@ -26,6 +26,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.cxx.sensors.coverage.CoverageSensor;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 
 public class CxxCoverageVisualStudioSensor extends CoverageSensor {
 
@@ -51,6 +52,10 @@ public class CxxCoverageVisualStudioSensor extends CoverageSensor {
     super(REPORT_PATH_KEY, new VisualStudioParser());
   }
 
+  public CxxCoverageVisualStudioSensor(CxxInputFileResolver inputFileResolver) {
+    super(REPORT_PATH_KEY, new VisualStudioParser(), inputFileResolver);
+  }
+
   @Override
   public void describe(SensorDescriptor descriptor) {
     descriptor
@@ -29,6 +29,7 @@ import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.sensors.utils.InvalidReportException;
 
@@ -59,6 +60,13 @@ public class CxxCppCheckSensor extends CxxIssuesReportSensor {
     ));
   }
 
+  public CxxCppCheckSensor() {
+  }
+
+  public CxxCppCheckSensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   @Override
   public void describe(SensorDescriptor descriptor) {
     descriptor
@@ -32,6 +32,7 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.sensors.drmemory.DrMemoryParser.DrMemoryError;
 import org.sonar.cxx.sensors.drmemory.DrMemoryParser.DrMemoryError.Location;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.utils.CxxReportIssue;
 
@@ -78,6 +79,13 @@ public class CxxDrMemorySensor extends CxxIssuesReportSensor {
     ));
   }
 
+  public CxxDrMemorySensor() {
+  }
+
+  public CxxDrMemorySensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   private static String getFrameText(Location frame, int frameNr) {
     var sb = new StringBuilder(512);
     sb.append("#").append(frameNr).append(" ").append(frame.getFile()).append(":").append(frame.getLine());
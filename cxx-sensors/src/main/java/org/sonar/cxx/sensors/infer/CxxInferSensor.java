@@ -26,6 +26,7 @@ import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 
 /**
@@ -52,6 +53,13 @@ public class CxxInferSensor extends CxxIssuesReportSensor {
       .build());
   }
 
+  public CxxInferSensor() {
+  }
+
+  public CxxInferSensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   @Override
   public void describe(SensorDescriptor descriptor) {
     descriptor
@@ -35,6 +35,7 @@ import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.sensors.utils.InvalidReportException;
 import org.sonar.cxx.utils.CxxReportIssue;
@@ -66,6 +67,13 @@ public class CxxRatsSensor extends CxxIssuesReportSensor {
     ));
   }
 
+  public CxxRatsSensor() {
+  }
+
+  public CxxRatsSensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   private static String getVulnerabilityType(@Nullable Element child) {
     if (child != null) {
       return child.getTextTrim();
@@ -0,0 +1,144 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import java.io.IOException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.scanner.ScannerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Resolution of the paths in reports to InputFiles, shared by all report sensors of an analysis.
+ *
+ * The result of each search (found or not found) is cached with the path from the report and with the normalized
+ * absolute path and the real path as aliases. A path is searched only once per analysis, no matter how many sensors
+ * or issues reference it.
+ */
+@ScannerSide
+public class CxxInputFileResolver {
+
+  private static final Logger LOG = Loggers.get(CxxInputFileResolver.class);
+
+  private final Map<String, Optional<InputFile>> cache = new ConcurrentHashMap<>();
+  private FileSystem fileSystem = null;
+
+  /**
+   * Get InputFile for path.
+   *
+   * @param context sensor context of the analysis
+   * @param path relative or absolute path
+   * @return InputFile if path is part of project, otherwise none
+   *
+   * @see CxxReportSensor#getInputFileIfInProject
+   */
+  @CheckForNull
+  public InputFile getInputFile(SensorContext context, String path) {
+    checkFileSystem(context.fileSystem());
+    var cached = cache.get(path);
+    if (cached != null) {
+      return cached.orElse(null);
+    }
+
+    // the normalized absolute path is the same for all spellings of a path (relative, with ./ and ../ steps)
+    var absPath = absolutePath(context.fileSystem(), path);
+    if (absPath != null) {
+      cached = cache.get(absPath.toString());
+      if (cached != null) {
+        cache.put(path, cached);
+        return cached.orElse(null);
+      }
+    }
+
+    // try the most generic search predicate first; usually it's the right one
+    var inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().hasPath(path));
+
+    // if there was nothing found, try to normalize the path: resolve symbolic links, make path case-sensitive
+    if (inputFile == null && absPath != null) {
+      inputFile = getInputFileTryRealPath(context.fileSystem(), absPath);
+    }
+
+    if (inputFile == null) {
+      LOG.warn("Cannot find the file '{}' in project '{}' with baseDir '{}', skipping",
+               path, context.project().key(), context.fileSystem().baseDir());
+    }
+
+    var result = Optional.ofNullable(inputFile);
+    cache.put(path, result);
+    if (absPath != null) {
+      cache.put(absPath.toString(), result);
+    }
+    return inputFile;
+  }
+
+  /**
+   * The cache is only valid for one analysis (file system).
+   */
+  private synchronized void checkFileSystem(FileSystem current) {
+    if (fileSystem != current) {
+      cache.clear();
+      fileSystem = current;
+    }
+  }
+
+  @CheckForNull
+  private static Path absolutePath(FileSystem fileSystem, String path) {
+    try {
+      return fileSystem.baseDir().toPath().resolve(path).normalize();
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Resolution of symbolic links and case-sensitive paths.
+   */
+  @CheckForNull
+  private InputFile getInputFileTryRealPath(FileSystem fileSystem, Path absPath) {
+    try {
+      // resolve symbolic links
+      var realPath = absPath.toRealPath(LinkOption.NOFOLLOW_LINKS).toString();
+
+      // if the real path is equal to the given one - skip search: we already tried such path
+      // IMPORTANT: SQ works with string paths, so the equality of strings is important
+      if (!absPath.toString().equals(realPath)) {
+        var cached = cache.get(realPath);
+        if (cached != null) {
+          return cached.orElse(null);
+        }
+        var inputFile = fileSystem.inputFile(fileSystem.predicates().hasAbsolutePath(realPath));
+        cache.put(realPath, Optional.ofNullable(inputFile));
+        return inputFile;
+      }
+    } catch (IOException | RuntimeException e) {
+      // ...
+    }
+    return null;
+  }
+
+}
@@ -20,11 +20,14 @@
 package org.sonar.cxx.sensors.utils;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.TextRange;
 import org.sonar.api.batch.sensor.issue.NewIssue;
@@ -41,25 +44,122 @@ import org.sonar.cxx.utils.CxxReportLocation;
  */
 public abstract class CxxIssuesReportSensor extends CxxReportSensor {
 
+  public static final String REPORT_THREADS_KEY = "sonar.cxx.reports.threads";
+
   private static final Logger LOG = Loggers.get(CxxIssuesReportSensor.class);
 
-  private final Set<CxxReportIssue> uniqueIssues = new HashSet<>();
+  private final IssueFingerprintSet uniqueIssues = new IssueFingerprintSet();
   private int savedNewIssues = 0;
 
+  // parallel mode: issues of the report parsed by the current worker thread
+  private final ThreadLocal<List<CxxReportIssue>> parsedIssues = new ThreadLocal<>();
+
   /**
    * {@inheritDoc}
    */
   protected CxxIssuesReportSensor() {
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  protected CxxIssuesReportSensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public void executeImpl() {
     List<File> reports = getReports(getReportPathsKey());
-    for (var report : reports) {
-      executeReport(report);
+    int threads = Math.min(getReportThreads(), reports.size());
+    if (threads < 2) {
+      for (var report : reports) {
+        executeReport(report);
+      }
+    } else {
+      executeReports(reports, threads);
+    }
+  }
+
+  /**
+   * @return number of threads to read the reports, see {@link #REPORT_THREADS_KEY}
+   */
+  protected int getReportThreads() {
+    int threads = context.config().getInt(REPORT_THREADS_KEY).orElse(1);
+    return threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+  }
+
+  /**
+   * @return true if the current thread is a worker thread reading one of the reports in parallel
+   */
+  protected boolean isReportWorker() {
+    return parsedIssues.get() != null;
+  }
+
+  /**
+   * Parse the reports in parallel.
+   *
+   * The reports are parsed by a fixed number of worker threads, the issues of a report are collected instead of
+   * saved. The calling thread is the only writer: it saves the issues report by report in the order of the reports,
+   * so the deduplication and the saving of the issues are the same as in sequential mode. At most two reports per
+   * thread are parsed ahead of the writer.
+   *
+   * @param reports reports to read
+   * @param threads number of worker threads
+   */
+  private void executeReports(List<File> reports, int threads) {
+    LOG.info("Processing {} reports with {} threads", reports.size(), threads);
+    var executor = Executors.newFixedThreadPool(threads);
+    try {
+      var pending = new ArrayDeque<Future<ParsedReport>>();
+      var next = 0;
+      while (next < reports.size() || !pending.isEmpty()) {
+        while (next < reports.size() && pending.size() < 2 * threads) {
+          var report = reports.get(next++);
+          pending.add(executor.submit(() -> parseReport(report)));
+        }
+        saveReport(pending.poll().get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Processing of the reports interrupted", e);
+    } catch (ExecutionException e) {
+      var cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private ParsedReport parseReport(File report) {
+    var issues = new ArrayList<CxxReportIssue>();
+    parsedIssues.set(issues);
+    try {
+      processReport(report);
+      return new ParsedReport(report, issues, null);
+    } catch (ReportException e) {
+      return new ParsedReport(report, issues, e);
+    } finally {
+      parsedIssues.remove();
+    }
+  }
+
+  private void saveReport(ParsedReport parsed) {
+    LOG.info("Processing report '{}'", parsed.report);
+    savedNewIssues = 0;
+    for (var issue : parsed.issues) {
+      saveUniqueViolation(issue);
+    }
+    if (parsed.exception == null) {
+      LOG.info("Processing successful, saved new issues={}", savedNewIssues);
+    } else {
+      var msg = parsed.exception.getMessage() + ", report='" + parsed.report + "'";
+      CxxUtils.validateRecovery(msg, parsed.exception, context.config());
     }
   }
 
@@ -79,9 +179,16 @@ public abstract class CxxIssuesReportSensor extends CxxReportSensor {
    * given project and context. Project or file-level violations can be saved by passing null for the according
    * parameters ('file' = null for project level, 'line' = null for file-level)
    *
+   * In parallel mode the issue is only collected when called by a worker thread, it is saved later by the writer.
+   *
    * @param issue
    */
   public void saveUniqueViolation(CxxReportIssue issue) {
+    var issues = parsedIssues.get();
+    if (issues != null) {
+      issues.add(issue);
+      return;
+    }
     if (uniqueIssues.add(issue)) {
       try {
         saveIssue(issue.getRuleId(), issue);
@@ -199,9 +306,32 @@ public abstract class CxxIssuesReportSensor extends CxxReportSensor {
     }
   }
 
+  /**
+   * Read a report and save the issues with {@link #saveUniqueViolation}.
+   *
+   * With {@link #REPORT_THREADS_KEY} greater than one, reports are read in parallel: implementations must not modify
+   * shared state other than with {@link #saveUniqueViolation}.
+   *
+   * @param report report to read
+   */
   protected abstract void processReport(File report);
 
   protected abstract String getReportPathsKey();
 
   protected abstract String getRuleRepositoryKey();
+
+  private static final class ParsedReport {
+
+    private final File report;
+    private final List<CxxReportIssue> issues;
+    private final ReportException exception;
+
+    private ParsedReport(File report, List<CxxReportIssue> issues, @Nullable ReportException exception) {
+      this.report = report;
+      this.issues = issues;
+      this.exception = exception;
+    }
+
+  }
+
 }
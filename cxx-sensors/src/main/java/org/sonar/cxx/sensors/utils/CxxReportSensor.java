@@ -20,17 +20,11 @@
 package org.sonar.cxx.sensors.utils;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.LinkOption;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.scanner.sensor.ProjectSensor;
-import org.sonar.api.utils.log.Logger;
-import org.sonar.api.utils.log.Loggers;
 
 /**
  * This class is used as base for all sensors which import reports. It hosts common logic such as finding the reports.
@@ -38,9 +32,8 @@ import org.sonar.api.utils.log.Loggers;
 public abstract class CxxReportSensor implements ProjectSensor {
 
   public static final String ERROR_RECOVERY_KEY = "sonar.cxx.errorRecoveryEnabled";
-  private static final Logger LOG = Loggers.get(CxxReportSensor.class);
 
-  private final Set<String> notFoundFiles = new HashSet<>();
+  private final CxxInputFileResolver inputFileResolver;
 
   protected SensorContext context;
 
@@ -48,6 +41,14 @@ public abstract class CxxReportSensor implements ProjectSensor {
    * {@inheritDoc}
    */
   protected CxxReportSensor() {
+    this(new CxxInputFileResolver());
+  }
+
+  /**
+   * @param inputFileResolver resolution of the paths in reports, shared by all sensors of an analysis
+   */
+  protected CxxReportSensor(CxxInputFileResolver inputFileResolver) {
+    this.inputFileResolver = inputFileResolver;
   }
 
   public List<File> getReports(String reportPathsKey) {
@@ -68,33 +69,12 @@ public abstract class CxxReportSensor implements ProjectSensor {
    */
   @CheckForNull
   public InputFile getInputFileIfInProject(String path) {
-    InputFile inputFile = null;
-
-    // in case previous search failed don't search again
-    if (!notFoundFiles.contains(path)) {
-
-      // try the most generic search predicate first; usually it's the right one
-      inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().hasPath(path));
-
-      // if there was nothing found, try to normalize the path: resolve symbolic links, make path case-sensitive
-      if (inputFile == null) {
-        inputFile = getInputFileTryRealPath(path);
-
-        if (inputFile == null) {
-          LOG.warn("Cannot find the file '{}' in project '{}' with baseDir '{}', skipping",
-                   path, context.project().key(), context.fileSystem().baseDir());
-          notFoundFiles.add(path);
-        }
-      }
-    }
-
-    return inputFile;
+    return inputFileResolver.getInputFile(context, path);
   }
 
   @Override
   public void execute(SensorContext context) {
     this.context = context;
-    notFoundFiles.clear();
     executeImpl();
   }
 
@@ -103,35 +83,6 @@ public abstract class CxxReportSensor implements ProjectSensor {
     return getClass().getSimpleName();
   }
 
-  /**
-   * Get InputFile for path.
-   *
-   * Resolution of symbolic links and case-sensitive paths.
-   *
-   * @param path relative or absolute path
-   * @return InputFile if path is part of project, otherwise none
-   */
-  @CheckForNull
-  private InputFile getInputFileTryRealPath(String path) {
-
-    // create absolute path (relative to baseDir)
-    var absPath = context.fileSystem().baseDir().toPath().resolve(path);
-    try {
-      // resolve symbolic links
-      var realPath = absPath.toRealPath(LinkOption.NOFOLLOW_LINKS);
-
-      // if the real path is equal to the given one - skip search: we already tried such path
-      // IMPORTANT: SQ works with string paths, so the equality of strings is important
-      if (!absPath.toString().equals(realPath.toString())) {
-        return context.fileSystem().inputFile(
-          context.fileSystem().predicates().hasAbsolutePath(realPath.toString()));
-      }
-    } catch (IOException | RuntimeException e) {
-      // ...
-    }
-    return null;
-  }
-
   /**
    * override always executeImpl instead of execute
    */
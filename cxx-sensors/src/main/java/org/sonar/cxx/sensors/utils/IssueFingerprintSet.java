@@ -0,0 +1,168 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import java.util.List;
+import javax.annotation.Nullable;
+import org.sonar.cxx.utils.CxxReportIssue;
+import org.sonar.cxx.utils.CxxReportLocation;
+
+/**
+ * Set of the issues already saved by a sensor.
+ *
+ * Instead of the issues (with messages and locations) only a 128-bit fingerprint of each issue is stored, in an open
+ * addressing hash table of longs (16 bytes per issue plus free slots). Two issues have the same fingerprint if they
+ * are equal, see {@link CxxReportIssue#equals}. Different issues have the same fingerprint only with a negligible
+ * probability.
+ */
+final class IssueFingerprintSet {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  // hi, lo of each slot; an empty slot is 0, 0
+  private long[] table = new long[2 * INITIAL_CAPACITY];
+  private int size = 0;
+
+  /**
+   * Add the fingerprint of an issue.
+   *
+   * @param issue issue to add
+   * @return true if the set did not already contain the issue
+   */
+  boolean add(CxxReportIssue issue) {
+    var hash = new Hash();
+    hash.add(issue.getRuleId());
+    hash.add(issue.getAliasRuleIds().size());
+    for (var aliasRuleId : issue.getAliasRuleIds()) {
+      hash.add(aliasRuleId);
+    }
+    hash.add(issue.getLocations());
+    hash.add(issue.getFlow());
+    return add(hash.hi(), hash.lo());
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean add(long hi, long lo) {
+    if (hi == 0 && lo == 0) {
+      lo = 1;
+    }
+    int capacity = table.length / 2;
+    if (size + 1 > capacity - capacity / 4) {
+      resize();
+    }
+    if (insert(table, hi, lo)) {
+      size++;
+      return true;
+    }
+    return false;
+  }
+
+  private void resize() {
+    var newTable = new long[table.length * 2];
+    for (var i = 0; i < table.length; i += 2) {
+      if (table[i] != 0 || table[i + 1] != 0) {
+        insert(newTable, table[i], table[i + 1]);
+      }
+    }
+    table = newTable;
+  }
+
+  private static boolean insert(long[] table, long hi, long lo) {
+    int mask = table.length / 2 - 1;
+    int slot = (int) (lo ^ (lo >>> 32)) & mask;
+    while (true) {
+      int i = 2 * slot;
+      if (table[i] == 0 && table[i + 1] == 0) {
+        table[i] = hi;
+        table[i + 1] = lo;
+        return true;
+      }
+      if (table[i] == hi && table[i + 1] == lo) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /**
+   * 128-bit hash of a sequence of values, two independent 64-bit hashes (FNV-1a and a multiply-rotate hash).
+   */
+  private static final class Hash {
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long PRIME_1 = 0x9e3779b97f4a7c15L;
+    private static final long PRIME_2 = 0xc2b2ae3d27d4eb4fL;
+
+    private long h1 = 0xcbf29ce484222325L;
+    private long h2 = 0x27d4eb2f165667c5L;
+    private long length = 0;
+
+    private void add(long value) {
+      h1 = (h1 ^ value) * FNV_PRIME;
+      h2 = Long.rotateLeft(h2 + value * PRIME_1, 31) * PRIME_2;
+      length++;
+    }
+
+    private void add(@Nullable String value) {
+      if (value == null) {
+        add(-1L);
+      } else {
+        var chars = value.length();
+        for (var i = 0; i < chars; i++) {
+          add(value.charAt(i));
+        }
+        // separator: the length distinguishes "ab", "c" from "a", "bc"
+        add(-2L - chars);
+      }
+    }
+
+    private void add(List<CxxReportLocation> locations) {
+      add(locations.size());
+      for (var location : locations) {
+        add(location.getFile());
+        add(location.getLine());
+        add(location.getColumn());
+        add(location.getInfo());
+      }
+    }
+
+    private long hi() {
+      return mix(h1 ^ length);
+    }
+
+    private long lo() {
+      return mix(h2 + h1);
+    }
+
+    private static long mix(long h) {
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+    }
+
+  }
+
+}
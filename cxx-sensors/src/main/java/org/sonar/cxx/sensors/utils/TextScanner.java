@@ -24,16 +24,39 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.regex.Pattern;
 import org.apache.commons.io.ByteOrderMark;
 import org.apache.commons.io.input.BOMInputStream;
 
+/**
+ * Reader of text reports.
+ *
+ * The lines are read with an own line reader: the characters are decoded into a large buffer and the line separators
+ * are searched directly in the buffer. {@link #nextLineView()} returns the line as view on the buffer, without
+ * creating a String. The token methods ({@link #useDelimiter}, {@link #next}) use a {@link java.util.Scanner}; they
+ * cannot be mixed with the line methods.
+ */
 public class TextScanner implements Closeable {
 
-  private final Scanner scanner;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Reader reader;
   private final String encoding;
+  private Scanner scanner = null;
+
+  private char[] buffer = new char[BUFFER_SIZE];
+  private int position = 0;
+  private int limit = 0;
+  private boolean eof = false;
+  private boolean linesRead = false;
+  private final LineView line = new LineView();
 
   /**
    * Constructs a new {@code Scanner} that produces values scanned from the specified file.
@@ -58,8 +81,8 @@ public class TextScanner implements Closeable {
                                           ByteOrderMark.UTF_32BE);
       ByteOrderMark bom = bomInputStream.getBOM();
       encoding = (bom != null) ? bom.getCharsetName() : defaultEncoding;
-      scanner = new Scanner(bomInputStream, encoding);
-    } catch (IOException e) {
+      reader = new InputStreamReader(bomInputStream, Charset.forName(encoding));
+    } catch (IOException | RuntimeException e) {
       if (bomInputStream != null) {
         bomInputStream.close();
       }
@@ -68,21 +91,22 @@ public class TextScanner implements Closeable {
   }
 
   /**
-   * Closes this scanner.
+   * Closes this scanner and the underlying file.
    *
-   * <p>
-   * If this scanner has not yet been closed then if its underlying {@linkplain java.lang.Readable readable} also
-   * implements the {@link java.io.Closeable} interface then the readable's {@code close} method will be invoked.
    * If this scanner is already closed then invoking this method will have no effect.
-   *
-   * <p>
-   * Attempting to perform search operations after a scanner has been closed will result
-   * in an {@link IllegalStateException}.
-   *
    */
   @Override
   public void close() {
-    scanner.close();
+    if (scanner != null) {
+      scanner.close();
+    } else {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        // nothing to do, the file was only read
+      }
+    }
+    buffer = null;
   }
 
   /**
@@ -90,9 +114,10 @@ public class TextScanner implements Closeable {
    *
    * @param pattern A delimiting pattern
    * @return this scanner
+   * @throws IllegalStateException if lines were already read
    */
   public TextScanner useDelimiter(Pattern pattern) {
-    scanner.useDelimiter(pattern);
+    tokenScanner().useDelimiter(pattern);
     return this;
   }
 
@@ -103,9 +128,11 @@ public class TextScanner implements Closeable {
    *
    * @return true if and only if this scanner has another line of input
    * @throws IllegalStateException if this scanner is closed
+   * @throws UncheckedIOException if the file cannot be read
    */
   public boolean hasNextLine() {
-    return scanner.hasNextLine();
+    checkLineMode();
+    return position < limit || fill();
   }
 
   /**
@@ -116,11 +143,11 @@ public class TextScanner implements Closeable {
    *
    * @return the next token
    * @throws NoSuchElementException if no more tokens are available
-   * @throws IllegalStateException if this scanner is closed
+   * @throws IllegalStateException if this scanner is closed or lines were already read
    * @see java.util.Iterator
    */
   public String next() {
-    return scanner.next();
+    return tokenScanner().next();
   }
 
   /**
@@ -129,16 +156,56 @@ public class TextScanner implements Closeable {
    * This method returns the rest of the current line, excluding any line separator at the end. The position is
    * set to the beginning of the next line.
    *
-   * <p>
-   * Since this method continues to search through the input looking for a line separator, it may buffer all
-   * of the input searching for the line to skip if no line separators are present.
-   *
    * @return the line that was skipped
    * @throws NoSuchElementException if no line was found
    * @throws IllegalStateException if this scanner is closed
+   * @throws UncheckedIOException if the file cannot be read
    */
   public String nextLine() {
-    return scanner.nextLine();
+    return nextLineView().toString();
+  }
+
+  /**
+   * Same as {@link #nextLine()}, but returns the line as view on the buffer of the scanner instead of a String.
+   *
+   * The view is only valid until the next call of a method of this scanner; e.g. it can be passed to
+   * {@link java.util.regex.Matcher#reset(CharSequence)} and the groups of the matcher are read before the next line.
+   *
+   * @return the line that was skipped
+   * @throws NoSuchElementException if no line was found
+   * @throws IllegalStateException if this scanner is closed
+   * @throws UncheckedIOException if the file cannot be read
+   */
+  public CharSequence nextLineView() {
+    if (!hasNextLine()) {
+      throw new NoSuchElementException("No line found");
+    }
+    var scanned = position;
+    while (true) {
+      // same line separators as java.util.Scanner: \r\n, \n, \r, \u0085, \u2028, \u2029
+      for (var i = scanned; i < limit; i++) {
+        char c = buffer[i];
+        if ((c <= '\r' && (c == '\n' || c == '\r')) || (c >= '\u0085' && isLineSeparator(c))) {
+          if (c == '\r' && i + 1 == limit && !eof) {
+            // \r\n can be split by the end of the buffer: read the next character first
+            break;
+          }
+          line.set(position, i - position);
+          position = (c == '\r' && i + 1 < limit && buffer[i + 1] == '\n') ? i + 2 : i + 1;
+          return line;
+        }
+        scanned = i + 1;
+      }
+      var consumed = position;
+      var filled = fill();
+      scanned -= consumed - position;
+      if (!filled && scanned == limit) {
+        // last line without line separator
+        line.set(position, limit - position);
+        position = limit;
+        return line;
+      }
+    }
   }
 
   /**
@@ -148,4 +215,107 @@ public class TextScanner implements Closeable {
     return encoding;
   }
 
+  private static boolean isLineSeparator(char c) {
+    return c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * Reads more characters into the buffer. The unread characters are moved to the start of the buffer, the buffer
+   * is enlarged if there are no free characters.
+   *
+   * @return false if no more characters can be read (end of file)
+   */
+  private boolean fill() {
+    checkLineMode();
+    if (eof) {
+      return false;
+    }
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      position = 0;
+    }
+    if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    try {
+      int read;
+      do {
+        read = reader.read(buffer, limit, buffer.length - limit);
+      } while (read == 0);
+      if (read < 0) {
+        eof = true;
+        return false;
+      }
+      limit += read;
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void checkLineMode() {
+    if (buffer == null) {
+      throw new IllegalStateException("Scanner closed");
+    }
+    if (scanner != null) {
+      throw new IllegalStateException("Scanner is used to read tokens");
+    }
+    linesRead = true;
+  }
+
+  private Scanner tokenScanner() {
+    if (scanner == null) {
+      if (buffer == null) {
+        throw new IllegalStateException("Scanner closed");
+      }
+      if (linesRead) {
+        throw new IllegalStateException("Scanner is used to read lines");
+      }
+      scanner = new Scanner(reader);
+    }
+    return scanner;
+  }
+
+  /**
+   * Current line: part of the buffer of the scanner.
+   */
+  private final class LineView implements CharSequence {
+
+    private int start;
+    private int length;
+
+    private void set(int start, int length) {
+      this.start = start;
+      this.length = length;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException(index);
+      }
+      return buffer[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      if (from < 0 || from > to || to > length) {
+        throw new IndexOutOfBoundsException();
+      }
+      return new String(buffer, start + from, to - from);
+    }
+
+    @Override
+    public String toString() {
+      return new String(buffer, start, length);
+    }
+
+  }
+
 }
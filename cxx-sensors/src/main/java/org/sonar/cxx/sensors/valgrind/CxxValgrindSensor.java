@@ -31,6 +31,7 @@ import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.sensors.utils.CxxInputFileResolver;
 import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.sensors.utils.InvalidReportException;
 import org.sonar.cxx.utils.CxxReportIssue;
@@ -61,6 +62,13 @@ public class CxxValgrindSensor extends CxxIssuesReportSensor {
     ));
   }
 
+  public CxxValgrindSensor() {
+  }
+
+  public CxxValgrindSensor(CxxInputFileResolver inputFileResolver) {
+    super(inputFileResolver);
+  }
+
   private static String createErrorMsg(ValgrindError error, ValgrindStack stack, int stackNr) {
     var errorMsg = new StringBuilder(512);
     errorMsg.append(error.getText());
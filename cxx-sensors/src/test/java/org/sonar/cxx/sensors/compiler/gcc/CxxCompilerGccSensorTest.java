@@ -30,6 +30,7 @@ import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
 import org.sonar.api.batch.sensor.issue.Issue;
 import org.sonar.api.config.internal.MapSettings;
+import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.sensors.utils.TestUtils;
 
 public class CxxCompilerGccSensorTest {
@@ -70,6 +71,22 @@ public class CxxCompilerGccSensorTest {
     assertThat(context.allIssues()).hasSize(4);
   }
 
+  @Test
+  public void shouldReportCorrectGccViolationsWithThreads() {
+    var context = SensorContextTester.create(fs.baseDir());
+    settings.setProperty(CxxCompilerGccSensor.REPORT_PATH_KEY, "compiler-reports/build.gcclog");
+    settings.setProperty(CxxIssuesReportSensor.REPORT_THREADS_KEY, 4);
+    context.setSettings(settings);
+
+    context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", "src/zipmanager.cpp")
+      .setLanguage("cxx").initMetadata("asd\nasdas\nasda\n").build());
+
+    var sensor = new CxxCompilerGccSensor();
+    sensor.execute(context);
+
+    assertThat(context.allIssues()).hasSize(4);
+  }
+
   @Test
   public void shouldReportCorrectGccViolationsWithOrWithoutIds() {
     var context = SensorContextTester.create(fs.baseDir());
@@ -28,6 +28,7 @@ import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
 import org.sonar.api.config.internal.MapSettings;
+import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 import org.sonar.cxx.sensors.utils.TestUtils;
 
@@ -59,6 +60,24 @@ public class CxxCppCheckSensorTest {
     assertThat(context.allIssues()).hasSize(7);
   }
 
+  @Test
+  public void shouldReportCorrectViolationsInParallel() {
+    var context = SensorContextTester.create(fs.baseDir());
+    settings.setProperty(CxxCppCheckSensor.REPORT_PATH_KEY, "cppcheck-reports/cppcheck-result-*.xml");
+    settings.setProperty(CxxIssuesReportSensor.REPORT_THREADS_KEY, 2);
+    context.setSettings(settings);
+
+    context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", "sources/utils/code_chunks.cpp")
+      .setLanguage("cxx").initMetadata("asd\nasdas\nasda\n").build());
+    context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", "sources/utils/utils.cpp")
+      .setLanguage("cxx").initMetadata("asd\nasdas\nasda\n").build());
+
+    var sensor = new CxxCppCheckSensor();
+    sensor.execute(context);
+
+    assertThat(context.allIssues()).hasSize(7);
+  }
+
   @Test
   public void shouldReportProjectLevelViolationsV2() {
     var context = SensorContextTester.create(fs.baseDir());
@@ -115,6 +134,18 @@ public class CxxCppCheckSensorTest {
     sensor.execute(context);
   }
 
+  @Test(expected = IllegalStateException.class)
+  public void shouldThrowExceptionWhenRecoveryIsDisabledInParallel() {
+    var context = SensorContextTester.create(fs.baseDir());
+    settings.setProperty(CxxReportSensor.ERROR_RECOVERY_KEY, false);
+    settings.setProperty(CxxCppCheckSensor.REPORT_PATH_KEY, "cppcheck-reports/cppcheck-result-*.xml");
+    settings.setProperty(CxxIssuesReportSensor.REPORT_THREADS_KEY, 2);
+    context.setSettings(settings);
+
+    var sensor = new CxxCppCheckSensor();
+    sensor.execute(context);
+  }
+
   @Test
   public void sensorDescriptor() {
     var descriptor = new DefaultSensorDescriptor();
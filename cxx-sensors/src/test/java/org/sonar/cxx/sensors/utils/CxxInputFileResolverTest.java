@@ -0,0 +1,85 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+
+public class CxxInputFileResolverTest {
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private DefaultFileSystem fs;
+
+  @Before
+  public void setUp() {
+    fs = TestUtils.mockFileSystem();
+  }
+
+  @Test
+  public void shouldFindFileWithDifferentSpellings() {
+    var context = SensorContextTester.create(fs.baseDir());
+    var inputFile = TestInputFileBuilder.create("ProjectKey", "sources/utils/code_chunks.cpp")
+      .setModuleBaseDir(fs.baseDir().toPath()).setLanguage("cxx").build();
+    context.fileSystem().add(inputFile);
+
+    var resolver = new CxxInputFileResolver();
+    assertThat(resolver.getInputFile(context, "sources/utils/code_chunks.cpp")).isSameAs(inputFile);
+    assertThat(resolver.getInputFile(context, "./sources/utils/../utils/code_chunks.cpp")).isSameAs(inputFile);
+    assertThat(resolver.getInputFile(context, inputFile.file().getAbsolutePath())).isSameAs(inputFile);
+  }
+
+  @Test
+  public void shouldSearchUnknownFileOnlyOnce() {
+    var context = SensorContextTester.create(fs.baseDir());
+
+    var resolver = new CxxInputFileResolver();
+    assertThat(resolver.getInputFile(context, "sources/utils/code_chunks.cpp")).isNull();
+    assertThat(resolver.getInputFile(context, "./sources/utils/code_chunks.cpp")).isNull();
+    assertThat(logTester.logs(LoggerLevel.WARN)).hasSize(1);
+
+    // the result of the search is cached for the analysis
+    context.fileSystem().add(TestInputFileBuilder.create("ProjectKey", "sources/utils/code_chunks.cpp")
+      .setLanguage("cxx").build());
+    assertThat(resolver.getInputFile(context, "sources/utils/code_chunks.cpp")).isNull();
+  }
+
+  @Test
+  public void shouldSearchAgainInNewAnalysis() {
+    var resolver = new CxxInputFileResolver();
+    var context = SensorContextTester.create(fs.baseDir());
+    assertThat(resolver.getInputFile(context, "sources/utils/code_chunks.cpp")).isNull();
+
+    context = SensorContextTester.create(fs.baseDir());
+    var inputFile = TestInputFileBuilder.create("ProjectKey", "sources/utils/code_chunks.cpp")
+      .setLanguage("cxx").build();
+    context.fileSystem().add(inputFile);
+    assertThat(resolver.getInputFile(context, "sources/utils/code_chunks.cpp")).isSameAs(inputFile);
+  }
+
+}
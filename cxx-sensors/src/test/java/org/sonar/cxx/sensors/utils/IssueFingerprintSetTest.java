@@ -0,0 +1,75 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import org.sonar.cxx.utils.CxxReportIssue;
+
+public class IssueFingerprintSetTest {
+
+  @Test
+  public void equalIssuesAreAddedOnce() {
+    var set = new IssueFingerprintSet();
+    assertThat(set.add(issue("rule", "file.cpp", "1", "message"))).isTrue();
+    assertThat(set.add(issue("rule", "file.cpp", "1", "message"))).isFalse();
+    assertThat(set.add(issue("rule", "./file.cpp", "1", "message"))).isFalse();
+    assertThat(set.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void differentIssuesAreAdded() {
+    var set = new IssueFingerprintSet();
+    assertThat(set.add(issue("rule", "file.cpp", "1", "message"))).isTrue();
+    assertThat(set.add(issue("rule2", "file.cpp", "1", "message"))).isTrue();
+    assertThat(set.add(issue("rule", "file.cpp", "2", "message"))).isTrue();
+    assertThat(set.add(issue("rule", "file.cpp", null, "message"))).isTrue();
+    assertThat(set.add(issue("rule", null, null, "message"))).isTrue();
+    assertThat(set.add(issue("rule", "file.cpp", "1", "message2"))).isTrue();
+    assertThat(set.add(issue("rul", "efile.cpp", "1", "message"))).isTrue();
+
+    var withFlow = issue("rule", "file.cpp", "1", "message");
+    withFlow.addFlowElement("file.cpp", "1", "0", "flow");
+    assertThat(set.add(withFlow)).isTrue();
+
+    var withAlias = issue("rule", "file.cpp", "1", "message");
+    withAlias.addAliasRuleId("alias");
+    assertThat(set.add(withAlias)).isTrue();
+
+    assertThat(set.size()).isEqualTo(9);
+  }
+
+  @Test
+  public void manyIssues() {
+    var set = new IssueFingerprintSet();
+    for (var i = 0; i < 100_000; i++) {
+      assertThat(set.add(issue("rule", "file.cpp", Integer.toString(i), "message"))).isTrue();
+    }
+    for (var i = 0; i < 100_000; i++) {
+      assertThat(set.add(issue("rule", "file.cpp", Integer.toString(i), "message"))).isFalse();
+    }
+    assertThat(set.size()).isEqualTo(100_000);
+  }
+
+  private static CxxReportIssue issue(String ruleId, String file, String line, String info) {
+    return new CxxReportIssue(ruleId, file, line, null, info);
+  }
+
+}
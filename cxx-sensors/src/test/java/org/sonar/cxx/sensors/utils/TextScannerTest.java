@@ -0,0 +1,132 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.regex.Pattern;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TextScannerTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void shouldReadLinesLikeScanner() throws IOException {
+    var texts = new String[]{
+      "",
+      "a",
+      "a\n",
+      "a\nb",
+      "a\r\nb\r\n",
+      "a\rb\r\r\nc",
+      "\n\n",
+      "a\u0085b\u2028c\u2029d",
+      "line\n".repeat(50_000),
+      "x".repeat(200_000) + "\r\n" + "y".repeat(10)
+    };
+    for (var text : texts) {
+      var file = write(text.getBytes(StandardCharsets.UTF_8));
+      assertThat(readLines(file, "UTF-8")).isEqualTo(scannerLines(text));
+    }
+  }
+
+  @Test
+  public void shouldHandleCrLfAtEndOfBuffer() throws IOException {
+    for (var size = 64 * 1024 - 2; size <= 64 * 1024 + 1; size++) {
+      var text = "x".repeat(size) + "\r\nnext\r\n";
+      var file = write(text.getBytes(StandardCharsets.UTF_8));
+      assertThat(readLines(file, "UTF-8")).containsExactly("x".repeat(size), "next");
+    }
+  }
+
+  @Test
+  public void shouldUseBom() throws IOException {
+    var bytes = "\uFEFFfirst\nsecond".getBytes(StandardCharsets.UTF_16LE);
+    var file = write(bytes);
+    try (var scanner = new TextScanner(file, "UTF-8")) {
+      assertThat(scanner.encoding()).isEqualTo("UTF-16LE");
+    }
+    assertThat(readLines(file, "UTF-8")).containsExactly("first", "second");
+  }
+
+  @Test
+  public void shouldReturnLineView() throws IOException {
+    var file = write("file.cpp:10: warning\nother".getBytes(StandardCharsets.UTF_8));
+    var matcher = Pattern.compile("(?<file>[^:]+):(?<line>\\d+)").matcher("");
+    try (var scanner = new TextScanner(file, "UTF-8")) {
+      assertThat(matcher.reset(scanner.nextLineView()).find()).isTrue();
+      assertThat(matcher.group("file")).isEqualTo("file.cpp");
+      assertThat(matcher.group("line")).isEqualTo("10");
+      assertThat(matcher.reset(scanner.nextLineView()).find()).isFalse();
+      assertThat(scanner.hasNextLine()).isFalse();
+      assertThatThrownBy(scanner::nextLineView).isInstanceOf(NoSuchElementException.class);
+    }
+  }
+
+  @Test
+  public void shouldReadTokens() throws IOException {
+    var file = write("a;b;c".getBytes(StandardCharsets.UTF_8));
+    try (var scanner = new TextScanner(file, "UTF-8")) {
+      scanner.useDelimiter(Pattern.compile(";"));
+      assertThat(scanner.next()).isEqualTo("a");
+      assertThat(scanner.next()).isEqualTo("b");
+      assertThatThrownBy(scanner::nextLine).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  private File write(byte[] bytes) throws IOException {
+    var file = tmp.newFile();
+    Files.write(file.toPath(), bytes);
+    return file;
+  }
+
+  private static List<String> readLines(File file, String encoding) throws IOException {
+    var lines = new ArrayList<String>();
+    try (var scanner = new TextScanner(file, encoding)) {
+      while (scanner.hasNextLine()) {
+        lines.add(scanner.nextLine());
+      }
+    }
+    return lines;
+  }
+
+  private static List<String> scannerLines(String text) {
+    var lines = new ArrayList<String>();
+    try (var scanner = new Scanner(text)) {
+      while (scanner.hasNextLine()) {
+        lines.add(scanner.nextLine());
+      }
+    }
+    return lines;
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2021 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.squidbridge;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the nodes of an AST by node type and node name.
+ *
+ * The index is built with one traversal of the tree and shared by all visitors of a file (see
+ * {@link SquidAstVisitorContext#getAstNodeIndex}), so that e.g. XPath checks searching for nodes of a type don't have
+ * to traverse the whole tree each. The lists of nodes are in document order (pre-order, including the root).
+ */
+public final class AstNodeIndex {
+
+  private final AstNode root;
+  private final Map<AstNodeType, List<AstNode>> nodesByType = new IdentityHashMap<>();
+  private final Map<String, List<AstNode>> nodesByName = new HashMap<>();
+
+  private AstNodeIndex(AstNode root) {
+    this.root = root;
+    var stack = new ArrayDeque<AstNode>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      var node = stack.pop();
+      nodesByType.computeIfAbsent(node.getType(), key -> new ArrayList<>()).add(node);
+      nodesByName.computeIfAbsent(node.getName(), key -> new ArrayList<>()).add(node);
+      List<AstNode> children = node.getChildren();
+      for (var i = children.size() - 1; i >= 0; i--) {
+        stack.push(children.get(i));
+      }
+    }
+  }
+
+  /**
+   * Build the index of a tree.
+   *
+   * @param root root node of the tree
+   * @return index
+   */
+  public static AstNodeIndex of(AstNode root) {
+    return new AstNodeIndex(root);
+  }
+
+  public AstNode getRoot() {
+    return root;
+  }
+
+  /**
+   * @param type node type
+   * @return nodes of the given type in document order
+   */
+  public List<AstNode> getNodes(AstNodeType type) {
+    return Collections.unmodifiableList(nodesByType.getOrDefault(type, Collections.emptyList()));
+  }
+
+  /**
+   * @param name node name, see {@link AstNode#getName()}
+   * @return nodes with the given name in document order
+   */
+  public List<AstNode> getNodes(String name) {
+    return Collections.unmodifiableList(nodesByName.getOrDefault(name, Collections.emptyList()));
+  }
+
+}
@@ -34,15 +34,25 @@ import com.sonar.sslr.impl.Parser;
 import com.sonar.sslr.impl.ast.AstWalker;
 import java.io.File;
 import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.squidbridge.api.AnalysisException;
+import org.sonar.cxx.squidbridge.api.SourceCode;
 import org.sonar.cxx.squidbridge.api.SourceCodeSearchEngine;
 import org.sonar.cxx.squidbridge.api.SourceCodeTreeDecorator;
+import org.sonar.cxx.squidbridge.api.SourceFile;
 import org.sonar.cxx.squidbridge.api.SourceProject;
 import org.sonar.cxx.squidbridge.indexer.SquidIndex;
 import org.sonar.cxx.squidbridge.measures.MetricDef;
@@ -58,6 +68,7 @@ public class AstScanner<G extends Grammar> {
   private final SquidIndex indexer = new SquidIndex();
   private final MetricDef[] metrics;
   private final MetricDef filesMetric;
+  private Consumer<SourceFile> fileScannedCallback = null;
 
   protected AstScanner(Builder<G> builder) {
     this.visitors = Lists.newArrayList(builder.visitors);
@@ -76,6 +87,20 @@ public class AstScanner<G extends Grammar> {
     return indexer;
   }
 
+  /**
+   * Set a callback which is called for each file after all visitors left the file.
+   *
+   * Before the callback is called the metrics of the file are aggregated (the final aggregation only adds the file
+   * measures to the project). The callback can save the results of the file and remove large data (e.g. tokens) from
+   * the {@code SourceFile}, instead of keeping the data of all files until the end of the scan. With several threads
+   * the callback is called by the worker threads.
+   *
+   * @param callback callback to call, null removes the callback
+   */
+  public void setFileScannedCallback(@Nullable Consumer<SourceFile> callback) {
+    this.fileScannedCallback = callback;
+  }
+
   public void scanFile(File file) {
     scanFiles(java.util.List.of(file));
   }
@@ -117,28 +142,121 @@ public class AstScanner<G extends Grammar> {
     var astWalker = new AstWalker(visitors);
 
     for (var inputFile : inputFiles) {
-      var file = new File(inputFile.uri().getPath());
       checkCancel();
-      context.setInputFile(inputFile, filesMetric);
+      scanInputFile(astWalker, inputFile);
+    }
 
-      Exception parseException = null;
-      AstNode ast = null;
-      try {
-        try {
-          ast = parser.parse(inputFile.contents());
-        } catch (Exception e) {
-          parseException = handleParseException(file, e);
-        }
-        walkAndVisit(astWalker, ast, parseException);
-      } catch (Throwable e) {
-        throw new AnalysisException("Unable to parse file: " + file.getAbsolutePath(), e);
+    destroyVisitors();
+    decorateSquidTree();
+  }
+
+  /**
+   * Scan input files with several threads.
+   *
+   * Each worker thread uses its own scanner (parser, preprocessor and visitors) created by {@code workerFactory}. The
+   * workers are created in the calling thread before the scan starts. After all files are scanned, the resulting
+   * {@code SourceFile} objects of the workers are merged into the index and project of this scanner.
+   *
+   * @param inputFiles files to scan
+   * @param threads number of worker threads, with a value less than two the files are scanned in the calling thread
+   * @param workerFactory creates a new scanner for each worker
+   */
+  public void scanInputFiles(Iterable<InputFile> inputFiles, int threads, Supplier<AstScanner<G>> workerFactory) {
+    if (threads < 2) {
+      scanInputFiles(inputFiles);
+      return;
+    }
+
+    Queue<InputFile> queue = new ConcurrentLinkedQueue<>();
+    inputFiles.forEach(queue::add);
+
+    var workers = new ArrayList<AstScanner<G>>();
+    for (var i = Math.min(threads, queue.size()); i > 0; i--) {
+      var worker = workerFactory.get();
+      worker.setFileScannedCallback(fileScannedCallback);
+      workers.add(worker);
+    }
+
+    var executor = Executors.newFixedThreadPool(Math.max(1, workers.size()));
+    try {
+      var futures = new ArrayList<Future<?>>();
+      for (var worker : workers) {
+        futures.add(executor.submit(() -> worker.scanQueue(queue)));
+      }
+      for (var future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisException("Analysis cancelled", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AnalysisException) {
+        throw (AnalysisException) e.getCause();
       }
+      throw new AnalysisException("Unable to scan files", e.getCause());
+    } finally {
+      executor.shutdownNow();
     }
 
-    destroyVisitors();
+    for (var worker : workers) {
+      merge(worker.context.getProject());
+    }
     decorateSquidTree();
   }
 
+  private void scanQueue(Queue<InputFile> queue) {
+    initVisitors();
+
+    var astWalker = new AstWalker(visitors);
+
+    InputFile inputFile;
+    while ((inputFile = queue.poll()) != null) {
+      checkCancel();
+      scanInputFile(astWalker, inputFile);
+    }
+
+    destroyVisitors();
+  }
+
+  private void scanInputFile(AstWalker astWalker, InputFile inputFile) {
+    var file = new File(inputFile.uri().getPath());
+    context.setInputFile(inputFile, filesMetric);
+
+    Exception parseException = null;
+    AstNode ast = null;
+    try {
+      try {
+        ast = parser.parse(inputFile.contents());
+      } catch (Exception e) {
+        parseException = handleParseException(file, e);
+      }
+      walkAndVisit(astWalker, ast, parseException);
+    } catch (Throwable e) {
+      throw new AnalysisException("Unable to parse file: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Move the source files of a worker project into the project of this scanner and index them (including children).
+   */
+  private void merge(SourceProject workerProject) {
+    if (workerProject.hasChildren()) {
+      for (var sourceFile : workerProject.getChildren()) {
+        context.getProject().addChild(sourceFile);
+        indexChildren(sourceFile);
+      }
+    }
+  }
+
+  private void indexChildren(SourceCode sourceCode) {
+    if (sourceCode.hasChildren()) {
+      for (var child : sourceCode.getChildren()) {
+        indexer.index(child);
+        indexChildren(child);
+      }
+    }
+  }
+
   private static Exception handleParseException(File file, Exception e) {
     checkInterrupted(e);
     if (e instanceof RecognitionException) {
@@ -172,9 +290,25 @@ public class AstScanner<G extends Grammar> {
         visitor.leaveFile(ast);
       }
     }
+    fileScanned();
     context.popTillSourceProject();
   }
 
+  private void fileScanned() {
+    if (fileScannedCallback != null) {
+      SourceCode sourceCode = context.peekSourceCode();
+      if (sourceCode != null && !(sourceCode instanceof SourceFile)) {
+        sourceCode = sourceCode.getParent(SourceFile.class);
+      }
+      if (sourceCode != null) {
+        if (metrics != null && metrics.length > 0) {
+          SourceCodeTreeDecorator.decorate(sourceCode, metrics);
+        }
+        fileScannedCallback.accept((SourceFile) sourceCode);
+      }
+    }
+  }
+
   private void initVisitors() {
     for (var visitor : visitors) {
       visitor.init();
@@ -208,7 +342,12 @@ public class AstScanner<G extends Grammar> {
     if (metrics != null && metrics.length > 0) {
       SourceProject project = context.getProject();
       var decorator = new SourceCodeTreeDecorator(project);
-      decorator.decorateWith(metrics);
+      if (fileScannedCallback != null) {
+        // files are already decorated before the callback
+        decorator.decorateProjectWith(metrics);
+      } else {
+        decorator.decorateWith(metrics);
+      }
     }
   }
 
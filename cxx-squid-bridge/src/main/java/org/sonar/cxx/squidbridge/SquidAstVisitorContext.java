@@ -32,6 +32,7 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.cxx.squidbridge.api.CheckMessage;
 import org.sonar.cxx.squidbridge.api.CodeCheck;
 import org.sonar.cxx.squidbridge.api.SourceCode;
+import org.sonar.cxx.squidbridge.checks.MultiRegexMatcher;
 
 public abstract class SquidAstVisitorContext<G extends Grammar> {
 
@@ -43,6 +44,29 @@ public abstract class SquidAstVisitorContext<G extends Grammar> {
 
   public abstract List<String> getInputFileLines();
 
+  /**
+   * Lines of the input file as views of the file content (without copying the characters of the lines).
+   *
+   * @return lines without line terminators
+   */
+  public abstract List<CharSequence> getInputFileLineViews();
+
+  /**
+   * Index of the nodes of the AST of the current file. The index is built on first use and shared by all visitors.
+   *
+   * @param fileNode root node of the file
+   * @return index of the nodes by type and name
+   */
+  public abstract AstNodeIndex getAstNodeIndex(AstNode fileNode);
+
+  /**
+   * Prefilter of the regular expressions of the regex based checks, shared by all checks. The checks add their
+   * patterns in init().
+   *
+   * @return matcher of the patterns of all checks
+   */
+  public abstract MultiRegexMatcher getRegexMatcher();
+
   public abstract G getGrammar();
 
   public abstract void addSourceCode(SourceCode child);
@@ -28,6 +28,8 @@ import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
 import java.io.File;
 import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.AbstractList;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Deque;
@@ -39,6 +41,7 @@ import org.sonar.cxx.squidbridge.api.CodeCheck;
 import org.sonar.cxx.squidbridge.api.SourceCode;
 import org.sonar.cxx.squidbridge.api.SourceFile;
 import org.sonar.cxx.squidbridge.api.SourceProject;
+import org.sonar.cxx.squidbridge.checks.MultiRegexMatcher;
 import org.sonar.cxx.squidbridge.measures.MetricDef;
 
 public class SquidAstVisitorContextImpl<G extends Grammar> extends SquidAstVisitorContext<G> {
@@ -50,6 +53,17 @@ public class SquidAstVisitorContextImpl<G extends Grammar> extends SquidAstVisit
   private final SourceProject project;
   private CommentAnalyser commentAnalyser;
 
+  // content of the input file: read and split into lines only once per file, shared by all checks
+  private String inputFileContent;
+  private int[] lineOffsets;
+  private int lineCount;
+
+  // index of the AST nodes of the current file
+  private AstNodeIndex astNodeIndex;
+
+  // patterns of the regex based checks
+  private final MultiRegexMatcher regexMatcher = new MultiRegexMatcher(this);
+
   public SquidAstVisitorContextImpl(@Nullable SourceProject project) {
     if (project == null) {
       throw new IllegalArgumentException("project cannot be null.");
@@ -103,6 +117,8 @@ public class SquidAstVisitorContextImpl<G extends Grammar> extends SquidAstVisit
   public void setFile(File file, MetricDef filesMetric) {
     popTillSourceProject();
     this.file = file;
+    astNodeIndex = null;
+    regexMatcher.clear();
     var sourceFile = new SourceFile(file.getAbsolutePath(), file.getName());
     addSourceCode(sourceFile);
     peekSourceCode().setMeasure(filesMetric, 1);
@@ -110,6 +126,8 @@ public class SquidAstVisitorContextImpl<G extends Grammar> extends SquidAstVisit
 
   public void setInputFile(InputFile inputFile, MetricDef filesMetric) {
     this.inputFile = inputFile;
+    inputFileContent = null;
+    lineOffsets = null;
     setFile(new File(inputFile.uri().getPath()), filesMetric);
   }
 
@@ -140,11 +158,14 @@ public class SquidAstVisitorContextImpl<G extends Grammar> extends SquidAstVisit
    */
   @Override
   public String getInputFileContent() {
-    try {
-      return inputFile.contents();
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
+    if (inputFileContent == null) {
+      try {
+        inputFileContent = inputFile.contents();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
     }
+    return inputFileContent;
   }
 
   /**
@@ -152,7 +173,102 @@ public class SquidAstVisitorContextImpl<G extends Grammar> extends SquidAstVisit
    */
   @Override
   public List<String> getInputFileLines() {
-    return Arrays.asList(getInputFileContent().split("(?:\r)?\n|\r", -1));
+    splitInputFileLines();
+    String content = inputFileContent;
+    int[] offsets = lineOffsets;
+    int count = lineCount;
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        checkLineIndex(index, count);
+        return content.substring(offsets[2 * index], offsets[2 * index + 1]);
+      }
+
+      @Override
+      public int size() {
+        return count;
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<CharSequence> getInputFileLineViews() {
+    splitInputFileLines();
+    String content = inputFileContent;
+    int[] offsets = lineOffsets;
+    int count = lineCount;
+    return new AbstractList<CharSequence>() {
+      @Override
+      public CharSequence get(int index) {
+        checkLineIndex(index, count);
+        return CharBuffer.wrap(content, offsets[2 * index], offsets[2 * index + 1]);
+      }
+
+      @Override
+      public int size() {
+        return count;
+      }
+    };
+  }
+
+  private static void checkLineIndex(int index, int count) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("line index: " + index + ", lines: " + count);
+    }
+  }
+
+  /**
+   * Split the content of the input file at the line terminators (same as {@code split("(?:\r)?\n|\r", -1)}). The
+   * start and end offset of each line are stored in {@link #lineOffsets}.
+   */
+  private void splitInputFileLines() {
+    if (lineOffsets != null) {
+      return;
+    }
+    String content = getInputFileContent();
+    var offsets = new int[64];
+    var count = 0;
+    var start = 0;
+    var length = content.length();
+    for (var i = 0; i <= length; i++) {
+      char c = i < length ? content.charAt(i) : '\n';
+      if (c == '\n' || c == '\r') {
+        if (2 * count + 2 > offsets.length) {
+          offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[2 * count] = start;
+        offsets[2 * count + 1] = i;
+        count++;
+        if (c == '\r' && i + 1 < length && content.charAt(i + 1) == '\n') {
+          i++;
+        }
+        start = i + 1;
+      }
+    }
+    lineOffsets = offsets;
+    lineCount = count;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public AstNodeIndex getAstNodeIndex(AstNode fileNode) {
+    if (astNodeIndex == null || astNodeIndex.getRoot() != fileNode) {
+      astNodeIndex = AstNodeIndex.of(fileNode);
+    }
+    return astNodeIndex;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public MultiRegexMatcher getRegexMatcher() {
+    return regexMatcher;
   }
 
   public SourceProject getProject() {
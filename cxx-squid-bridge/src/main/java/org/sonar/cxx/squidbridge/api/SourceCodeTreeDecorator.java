@@ -34,15 +34,30 @@ public class SourceCodeTreeDecorator {
   }
 
   public void decorateWith(MetricDef... metrics) {
-    decorateWith(project, metrics);
+    decorate(project, metrics);
   }
 
-  private void decorateWith(SourceCode sourceCode, MetricDef... metrics) {
+  /**
+   * Aggregate the measures of the children of the project only, the children have to be decorated already (see
+   * {@link #decorate}).
+   */
+  public void decorateProjectWith(MetricDef... metrics) {
+    aggregate(project, metrics);
+  }
+
+  /**
+   * Decorate a subtree, e.g. a file directly after it was scanned.
+   */
+  public static void decorate(SourceCode sourceCode, MetricDef... metrics) {
     if (sourceCode.hasChildren()) {
       for (var child : sourceCode.getChildren()) {
-        decorateWith(child, metrics);
+        decorate(child, metrics);
       }
     }
+    aggregate(sourceCode, metrics);
+  }
+
+  private static void aggregate(SourceCode sourceCode, MetricDef... metrics) {
     for (var metric : metrics) {
       if (!metric.aggregateIfThereIsAlreadyAValue() && Double.doubleToRawLongBits(sourceCode.getDouble(metric)) != 0) {
         continue;
@@ -34,6 +34,7 @@ public abstract class AbstractCommentRegularExpressionCheck<G extends Grammar> e
   AstAndTokenVisitor {
 
   private Pattern pattern = null;
+  private int patternId;
 
   // See SONAR-3164
   public abstract String getRegularExpression();
@@ -49,6 +50,7 @@ public abstract class AbstractCommentRegularExpressionCheck<G extends Grammar> e
     if (!Strings.isNullOrEmpty(regularExpression)) {
       try {
         pattern = Pattern.compile(regularExpression, Pattern.DOTALL);
+        patternId = getContext().getRegexMatcher().add(pattern);
       } catch (RuntimeException e) {
         throw new IllegalStateException("Unable to compile regular expression: " + regularExpression, e);
       }
@@ -59,11 +61,15 @@ public abstract class AbstractCommentRegularExpressionCheck<G extends Grammar> e
   public void visitToken(Token token) {
     if (pattern != null) {
       for (var trivia : token.getTrivia()) {
-        if (trivia.isComment() && pattern.matcher(trivia.getToken().getOriginalValue()).matches()) {
+        if (trivia.isComment() && matches(trivia.getToken().getOriginalValue())) {
           getContext().createLineViolation(this, getMessage(), trivia.getToken());
         }
       }
     }
   }
 
+  private boolean matches(String comment) {
+    return getContext().getRegexMatcher().mayFindInComment(patternId, comment) && pattern.matcher(comment).matches();
+  }
+
 }
@@ -26,12 +26,11 @@ package org.sonar.cxx.squidbridge.checks;
 import com.google.common.base.Strings;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import com.sonar.sslr.xpath.api.AstNodeXPathQuery;
 import java.util.List;
 
 public abstract class AbstractXPathCheck<G extends Grammar> extends SquidCheck<G> {
 
-  private AstNodeXPathQuery<Object> query = null;
+  private IndexedXPathQuery query = null;
 
   // See SONAR-3164
   public abstract String getXPathQuery();
@@ -44,7 +43,7 @@ public abstract class AbstractXPathCheck<G extends Grammar> extends SquidCheck<G
     String xpath = getXPathQuery();
     if (!Strings.isNullOrEmpty(xpath)) {
       try {
-        query = AstNodeXPathQuery.create(getXPathQuery());
+        query = IndexedXPathQuery.create(getXPathQuery());
       } catch (RuntimeException e) {
         throw new IllegalStateException("Unable to initialize the XPath engine, perhaps because of an invalid query: "
                                         + xpath,
@@ -56,7 +55,7 @@ public abstract class AbstractXPathCheck<G extends Grammar> extends SquidCheck<G
   @Override
   public void visitFile(AstNode fileNode) {
     if (query != null && fileNode != null) {
-      List<Object> objects = query.selectNodes(fileNode);
+      List<Object> objects = query.selectNodes(fileNode, getContext());
 
       for (var object : objects) {
         if (object instanceof AstNode) {
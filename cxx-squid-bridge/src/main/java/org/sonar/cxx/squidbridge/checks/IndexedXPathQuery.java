@@ -0,0 +1,97 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2021 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.squidbridge.checks;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.xpath.api.AstNodeXPathQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import org.sonar.cxx.squidbridge.SquidAstVisitorContext;
+
+/**
+ * XPath query which answers common queries from the {@link org.sonar.cxx.squidbridge.AstNodeIndex} of the file.
+ *
+ * Queries of the form {@code //name} and {@code //name[@tokenValue='value']} are answered with the nodes of the
+ * index, without traversing the tree. All other queries are evaluated with the SSLR XPath engine.
+ */
+class IndexedXPathQuery {
+
+  private static final Pattern INDEXED_QUERY = Pattern.compile(
+    "\\s*+//([A-Za-z_][\\w.\\-]*+)(?:\\[\\s*+@tokenValue\\s*+=\\s*+(?:'([^']*+)'|\"([^\"]*+)\")\\s*+\\])?\\s*+");
+
+  private final String nodeName;
+  private final String tokenValue;
+  private final AstNodeXPathQuery<Object> query;
+
+  private IndexedXPathQuery(@CheckForNull String nodeName, @CheckForNull String tokenValue,
+                            @CheckForNull AstNodeXPathQuery<Object> query) {
+    this.nodeName = nodeName;
+    this.tokenValue = tokenValue;
+    this.query = query;
+  }
+
+  /**
+   * Compile an XPath query.
+   *
+   * @param xpath XPath query
+   * @return compiled query
+   * @throws RuntimeException the query is invalid
+   */
+  static IndexedXPathQuery create(String xpath) {
+    var matcher = INDEXED_QUERY.matcher(xpath);
+    if (matcher.matches()) {
+      String value = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+      return new IndexedXPathQuery(matcher.group(1), value, null);
+    }
+    return new IndexedXPathQuery(null, null, AstNodeXPathQuery.create(xpath));
+  }
+
+  boolean isIndexed() {
+    return nodeName != null;
+  }
+
+  /**
+   * Evaluate the query.
+   *
+   * @param fileNode root node of the file
+   * @param context context of the file, provides the node index
+   * @return selected nodes or the value of the expression
+   */
+  List<Object> selectNodes(AstNode fileNode, SquidAstVisitorContext<?> context) {
+    if (nodeName == null) {
+      return query.selectNodes(fileNode);
+    }
+    List<AstNode> nodes = context.getAstNodeIndex(fileNode).getNodes(nodeName);
+    if (tokenValue == null) {
+      return new ArrayList<>(nodes);
+    }
+    var result = new ArrayList<Object>();
+    for (var node : nodes) {
+      var token = node.getToken();
+      if (token != null && tokenValue.equals(token.getValue())) {
+        result.add(node);
+      }
+    }
+    return result;
+  }
+
+}
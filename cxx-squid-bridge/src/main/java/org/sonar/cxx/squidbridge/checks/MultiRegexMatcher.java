@@ -0,0 +1,200 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2021 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.squidbridge.checks;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.sonar.cxx.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Prefilter of the regular expressions of all regex based checks of a visitor context.
+ *
+ * The checks add their patterns in {@code init()}. The literals required by the patterns (see {@link RegexPrefilter})
+ * are combined in one Aho-Corasick automaton, so the file content or a comment is scanned once for the patterns of
+ * all checks. The candidates (lines or comments containing a literal of a pattern) are shared by all checks, a check
+ * confirms only its candidates with its regular expression. Patterns without required literals are candidates
+ * everywhere. Literals are found ignoring the case of US-ASCII characters, so a case sensitive pattern can have
+ * additional candidates.
+ *
+ * The candidates are only valid for the current file, a matcher is used by the visitors of one scanner (thread).
+ */
+public final class MultiRegexMatcher {
+
+  private final SquidAstVisitorContext<?> context;
+  private final Map<String, Integer> ids = new HashMap<>();
+  // lower case literals of each pattern, null if the pattern has no required literals
+  private final List<List<String>> literals = new ArrayList<>();
+  private RegexPrefilter.Automaton automaton = null;
+
+  // candidate lines of each pattern in the current file, null if not computed yet
+  private BitSet[] lineCandidates = null;
+  private BitSet allLines = null;
+  // patterns with candidates in each comment of the current file
+  private final Map<String, BitSet> commentCandidates = new IdentityHashMap<>();
+
+  public MultiRegexMatcher(SquidAstVisitorContext<?> context) {
+    this.context = context;
+  }
+
+  /**
+   * Add the pattern of a check.
+   *
+   * @param pattern regular expression
+   * @return id of the pattern, the same pattern (expression and flags) always gets the same id
+   */
+  public int add(Pattern pattern) {
+    String key = pattern.flags() + ":" + pattern.pattern();
+    Integer id = ids.get(key);
+    if (id == null) {
+      id = literals.size();
+      ids.put(key, id);
+      List<String> required = RegexPrefilter.requiredLiterals(pattern);
+      if (required != null) {
+        required.replaceAll(RegexPrefilter::toLowerCase);
+      }
+      literals.add(required);
+      automaton = null;
+      clear();
+    }
+    return id;
+  }
+
+  /**
+   * Remove the candidates of the current file.
+   */
+  public void clear() {
+    lineCandidates = null;
+    allLines = null;
+    commentCandidates.clear();
+  }
+
+  /**
+   * Check if a pattern may find a match in the content of the current input file.
+   *
+   * @param id id of the pattern
+   * @return false if the pattern can't find a match
+   */
+  public boolean mayFindInFile(int id) {
+    return !candidateLines(id).isEmpty();
+  }
+
+  /**
+   * Lines of the current input file, in which a pattern may find a match (same lines as
+   * {@link SquidAstVisitorContext#getInputFileLineViews()}). All patterns are searched on the first call for a file.
+   *
+   * @param id id of the pattern
+   * @return indexes of the candidate lines (must not be modified)
+   */
+  public BitSet candidateLines(int id) {
+    if (lineCandidates == null) {
+      scanInputFile();
+    }
+    BitSet lines = lineCandidates[id];
+    return lines != null ? lines : allLines;
+  }
+
+  /**
+   * Check if a pattern may find a match in a comment. All patterns are searched on the first call for a comment.
+   *
+   * @param id id of the pattern
+   * @param comment value of the comment token
+   * @return false if the pattern can't find a match
+   */
+  public boolean mayFindInComment(int id, String comment) {
+    if (literals.get(id) == null) {
+      return true;
+    }
+    BitSet candidates = commentCandidates.get(comment);
+    if (candidates == null) {
+      candidates = new BitSet();
+      var state = 0;
+      RegexPrefilter.Automaton a = automaton();
+      for (var i = 0; i < comment.length(); i++) {
+        state = a.step(state, RegexPrefilter.toLowerCase(comment.charAt(i)));
+        for (var found : a.output(state)) {
+          candidates.set(found);
+        }
+      }
+      commentCandidates.put(comment, candidates);
+    }
+    return candidates.get(id);
+  }
+
+  /**
+   * Search the literals of all patterns in the content of the current file, a match is assigned to the line where it
+   * ends.
+   */
+  private void scanInputFile() {
+    String content = context.getInputFileContent();
+    var candidates = new BitSet[literals.size()];
+    var selective = false;
+    for (var id = 0; id < candidates.length; id++) {
+      if (literals.get(id) != null) {
+        candidates[id] = new BitSet();
+        selective = true;
+      }
+    }
+
+    RegexPrefilter.Automaton a = selective ? automaton() : null;
+    var state = 0;
+    var line = 0;
+    var length = content.length();
+    for (var i = 0; i < length; i++) {
+      char c = content.charAt(i);
+      if (a != null) {
+        state = a.step(state, RegexPrefilter.toLowerCase(c));
+        for (var found : a.output(state)) {
+          candidates[found].set(line);
+        }
+      }
+      if (c == '\n' || (c == '\r' && (i + 1 == length || content.charAt(i + 1) != '\n'))) {
+        line++;
+      }
+    }
+
+    allLines = new BitSet();
+    allLines.set(0, line + 1);
+    lineCandidates = candidates;
+  }
+
+  private RegexPrefilter.Automaton automaton() {
+    if (automaton == null) {
+      var all = new ArrayList<String>();
+      var allIds = new int[literals.stream().mapToInt(l -> l != null ? l.size() : 0).sum()];
+      for (var id = 0; id < literals.size(); id++) {
+        List<String> patternLiterals = literals.get(id);
+        if (patternLiterals != null) {
+          for (var literal : patternLiterals) {
+            allIds[all.size()] = id;
+            all.add(literal);
+          }
+        }
+      }
+      automaton = new RegexPrefilter.Automaton(all, allIds);
+    }
+    return automaton;
+  }
+
+}
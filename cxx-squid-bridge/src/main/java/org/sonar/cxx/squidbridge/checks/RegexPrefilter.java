@@ -0,0 +1,460 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2021 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.squidbridge.checks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+
+/**
+ * Fast rejection of input which cannot match a regular expression.
+ *
+ * Regular expressions of the regex based checks typically contain literal text (e.g. {@code TODO}, {@code #pragma}).
+ * For each top-level alternative of the expression the longest run of characters which must occur in every match is
+ * extracted. All literals are combined in one Aho-Corasick automaton, so an input is scanned once for all of them
+ * without backtracking and without allocation. Only if one of the literals occurs, the regular expression has to
+ * confirm the match. If no literal can be extracted (e.g. {@code .*}, inline flags) or the pattern is a plain literal
+ * (e.g. {@code TODO}), every input may match.
+ *
+ * The extraction is conservative: if the pattern contains constructs which are not understood, no prefilter is used.
+ *
+ * To prefilter the patterns of several checks in one pass, see {@link MultiRegexMatcher}.
+ */
+public final class RegexPrefilter {
+
+  private static final RegexPrefilter MATCH_ALL = new RegexPrefilter(null, false);
+  // other special groups (named, non-capturing, atomic, look around) are skipped like capturing groups
+  private static final Pattern INLINE_FLAGS = Pattern.compile("\\(\\?[idmsuxU-]++[):]");
+
+  private final Automaton automaton;
+  private final boolean ignoreCase;
+
+  private RegexPrefilter(@CheckForNull Automaton automaton, boolean ignoreCase) {
+    this.automaton = automaton;
+    this.ignoreCase = ignoreCase;
+  }
+
+  /**
+   * Create the prefilter of a compiled regular expression.
+   *
+   * @param pattern regular expression
+   * @return prefilter (accepting all input if no required literal text can be extracted)
+   */
+  public static RegexPrefilter of(Pattern pattern) {
+    List<String> literals = requiredLiterals(pattern);
+    if (literals == null || (literals.size() == 1 && literals.get(0).equals(pattern.pattern()))) {
+      // a plain literal pattern is searched by Pattern itself, a prefilter would only scan the input twice
+      return MATCH_ALL;
+    }
+    boolean ignoreCase = (pattern.flags() & Pattern.CASE_INSENSITIVE) != 0;
+    if (ignoreCase) {
+      for (var i = 0; i < literals.size(); i++) {
+        String literal = literals.get(i);
+        for (var j = 0; j < literal.length(); j++) {
+          if (literal.charAt(j) > 0x7F) {
+            return MATCH_ALL; // case insensitive matching of non US-ASCII characters depends on flags
+          }
+        }
+        literals.set(i, toLowerCase(literal));
+      }
+    }
+    return new RegexPrefilter(new Automaton(literals, new int[literals.size()]), ignoreCase);
+  }
+
+  /**
+   * @return true if the prefilter is able to reject input
+   */
+  public boolean isSelective() {
+    return automaton != null;
+  }
+
+  /**
+   * Check if the regular expression may match the input.
+   *
+   * @param input text to check
+   * @return false if the regular expression can't find a match in the input
+   */
+  public boolean mayMatch(CharSequence input) {
+    return automaton == null || automaton.find(input, ignoreCase);
+  }
+
+  /**
+   * Extract the literals of a compiled regular expression (without case folding).
+   *
+   * @return literals or null if the flags or at least one alternative don't allow a prefilter
+   */
+  @CheckForNull
+  static List<String> requiredLiterals(Pattern pattern) {
+    if ((pattern.flags() & (Pattern.LITERAL | Pattern.COMMENTS | Pattern.CANON_EQ | Pattern.UNICODE_CASE)) != 0) {
+      return null;
+    }
+    return requiredLiterals(pattern.pattern());
+  }
+
+  /**
+   * Extract per top-level alternative the longest run of characters which must occur in each match.
+   *
+   * @return literals or null if at least one alternative has no required literal
+   */
+  @CheckForNull
+  static List<String> requiredLiterals(String regex) {
+    if (INLINE_FLAGS.matcher(regex).find() || regex.contains("\\Q")) {
+      return null; // inline flags or quoting
+    }
+    var literals = new ArrayList<String>();
+    var longest = "";
+    var run = new StringBuilder();
+    var length = regex.length();
+    var i = 0;
+    while (i < length) {
+      char c = regex.charAt(i);
+      switch (c) {
+        case '|':
+          longest = longer(longest, run);
+          if (longest.isEmpty()) {
+            return null;
+          }
+          literals.add(longest);
+          longest = "";
+          run.setLength(0);
+          i++;
+          break;
+        case '\\':
+          if (i + 1 >= length) {
+            return null;
+          }
+          char escaped = regex.charAt(i + 1);
+          i += 2;
+          if (Character.isLetterOrDigit(escaped)) {
+            // character classes, boundaries, back references, control characters ...
+            longest = longer(longest, run);
+            run.setLength(0);
+            i = skipEscapeArguments(regex, i, escaped);
+          } else {
+            run.append(escaped);
+          }
+          break;
+        case '*':
+        case '?':
+        case '{':
+          // preceding character (code point) is optional
+          if (run.length() > 0) {
+            run.setLength(run.offsetByCodePoints(run.length(), -1));
+          }
+          longest = longer(longest, run);
+          run.setLength(0);
+          i = c == '{' ? skipTo(regex, i, '}') : i + 1;
+          if (i < 0) {
+            return null;
+          }
+          break;
+        case '+':
+          longest = longer(longest, run);
+          run.setLength(0);
+          i++;
+          break;
+        case '(':
+        case '[':
+          longest = longer(longest, run);
+          run.setLength(0);
+          i = skipGroup(regex, i);
+          if (i < 0) {
+            return null;
+          }
+          // an optional group or class doesn't change the runs
+          break;
+        case ')':
+        case ']':
+        case '}':
+          return null;
+        case '.':
+        case '^':
+        case '$':
+          longest = longer(longest, run);
+          run.setLength(0);
+          i++;
+          break;
+        default:
+          run.append(c);
+          i++;
+          break;
+      }
+    }
+    longest = longer(longest, run);
+    if (longest.isEmpty()) {
+      return null;
+    }
+    literals.add(longest);
+    return literals;
+  }
+
+  private static String longer(String longest, StringBuilder run) {
+    return run.length() > longest.length() ? run.toString() : longest;
+  }
+
+  /**
+   * Skip the arguments of an escape sequence, e.g. the hex digits of {@code \x20}.
+   *
+   * @return position after the escape sequence
+   */
+  private static int skipEscapeArguments(String regex, int start, char escaped) {
+    var i = start;
+    switch (escaped) {
+      case 'x':
+      case 'p':
+      case 'P':
+      case 'N':
+        if (i < regex.length() && regex.charAt(i) == '{') {
+          i = regex.indexOf('}', i) + 1;
+          return i > 0 ? i : regex.length();
+        }
+        return Math.min(i + (escaped == 'x' ? 2 : 1), regex.length());
+      case 'u':
+        return Math.min(i + 4, regex.length());
+      case 'c':
+        return Math.min(i + 1, regex.length());
+      case 'k':
+        i = regex.indexOf('>', i) + 1;
+        return i > 0 ? i : regex.length();
+      default:
+        // octal values and back references
+        if (Character.isDigit(escaped)) {
+          while (i < regex.length() && Character.isDigit(regex.charAt(i))) {
+            i++;
+          }
+        }
+        return i;
+    }
+  }
+
+  private static int skipTo(String regex, int start, char end) {
+    int pos = regex.indexOf(end, start);
+    return pos < 0 ? -1 : pos + 1;
+  }
+
+  /**
+   * Skip a group {@code (...)} or character class {@code [...]} including nested ones.
+   *
+   * @return position after the group or -1 if the group is not terminated
+   */
+  private static int skipGroup(String regex, int start) {
+    var open = new ArrayDeque<Character>();
+    var i = start;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i += 2;
+        continue;
+      }
+      boolean inClass = !open.isEmpty() && open.peek() == '[';
+      if (c == '[') {
+        open.push('[');
+      } else if (c == ']' && inClass) {
+        char previous = regex.charAt(i - 1);
+        if (previous == '[' || (previous == '^' && regex.charAt(i - 2) == '[')) {
+          return -1; // ']' as first character of a class: not supported
+        }
+        open.pop();
+      } else if (c == '(' && !inClass) {
+        open.push('(');
+      } else if (c == ')' && !inClass) {
+        if (open.isEmpty() || open.pop() != '(') {
+          return -1;
+        }
+      }
+      i++;
+      if (open.isEmpty()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static String toLowerCase(String text) {
+    var chars = text.toCharArray();
+    for (var i = 0; i < chars.length; i++) {
+      chars[i] = toLowerCase(chars[i]);
+    }
+    return new String(chars);
+  }
+
+  static char toLowerCase(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  /**
+   * Aho-Corasick automaton of the literals.
+   */
+  static final class Automaton {
+
+    private static final int[] NONE = new int[0];
+
+    // transitions of each state: sorted characters and the target states
+    private char[][] labels = new char[16][];
+    private int[][] targets = new int[16][];
+    private int[] failure = new int[16];
+    // ids of the literals ending in each state (sorted)
+    private int[][] output = new int[16][];
+    private int states = 1;
+
+    /**
+     * @param literals literals to search for
+     * @param ids id of each literal, reported if the literal is found (ids can be shared by several literals)
+     */
+    Automaton(List<String> literals, int[] ids) {
+      labels[0] = new char[0];
+      targets[0] = new int[0];
+      output[0] = NONE;
+      for (var l = 0; l < literals.size(); l++) {
+        String literal = literals.get(l);
+        var state = 0;
+        for (var i = 0; i < literal.length(); i++) {
+          int next = next(state, literal.charAt(i));
+          if (next < 0) {
+            next = addState(state, literal.charAt(i));
+          }
+          state = next;
+        }
+        output[state] = merge(output[state], new int[]{ids[l]});
+      }
+      buildFailureLinks();
+    }
+
+    private int addState(int from, char c) {
+      if (states == labels.length) {
+        var size = states * 2;
+        labels = Arrays.copyOf(labels, size);
+        targets = Arrays.copyOf(targets, size);
+        failure = Arrays.copyOf(failure, size);
+        output = Arrays.copyOf(output, size);
+      }
+      var state = states++;
+      labels[state] = new char[0];
+      targets[state] = new int[0];
+      output[state] = NONE;
+
+      // insert the transition sorted by character
+      char[] fromLabels = labels[from];
+      int[] fromTargets = targets[from];
+      var pos = -Arrays.binarySearch(fromLabels, c) - 1;
+      var newLabels = new char[fromLabels.length + 1];
+      var newTargets = new int[fromTargets.length + 1];
+      System.arraycopy(fromLabels, 0, newLabels, 0, pos);
+      System.arraycopy(fromTargets, 0, newTargets, 0, pos);
+      newLabels[pos] = c;
+      newTargets[pos] = state;
+      System.arraycopy(fromLabels, pos, newLabels, pos + 1, fromLabels.length - pos);
+      System.arraycopy(fromTargets, pos, newTargets, pos + 1, fromTargets.length - pos);
+      labels[from] = newLabels;
+      targets[from] = newTargets;
+      return state;
+    }
+
+    private int next(int state, char c) {
+      var pos = Arrays.binarySearch(labels[state], c);
+      return pos >= 0 ? targets[state][pos] : -1;
+    }
+
+    private void buildFailureLinks() {
+      var queue = new ArrayDeque<Integer>();
+      for (var child : targets[0]) {
+        failure[child] = 0;
+        queue.add(child);
+      }
+      while (!queue.isEmpty()) {
+        int state = queue.poll();
+        for (var i = 0; i < labels[state].length; i++) {
+          char c = labels[state][i];
+          int child = targets[state][i];
+          int fallback = failure[state];
+          while (fallback != 0 && next(fallback, c) < 0) {
+            fallback = failure[fallback];
+          }
+          int target = next(fallback, c);
+          failure[child] = target >= 0 && target != child ? target : 0;
+          output[child] = merge(output[child], output[failure[child]]);
+          queue.add(child);
+        }
+      }
+    }
+
+    /**
+     * Follow the transition for the next character of the input.
+     *
+     * @param state current state, 0 at the start of the input
+     * @return next state
+     */
+    int step(int state, char c) {
+      int next = next(state, c);
+      while (next < 0 && state != 0) {
+        state = failure[state];
+        next = next(state, c);
+      }
+      return next < 0 ? 0 : next;
+    }
+
+    /**
+     * @return ids of the literals ending in a state (must not be modified)
+     */
+    int[] output(int state) {
+      return output[state];
+    }
+
+    private boolean find(CharSequence input, boolean ignoreCase) {
+      var state = 0;
+      for (var i = 0; i < input.length(); i++) {
+        char c = input.charAt(i);
+        if (ignoreCase) {
+          c = toLowerCase(c);
+        }
+        state = step(state, c);
+        if (output[state].length > 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+      if (b.length == 0) {
+        return a;
+      }
+      if (a.length == 0) {
+        return b;
+      }
+      var merged = new int[a.length + b.length];
+      int i = 0;
+      int j = 0;
+      var size = 0;
+      while (i < a.length || j < b.length) {
+        int next = j >= b.length || (i < a.length && a[i] < b[j]) ? a[i++] : b[j++];
+        if (size == 0 || merged[size - 1] != next) {
+          merged[size++] = next;
+        }
+      }
+      return Arrays.copyOf(merged, size);
+    }
+
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2021 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+/**
+ * fork of SSLR Squid Bridge: https://github.com/SonarSource/sslr-squid-bridge/tree/2.6.1
+ * Copyright (C) 2010 SonarSource / mailto: sonarqube@googlegroups.com / license: LGPL v3
+ */
+package org.sonar.cxx.squidbridge;
+
+import com.sonar.sslr.api.Grammar;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.cxx.squidbridge.api.SourceProject;
+import org.sonar.cxx.squidbridge.test.miniC.MiniCAstScanner.MiniCMetrics;
+
+public class SquidAstVisitorContextImplTest {
+
+  private final SquidAstVisitorContextImpl<Grammar> context
+                                                      = new SquidAstVisitorContextImpl<>(new SourceProject("project"));
+
+  @Test
+  public void linesAreSplitLikeRegularExpression() throws IOException {
+    for (var content : new String[]{"", "a", "a\nb", "a\r\nb\rc", "a\n", "\r\n\r\n", "a\r", "a\n\rb"}) {
+      setInputFile(content);
+      var expected = Arrays.asList(content.split("(?:\r)?\n|\r", -1));
+      assertEquals(expected, new ArrayList<>(context.getInputFileLines()));
+      var views = new ArrayList<String>();
+      for (var line : context.getInputFileLineViews()) {
+        views.add(line.toString());
+      }
+      assertEquals(expected, views);
+    }
+  }
+
+  @Test
+  public void contentIsReadOncePerFile() throws IOException {
+    var inputFile = setInputFile("line1\nline2");
+    assertEquals("line1\nline2", context.getInputFileContent());
+    assertEquals(Arrays.asList("line1", "line2"), context.getInputFileLines());
+    assertEquals(2, context.getInputFileLineViews().size());
+    assertEquals("line1\nline2", context.getInputFileContent());
+    verify(inputFile, times(1)).contents();
+
+    setInputFile("other");
+    assertEquals(Arrays.asList("other"), context.getInputFileLines());
+  }
+
+  private InputFile setInputFile(String content) throws IOException {
+    var inputFile = mock(InputFile.class);
+    when(inputFile.uri()).thenReturn(URI.create("file:///test.cc"));
+    when(inputFile.contents()).thenReturn(content);
+    context.setInputFile(inputFile, MiniCMetrics.FILES);
+    return inputFile;
+  }
+
+}
@@ -91,6 +91,16 @@ public class AbstractXPathCheckTest {
       .next().atLine(5);
   }
 
+  @Test
+  public void astNodesWithTokenValueXpathCheck() {
+    check.xpath = "//IDENTIFIER[@tokenValue='answer']";
+    check.message = "Don't use answer!";
+
+    checkMessagesVerifier.verify(scanFile("/checks/xpath.mc", check).getCheckMessages())
+      .next().atLine(1).withMessage("Don't use answer!")
+      .next().atLine(6);
+  }
+
   @Test
   public void parse_error() {
     check.xpath = "//VARIABLE_DEFINITION";
@@ -0,0 +1,69 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2021 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.squidbridge.checks;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.xpath.api.AstNodeXPathQuery;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.sonar.cxx.squidbridge.metrics.ResourceParser.scanFile;
+
+public class IndexedXPathQueryTest {
+
+  @Test
+  public void indexedQueries() {
+    assertTrue(IndexedXPathQuery.create("//VARIABLE_DEFINITION").isIndexed());
+    assertTrue(IndexedXPathQuery.create(" //IDENTIFIER[@tokenValue='a'] ").isIndexed());
+    assertTrue(IndexedXPathQuery.create("//IDENTIFIER[ @tokenValue = \"a'b\" ]").isIndexed());
+    assertFalse(IndexedXPathQuery.create("count(//VARIABLE_DEFINITION) > 0").isIndexed());
+    assertFalse(IndexedXPathQuery.create("//VARIABLE_DEFINITION/IDENTIFIER").isIndexed());
+    assertFalse(IndexedXPathQuery.create("//IDENTIFIER[@tokenLine=1]").isIndexed());
+  }
+
+  @Test
+  public void sameResultsAsXPathEngine() {
+    var check = new NodeCollector();
+    scanFile("/checks/xpath.mc", check);
+
+    for (var xpath : new String[]{"//VARIABLE_DEFINITION", "//IDENTIFIER", "//IDENTIFIER[@tokenValue='answer']",
+                                  "//COMPILATION_UNIT", "//STATEMENT", "//UNKNOWN"}) {
+      var query = IndexedXPathQuery.create(xpath);
+      assertTrue(query.isIndexed());
+      List<Object> expected = AstNodeXPathQuery.create(xpath).selectNodes(check.fileNode);
+      assertEquals(xpath, expected, query.selectNodes(check.fileNode, check.getContext()));
+    }
+  }
+
+  private static class NodeCollector extends SquidCheck<Grammar> {
+
+    private AstNode fileNode;
+
+    @Override
+    public void visitFile(AstNode astNode) {
+      fileNode = astNode;
+    }
+
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2021 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.squidbridge.checks;
+
+import com.sonar.sslr.api.Grammar;
+import java.io.IOException;
+import java.net.URI;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.regex.Pattern;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.cxx.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.cxx.squidbridge.api.SourceProject;
+import org.sonar.cxx.squidbridge.test.miniC.MiniCAstScanner.MiniCMetrics;
+
+public class MultiRegexMatcherTest {
+
+  private final SquidAstVisitorContextImpl<Grammar> context
+                                                      = new SquidAstVisitorContextImpl<>(new SourceProject("project"));
+  private final MultiRegexMatcher matcher = context.getRegexMatcher();
+
+  @Test
+  public void samePatternSameId() {
+    int todo = matcher.add(Pattern.compile("TODO"));
+    assertEquals(todo, matcher.add(Pattern.compile("TODO")));
+    assertNotEquals(todo, matcher.add(Pattern.compile("TODO", Pattern.CASE_INSENSITIVE)));
+    assertNotEquals(todo, matcher.add(Pattern.compile("FIXME")));
+  }
+
+  @Test
+  public void candidateLines() throws IOException {
+    int todo = matcher.add(Pattern.compile("TODO"));
+    int pragma = matcher.add(Pattern.compile("^\\s*#\\s*pragma\\s+once"));
+    int any = matcher.add(Pattern.compile(".*"));
+    int absent = matcher.add(Pattern.compile("FIXME"));
+    setInputFile("// todo\n#pragma once\r\nint a;\r// TODO\n");
+
+    assertEquals(bits(0, 3), matcher.candidateLines(todo)); // literals are found ignoring case
+    assertEquals(bits(1), matcher.candidateLines(pragma));
+    assertEquals(bits(0, 1, 2, 3, 4), matcher.candidateLines(any));
+    assertEquals(bits(), matcher.candidateLines(absent));
+    assertTrue(matcher.mayFindInFile(todo));
+    assertTrue(matcher.mayFindInFile(any));
+    assertFalse(matcher.mayFindInFile(absent));
+
+    // candidates of the next file
+    setInputFile("// FIXME");
+    assertEquals(bits(), matcher.candidateLines(todo));
+    assertEquals(bits(0), matcher.candidateLines(absent));
+  }
+
+  @Test
+  public void literalAcrossLines() throws IOException {
+    int pattern = matcher.add(Pattern.compile("a\nb"));
+    setInputFile("xa\nbx");
+    assertTrue(matcher.mayFindInFile(pattern));
+  }
+
+  @Test
+  public void commentCandidates() {
+    int todo = matcher.add(Pattern.compile("TODO", Pattern.CASE_INSENSITIVE));
+    int fixme = matcher.add(Pattern.compile("FIXME"));
+    int any = matcher.add(Pattern.compile(".*TO.*", Pattern.DOTALL));
+
+    assertTrue(matcher.mayFindInComment(todo, "// Todo: fixme"));
+    assertTrue(matcher.mayFindInComment(fixme, "// Todo: fixme"));
+    assertFalse(matcher.mayFindInComment(todo, "/* done */"));
+    assertFalse(matcher.mayFindInComment(any, "/* done */"));
+    assertTrue(matcher.mayFindInComment(any, "/* TO */"));
+  }
+
+  @Test
+  public void candidatesContainAllMatches() throws IOException {
+    var regexes = new String[]{"ab", "a.c", "abc|ca", "b+a", "(ab)?cA", "A(b|c)a", "^a", "d$", "[ab]cd"};
+    var ids = new int[regexes.length * 2];
+    var patterns = new Pattern[regexes.length * 2];
+    for (var i = 0; i < regexes.length; i++) {
+      patterns[2 * i] = Pattern.compile(regexes[i]);
+      patterns[2 * i + 1] = Pattern.compile(regexes[i], Pattern.CASE_INSENSITIVE);
+    }
+    for (var i = 0; i < patterns.length; i++) {
+      ids[i] = matcher.add(patterns[i]);
+    }
+
+    var random = new Random(42);
+    for (var n = 0; n < 500; n++) {
+      var content = new StringBuilder();
+      for (var i = random.nextInt(40); i > 0; i--) {
+        content.append("abcdABC.\n\r".charAt(random.nextInt(10)));
+      }
+      setInputFile(content.toString());
+      var lines = context.getInputFileLineViews();
+      for (var i = 0; i < patterns.length; i++) {
+        BitSet candidates = matcher.candidateLines(ids[i]);
+        for (var line = 0; line < lines.size(); line++) {
+          if (patterns[i].matcher(lines.get(line)).find()) {
+            assertTrue(patterns[i] + ": " + content, candidates.get(line));
+          }
+        }
+        if (patterns[i].matcher(content).find()) {
+          assertTrue(patterns[i] + ": " + content, matcher.mayFindInFile(ids[i]));
+          assertTrue(patterns[i] + ": " + content, matcher.mayFindInComment(ids[i], content.toString()));
+        }
+      }
+    }
+  }
+
+  private void setInputFile(String content) throws IOException {
+    var inputFile = mock(InputFile.class);
+    when(inputFile.uri()).thenReturn(URI.create("file:///test.cc"));
+    when(inputFile.contents()).thenReturn(content);
+    context.setInputFile(inputFile, MiniCMetrics.FILES);
+  }
+
+  private static BitSet bits(int... indexes) {
+    var bits = new BitSet();
+    for (var index : indexes) {
+      bits.set(index);
+    }
+    return bits;
+  }
+
+}
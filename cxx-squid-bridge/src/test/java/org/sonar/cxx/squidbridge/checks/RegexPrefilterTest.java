@@ -0,0 +1,119 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2021 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.squidbridge.checks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RegexPrefilterTest {
+
+  @Test
+  public void requiredLiterals() {
+    assertEquals(Arrays.asList("TODO"), RegexPrefilter.requiredLiterals("TODO"));
+    assertEquals(Arrays.asList("pragma"), RegexPrefilter.requiredLiterals("^\\s*#\\s*pragma\\s+once"));
+    assertEquals(Arrays.asList("abc"), RegexPrefilter.requiredLiterals("x?abcd*"));
+    assertEquals(Arrays.asList("ab", "def"), RegexPrefilter.requiredLiterals("ab|de(f|g)?def"));
+    assertEquals(Arrays.asList("a.b"), RegexPrefilter.requiredLiterals("[x]+a\\.b"));
+    assertNull(RegexPrefilter.requiredLiterals(".*"));
+    assertNull(RegexPrefilter.requiredLiterals("abc|\\d+"));
+    assertNull(RegexPrefilter.requiredLiterals("(?i)abc"));
+    assertEquals(Arrays.asList("bc"), RegexPrefilter.requiredLiterals("a\\x41bc\\u0041\\p{Alpha}d\\12"));
+    assertEquals(Arrays.asList("main"), RegexPrefilter.requiredLiterals("int\\x20main"));
+    assertEquals(Arrays.asList("x"), RegexPrefilter.requiredLiterals("x\uD83D\uDE00?y"));
+    assertNull(RegexPrefilter.requiredLiterals("[]a]bc"));
+    assertNull(RegexPrefilter.requiredLiterals("ab(c"));
+  }
+
+  @Test
+  public void requiredLiteralsWithSpecialGroups() {
+    // named, non-capturing, atomic and look around groups are skipped like capturing groups
+    assertEquals(Arrays.asList("warning:"),
+                 RegexPrefilter.requiredLiterals("(?<file>[^:]*+):(?<line>\\d{1,5}):\\x20warning:\\x20(?<msg>.*)"));
+    assertEquals(Arrays.asList("abc"), RegexPrefilter.requiredLiterals("(?:x|y)abc(?=d)(?>e)?"));
+    assertEquals(Arrays.asList("abc"), RegexPrefilter.requiredLiterals("(?<!x)abc(?!d)"));
+    // inline flags change the matching of the following literals
+    assertNull(RegexPrefilter.requiredLiterals("a(?-i:b)c"));
+    assertNull(RegexPrefilter.requiredLiterals("(?<n>a)(?s)bc"));
+
+    var prefilter = RegexPrefilter.of(Pattern.compile("(?<file>[^:]++):\\x20warning\\x20(?<id>C\\d{4}):"));
+    assertTrue(prefilter.mayMatch("a.cpp: warning C4100: unused"));
+    assertFalse(prefilter.mayMatch("cl.exe /c a.cpp"));
+  }
+
+  @Test
+  public void mayMatch() {
+    var prefilter = RegexPrefilter.of(Pattern.compile("malloc|free"));
+    assertTrue(prefilter.isSelective());
+    assertTrue(prefilter.mayMatch("p = malloc(10);"));
+    assertTrue(prefilter.mayMatch("free(p);"));
+    assertFalse(prefilter.mayMatch("p = new int[10];"));
+    assertFalse(prefilter.mayMatch("fre malloX"));
+
+    prefilter = RegexPrefilter.of(Pattern.compile("todo\\b", Pattern.CASE_INSENSITIVE));
+    assertTrue(prefilter.mayMatch("// TODO: fix"));
+    assertFalse(prefilter.mayMatch("// done"));
+
+    prefilter = RegexPrefilter.of(Pattern.compile("\\x41BC"));
+    assertTrue(prefilter.mayMatch("ABC"));
+    prefilter = RegexPrefilter.of(Pattern.compile("int\\x20main"));
+    assertTrue(prefilter.mayMatch("int main"));
+    prefilter = RegexPrefilter.of(Pattern.compile("\\u0041B"));
+    assertTrue(prefilter.mayMatch("AB"));
+    prefilter = RegexPrefilter.of(Pattern.compile("x\uD83D\uDE00?y"));
+    assertTrue(prefilter.mayMatch("xy"));
+    assertTrue(prefilter.mayMatch("x\uD83D\uDE00y"));
+
+    prefilter = RegexPrefilter.of(Pattern.compile("TODO"));
+    assertFalse(prefilter.isSelective());
+
+    prefilter = RegexPrefilter.of(Pattern.compile("[a-z]+"));
+    assertFalse(prefilter.isSelective());
+    assertTrue(prefilter.mayMatch(""));
+  }
+
+  @Test
+  public void neverRejectsMatchingInput() {
+    var regexes = new String[]{"ab", "a+b", "ab?c", "(ab)+c", "[ab]c|ca", "abc|bcd|cd", "a\\.b", "b{2}a", "^ab$",
+                               "aab|ab", "a.*b.*c", "ba|aab|abb", "(?<n>a)b(?:c|a)", "(?>a+)ba"};
+    var random = new Random(42);
+    for (var regex : regexes) {
+      for (var flags : new int[]{0, Pattern.CASE_INSENSITIVE}) {
+        var pattern = Pattern.compile(regex, flags);
+        var prefilter = RegexPrefilter.of(pattern);
+        for (var n = 0; n < 2000; n++) {
+          var input = new StringBuilder();
+          for (var i = random.nextInt(12); i > 0; i--) {
+            input.append("abcdABC.\n".charAt(random.nextInt(9)));
+          }
+          if (pattern.matcher(input).find()) {
+            assertTrue(regex + ": " + input, prefilter.mayMatch(input));
+          }
+        }
+      }
+    }
+  }
+
+}
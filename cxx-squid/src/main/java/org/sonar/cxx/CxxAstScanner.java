@@ -57,6 +57,7 @@ import org.sonar.cxx.visitors.CxxLinesOfCodeInFunctionBodyVisitor;
 import org.sonar.cxx.visitors.CxxLinesOfCodeVisitor;
 import org.sonar.cxx.visitors.CxxParseErrorLoggerVisitor;
 import org.sonar.cxx.visitors.CxxPublicApiVisitor;
+import org.sonar.cxx.visitors.CxxTokenMetricsVisitor;
 
 public final class CxxAstScanner {
 
@@ -183,9 +184,14 @@ public final class CxxAstScanner {
       .subscribeTo(CxxGrammarImpl.classSpecifier)
       .build());
 
+    // token based metrics: the tokens are classified once and passed to all consumers
+    var tokenMetrics = new CxxTokenMetricsVisitor();
+
     /* Metrics */
     builder.withSquidAstVisitor(new LinesVisitor<>(CxxMetric.LINES));
-    builder.withSquidAstVisitor(new CxxLinesOfCodeVisitor<>());
+    var linesOfCode = new CxxLinesOfCodeVisitor<Grammar>();
+    builder.withSquidAstVisitor(linesOfCode);
+    tokenMetrics.addConsumer(linesOfCode);
     builder.withSquidAstVisitor(new CxxLinesOfCodeInFunctionBodyVisitor<>());
     builder.withSquidAstVisitor(new CxxPublicApiVisitor<>(squidConfig));
     builder.withSquidAstVisitor(CommentsVisitor.<Grammar>builder().withCommentMetric(CxxMetric.COMMENT_LINES)
@@ -216,19 +222,30 @@ public final class CxxAstScanner {
     builder.withSquidAstVisitor(new CxxParseErrorLoggerVisitor<>());
 
     /* Highlighter */
-    builder.withSquidAstVisitor(new CxxHighlighterVisitor());
+    var highlighter = new CxxHighlighterVisitor();
+    builder.withSquidAstVisitor(highlighter);
+    tokenMetrics.addConsumer(highlighter);
 
     /* CPD */
-    builder.withSquidAstVisitor(new CxxCpdVisitor(squidConfig));
+    var cpd = new CxxCpdVisitor(squidConfig);
+    builder.withSquidAstVisitor(cpd);
+    tokenMetrics.addConsumer(cpd);
 
     /* NCLOC & EXECUTABLE_LINES */
-    builder.withSquidAstVisitor(new CxxFileLinesVisitor());
+    var fileLines = new CxxFileLinesVisitor();
+    builder.withSquidAstVisitor(fileLines);
+    tokenMetrics.addConsumer(fileLines);
+
+    builder.withSquidAstVisitor(tokenMetrics);
 
     /* External visitors (typically Check ones) */
     for (var visitor : visitors) {
       if (visitor instanceof CxxCharsetAwareVisitor) {
         ((CxxCharsetAwareVisitor) visitor).setCharset(squidConfig.getCharset());
       }
+      if (visitor instanceof CxxTokenMetricsVisitor.TokenConsumer) {
+        tokenMetrics.addConsumer((CxxTokenMetricsVisitor.TokenConsumer) visitor);
+      }
       builder.withSquidAstVisitor(visitor);
     }
 
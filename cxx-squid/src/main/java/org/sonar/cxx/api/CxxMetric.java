@@ -45,7 +45,9 @@ public enum CxxMetric implements MetricDef {
   NCLOC_DATA,
   EXECUTABLE_LINES_DATA,
   CPD_TOKENS_DATA,
-  HIGHLIGTHING_DATA;
+  HIGHLIGTHING_DATA,
+  INCLUDED_FILES_DATA,
+  ABSENT_FILES_DATA;
 
   @Override
   public String getName() {
@@ -21,6 +21,7 @@ package org.sonar.cxx.channels;
 
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Lexer;
+import java.lang.ref.WeakReference;
 import org.sonar.cxx.parser.CxxPunctuator;
 import org.sonar.sslr.channel.Channel;
 import org.sonar.sslr.channel.CodeReader;
@@ -45,9 +46,16 @@ public class RightAngleBracketsChannel extends Channel<Lexer> {
 
   private int angleBracketLevel = 0; // angle brackets <  >
   private int parentheseLevel = 0;   // parentheses / round brackets ( )
+  // the state is only valid for one source (lexer can be reused), the reader of the source is not kept alive
+  private WeakReference<CodeReader> currentCode = new WeakReference<>(null);
 
   @Override
   public boolean consume(CodeReader code, Lexer output) {
+    if (code != currentCode.get()) {
+      currentCode = new WeakReference<>(code);
+      angleBracketLevel = 0;
+      parentheseLevel = 0;
+    }
     var ch = (char) code.peek();
     var consumed = false;
 
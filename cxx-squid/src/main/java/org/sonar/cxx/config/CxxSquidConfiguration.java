@@ -26,20 +26,21 @@ import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.jdom2.Attribute;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Verifier;
-import org.jdom2.filter.Filters;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
-import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
 import org.sonar.api.utils.PathUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -65,6 +66,10 @@ import org.sonar.cxx.squidbridge.api.SquidConfiguration;
  * With {@code get} and {@code getValues} the information is read out again afterwards. {@code get} returns the first
  * found value for key, whereby the search starts on level. {@code getValues} collects all found values over all levels.
  * It starts with the given level and further found values are added to the end of the list.
+ *
+ * The unit specific flags of a file ({@code DEFINES}, {@code INCLUDE_DIRECTORIES} and {@code FORCE_INCLUDES}) are not
+ * stored in the File element: it references a profile by id, all files with identical flags reference the same
+ * profile.
  */
 public class CxxSquidConfiguration extends SquidConfiguration {
 
@@ -90,10 +95,20 @@ public class CxxSquidConfiguration extends SquidConfiguration {
 
   private static final Logger LOG = Loggers.get(CxxSquidConfiguration.class);
 
-  private XPathFactory xFactory = XPathFactory.instance();
   private LinkedList<Element> parentList = new LinkedList<>();
   private Document document;
 
+  // index to find level and File elements without searching the document
+  private final Map<String, Element> levelIndex = new ConcurrentHashMap<>();
+  private final Map<String, Element> fileIndex = new ConcurrentHashMap<>();
+
+  // interned values and flag profiles: files compiled with the same flags share them
+  private final Map<String, String> valuePool = new ConcurrentHashMap<>();
+  private final Map<FlagProfile, Profile> profiles = new HashMap<>();
+  private final Map<Element, Profile> fileProfiles = new ConcurrentHashMap<>();
+  private Element profilesElement;
+  private int nextProfileId;
+
   private String baseDir = "";
 
   public CxxSquidConfiguration() {
@@ -120,19 +135,23 @@ public class CxxSquidConfiguration extends SquidConfiguration {
     var element = new Element(PREDEFINED_MACROS);
     root.addContent(element);
     parentList.addFirst(element);
+    levelIndex.put(PREDEFINED_MACROS, element);
 
     element = new Element(SONAR_PROJECT_PROPERTIES);
     root.addContent(element);
     parentList.addFirst(element);
+    levelIndex.put(SONAR_PROJECT_PROPERTIES, element);
 
     element = new Element(GLOBAL);
     root.addContent(element);
     parentList.addFirst(element);
+    levelIndex.put(GLOBAL, element);
 
     // <Files> must be first one in the list
     element = new Element(FILES);
     root.addContent(element);
     parentList.addFirst(element);
+    levelIndex.put(FILES, element);
   }
 
   /**
@@ -150,8 +169,7 @@ public class CxxSquidConfiguration extends SquidConfiguration {
    */
   public void add(String level, String key, @Nullable String value) {
     if (value != null && !value.isEmpty()) {
-      Element eKey = getKey(level, key);
-      setValue(eKey, value);
+      addValues(level, key, List.of(value));
     }
   }
 
@@ -166,8 +184,7 @@ public class CxxSquidConfiguration extends SquidConfiguration {
    */
   public void add(String level, String key, Optional<String> value) {
     if (value.isPresent()) {
-      Element eKey = getKey(level, key);
-      setValue(eKey, value.get());
+      addValues(level, key, List.of(value.get()));
     }
   }
 
@@ -182,10 +199,7 @@ public class CxxSquidConfiguration extends SquidConfiguration {
    */
   public void add(String level, String key, @Nullable String[] values) {
     if (values != null) {
-      Element eKey = getKey(level, key);
-      for (var value : values) {
-        setValue(eKey, value);
-      }
+      addValues(level, key, Arrays.asList(values));
     }
   }
 
@@ -200,10 +214,7 @@ public class CxxSquidConfiguration extends SquidConfiguration {
    */
   public void add(String level, String key, List<String> values) {
     if (!values.isEmpty()) {
-      Element eKey = getKey(level, key);
-      for (var value : values) {
-        setValue(eKey, value);
-      }
+      addValues(level, key, values);
     }
   }
 
@@ -223,7 +234,7 @@ public class CxxSquidConfiguration extends SquidConfiguration {
     Element eLevel = findLevel(level, parentList.getFirst());
     do {
       if (eLevel != null) {
-        Element eKey = eLevel.getChild(key);
+        Element eKey = getKeyElement(eLevel, key);
         if (eKey != null) {
           return Optional.of(eKey.getChildText("Value"));
         }
@@ -246,12 +257,7 @@ public class CxxSquidConfiguration extends SquidConfiguration {
     List<String> result = new ArrayList<>();
     Element eLevel = findLevel(level, null);
     if (eLevel != null) {
-      Element eKey = eLevel.getChild(key);
-      if (eKey != null) {
-        for (var value : eKey.getChildren("Value")) {
-          result.add(value.getText());
-        }
-      }
+      result = getLevelValues(eLevel, key);
     }
 
     return result;
@@ -272,7 +278,7 @@ public class CxxSquidConfiguration extends SquidConfiguration {
     Element eLevel = findLevel(level, parentList.getFirst());
     do {
       if (eLevel != null) {
-        Element eKey = eLevel.getChild(key);
+        Element eKey = getKeyElement(eLevel, key);
         if (eKey != null) {
           for (var value : eKey.getChildren("Value")) {
             result.add(value.getText());
@@ -299,7 +305,7 @@ public class CxxSquidConfiguration extends SquidConfiguration {
     Element eLevel = findLevel(level, parentList.getFirst());
     if (eLevel != null) {
       for (var child : eLevel.getChildren()) {
-        Element eKey = child.getChild(key);
+        Element eKey = getKeyElement(child, key);
         if (eKey != null) {
           for (var value : eKey.getChildren("Value")) {
             result.add(value.getText());
@@ -315,6 +321,21 @@ public class CxxSquidConfiguration extends SquidConfiguration {
     return result;
   }
 
+  /**
+   * Returns the unit specific flags of a file.
+   *
+   * The flag profile contains the values of {@code DEFINES}, {@code INCLUDE_DIRECTORIES} and {@code FORCE_INCLUDES}
+   * of the file only (parent levels are not included). Files with identical flags return the same instance.
+   *
+   * @param level path of the file
+   * @return flag profile of the file, {@code FlagProfile.EMPTY} if the file has no unit specific flags
+   */
+  public FlagProfile getFlagProfile(String level) {
+    Element eLevel = findLevel(level, null);
+    Profile profile = eLevel != null ? fileProfiles.get(eLevel) : null;
+    return profile != null ? profile.flags : FlagProfile.EMPTY;
+  }
+
   /**
    * Effective value as boolean.
    *
@@ -482,6 +503,17 @@ public class CxxSquidConfiguration extends SquidConfiguration {
     return element != null ? element.getParentElement() : null;
   }
 
+  private List<String> getLevelValues(Element eLevel, String key) {
+    List<String> result = new ArrayList<>();
+    Element eKey = getKeyElement(eLevel, key);
+    if (eKey != null) {
+      for (var value : eKey.getChildren("Value")) {
+        result.add(value.getText());
+      }
+    }
+    return result;
+  }
+
   /**
    * Searches for Element associated with level.
    *
@@ -494,61 +526,190 @@ public class CxxSquidConfiguration extends SquidConfiguration {
    */
   @CheckForNull
   private Element findLevel(String level, @Nullable Element defaultElement) {
-    String xpath;
+    Element result;
     if (Verifier.checkElementName(level) == null) {
-      xpath = "/CompilationDatabase/" + level;
+      result = levelIndex.get(level);
     } else {
-      // handle special case 'FILES empty' no need to search in tree
-      if (parentList.getFirst().getContentSize() == 0) {
-        return defaultElement;
-      }
-      xpath = "//Files/File[@path='" + unifyPath(level) + "']";
-    }
-    XPathExpression<Element> expr = xFactory.compile(xpath, Filters.element());
-    List<Element> elements = expr.evaluate(document);
-    if (!elements.isEmpty()) {
-      return elements.get(0);
+      result = fileIndex.get(unifyPath(level));
     }
-    return defaultElement;
+    return result != null ? result : defaultElement;
   }
 
   /**
-   * Add or reuse an key Element.
+   * Add values to a key, the key and level Elements are created if they do not exist.
    *
    * @param level for key
    * @param key identifier of key
-   * @return existing or new Element for key
+   * @param values to add
+   */
+  private void addValues(String level, String key, List<String> values) {
+    Element eLevel = getLevel(level);
+    if (isFlag(key) && Verifier.checkElementName(level) != null) {
+      if (!values.isEmpty()) {
+        addFlags(eLevel, key, values);
+      }
+    } else {
+      Element eKey = eLevel.getChild(key);
+      if (eKey == null) {
+        eKey = new Element(key);
+        eLevel.addContent(eKey);
+      }
+      for (var value : values) {
+        setValue(eKey, value);
+      }
+    }
+  }
+
+  /**
+   * Add or reuse a level Element.
+   *
+   * @param level identifier or path of a file
+   * @return existing or new Element for level
    */
-  private Element getKey(String level, String key) {
+  private Element getLevel(String level) {
     Element eLevel = findLevel(level, null);
     if (eLevel == null) {
       if (Verifier.checkElementName(level) == null) {
         eLevel = new Element(level);
         document.getRootElement().addContent(eLevel);
+        levelIndex.put(level, eLevel);
       } else {
+        String path = unifyPath(level);
         eLevel = new Element("File");
-        eLevel.setAttribute(new Attribute("path", unifyPath(level)));
+        eLevel.setAttribute(new Attribute("path", path));
         parentList.getFirst().addContent(eLevel);
+        fileIndex.put(path, eLevel);
       }
     }
-    Element eKey = eLevel.getChild(key);
-    if (eKey == null) {
-      eKey = new Element(key);
-      eLevel.addContent(eKey);
+    return eLevel;
+  }
+
+  /**
+   * Add unit specific flags to a file.
+   *
+   * The file references the profile with its old flags plus values. Profiles are shared by all files with identical
+   * flags and removed as soon as no file references them any more.
+   *
+   * @param eFile File element
+   * @param key DEFINES, INCLUDE_DIRECTORIES or FORCE_INCLUDES
+   * @param values to add
+   */
+  private synchronized void addFlags(Element eFile, String key, List<String> values) {
+    Profile oldProfile = fileProfiles.get(eFile);
+    FlagProfile flags = oldProfile != null ? oldProfile.flags : FlagProfile.EMPTY;
+    var defines = flags.getDefines();
+    var includeDirectories = flags.getIncludeDirectories();
+    var forceIncludes = flags.getForceIncludes();
+    switch (key) {
+      case DEFINES:
+        defines = concat(defines, values);
+        break;
+      case INCLUDE_DIRECTORIES:
+        includeDirectories = concat(includeDirectories, values);
+        break;
+      default:
+        forceIncludes = concat(forceIncludes, values);
+        break;
+    }
+
+    var newFlags = new FlagProfile(0, defines, includeDirectories, forceIncludes);
+    Profile newProfile = profiles.get(newFlags);
+    if (newProfile == null) {
+      newProfile = new Profile(new FlagProfile(++nextProfileId, newFlags));
+      profiles.put(newProfile.flags, newProfile);
+      getProfilesElement().addContent(newProfile.element);
+    }
+    newProfile.references++;
+    fileProfiles.put(eFile, newProfile);
+    eFile.setAttribute("profile", newProfile.element.getAttributeValue("id"));
+
+    if (oldProfile != null && --oldProfile.references == 0) {
+      profiles.remove(oldProfile.flags);
+      oldProfile.element.detach();
     }
-    return eKey;
+  }
+
+  private List<String> concat(List<String> values, List<String> newValues) {
+    var result = new ArrayList<String>(values.size() + newValues.size());
+    result.addAll(values);
+    for (var value : newValues) {
+      result.add(valuePool.computeIfAbsent(value, v -> v));
+    }
+    return result;
+  }
+
+  private Element getProfilesElement() {
+    if (profilesElement == null) {
+      profilesElement = new Element("Profiles");
+      document.getRootElement().addContent(profilesElement);
+    }
+    return profilesElement;
+  }
+
+  /**
+   * Returns the key Element of a level. The flags of a file are read from its profile.
+   *
+   * @param eLevel level Element
+   * @param key identifier of key
+   * @return Element for key or null if it does not exist
+   */
+  @CheckForNull
+  private Element getKeyElement(Element eLevel, String key) {
+    if (isFlag(key)) {
+      Profile profile = fileProfiles.get(eLevel);
+      if (profile != null) {
+        return profile.element.getChild(key);
+      }
+    }
+    return eLevel.getChild(key);
+  }
+
+  private static boolean isFlag(String key) {
+    return DEFINES.equals(key) || INCLUDE_DIRECTORIES.equals(key) || FORCE_INCLUDES.equals(key);
   }
 
   /**
    * Add a value to a key.
    *
+   * Identical values (e.g. the same define for many files) are stored only once.
+   *
    * @param key to add the value
    * @param value to add
    */
-  static private void setValue(Element key, String value) {
+  private void setValue(Element key, String value) {
     var eValue = new Element("Value");
-    eValue.setText(value);
+    eValue.setText(valuePool.computeIfAbsent(value, v -> v));
     key.addContent(eValue);
   }
 
+  /**
+   * Flag profile and its XML representation, shared by all files with identical flags.
+   */
+  private final class Profile {
+
+    private final FlagProfile flags;
+    private final Element element;
+    private int references;
+
+    private Profile(FlagProfile flags) {
+      this.flags = flags;
+      element = new Element("Profile");
+      element.setAttribute(new Attribute("id", Integer.toString(flags.getId())));
+      addKey(DEFINES, flags.getDefines());
+      addKey(INCLUDE_DIRECTORIES, flags.getIncludeDirectories());
+      addKey(FORCE_INCLUDES, flags.getForceIncludes());
+    }
+
+    private void addKey(String key, List<String> values) {
+      if (!values.isEmpty()) {
+        var eKey = new Element(key);
+        for (var value : values) {
+          setValue(eKey, value);
+        }
+        element.addContent(eKey);
+      }
+    }
+
+  }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.config;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Unit specific compiler flags (defines, include directories and forced includes) of a file.
+ *
+ * Typically most files of a project are compiled with one of a few distinct flag sets. Profiles are interned by
+ * {@link CxxSquidConfiguration}: all files with the same flags reference one instance (see
+ * {@link CxxSquidConfiguration#getFlagProfile(String)}), which makes it possible to reuse data derived from the flags
+ * (e.g. parsed macros) for all these files.
+ */
+public final class FlagProfile {
+
+  /**
+   * Profile of a file without unit specific flags.
+   */
+  public static final FlagProfile EMPTY = new FlagProfile(0, Collections.emptyList(), Collections.emptyList(),
+                                                          Collections.emptyList());
+
+  private final int id;
+  private final List<String> defines;
+  private final List<String> includeDirectories;
+  private final List<String> forceIncludes;
+  private final int hash;
+
+  FlagProfile(int id, List<String> defines, List<String> includeDirectories, List<String> forceIncludes) {
+    this.id = id;
+    this.defines = Collections.unmodifiableList(defines);
+    this.includeDirectories = Collections.unmodifiableList(includeDirectories);
+    this.forceIncludes = Collections.unmodifiableList(forceIncludes);
+    this.hash = Objects.hash(defines, includeDirectories, forceIncludes);
+  }
+
+  FlagProfile(int id, FlagProfile other) {
+    this(id, other.defines, other.includeDirectories, other.forceIncludes);
+  }
+
+  /**
+   * Unique id of the profile within a configuration, 0 for the empty profile.
+   */
+  public int getId() {
+    return id;
+  }
+
+  public List<String> getDefines() {
+    return defines;
+  }
+
+  public List<String> getIncludeDirectories() {
+    return includeDirectories;
+  }
+
+  public List<String> getForceIncludes() {
+    return forceIncludes;
+  }
+
+  public boolean isEmpty() {
+    return defines.isEmpty() && includeDirectories.isEmpty() && forceIncludes.isEmpty();
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    var other = (FlagProfile) obj;
+    return hash == other.hash
+             && defines.equals(other.defines)
+             && includeDirectories.equals(other.includeDirectories)
+             && forceIncludes.equals(other.forceIncludes);
+  }
+
+  @Override
+  public String toString() {
+    return "FlagProfile{" + "id=" + id + ", defines=" + defines.size() + ", includeDirectories="
+             + includeDirectories.size() + ", forceIncludes=" + forceIncludes.size() + '}';
+  }
+
+}
@@ -19,8 +19,13 @@
  */
 package org.sonar.cxx.config;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -110,7 +115,8 @@ public class JsonCompilationDatabase {
   /**
    * Set up the given CxxSquidConfiguration from the JSON compilation database
    *
-   * @param squidConfig
+   * The file is read in streaming mode: only one command object is deserialized and held in memory at a time.
+   *
    * @param compileCommandsFile
    * @throws IOException
    */
@@ -123,12 +129,28 @@ public class JsonCompilationDatabase {
     mapper.enable(DeserializationFeature.USE_JAVA_ARRAY_FOR_JSON_ARRAY);
     mapper.enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY);
 
-    JsonCompilationDatabaseCommandObject[] commandObjects
-                                             = mapper.readValue(compileCommandsFile,
-                                                                JsonCompilationDatabaseCommandObject[].class);
+    try (var parser = mapper.getFactory().createParser(compileCommandsFile)) {
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.START_OBJECT) {
+        // single command object instead of an array
+        parseCommandObject(mapper.readValue(parser, JsonCompilationDatabaseCommandObject.class));
+      } else if (token == JsonToken.START_ARRAY) {
+        parseCommandObjects(mapper, parser);
+      } else if (token != null) {
+        throw MismatchedInputException.from(parser, JsonCompilationDatabaseCommandObject[].class,
+                                            "Unexpected token (" + token + "), expected START_ARRAY");
+      }
+    }
+  }
 
-    for (var commandObject : commandObjects) {
-      parseCommandObject(commandObject);
+  private void parseCommandObjects(ObjectMapper mapper, JsonParser parser) throws IOException {
+    try {
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        parseCommandObject(mapper.readValue(parser, JsonCompilationDatabaseCommandObject.class));
+      }
+    } catch (JsonEOFException e) {
+      // same exception as reading the whole array with ObjectMapper
+      throw JsonMappingException.from(parser, e.getOriginalMessage(), e);
     }
   }
 
@@ -218,15 +240,17 @@ public class JsonCompilationDatabase {
   }
 
   private void addDefines(String level, Map<String, String> defines) {
-    defines.forEach((k, v) -> {
-      squidConfig.add(level, CxxSquidConfiguration.DEFINES, k + " " + v);
-    });
+    var values = new ArrayList<String>(defines.size());
+    defines.forEach((k, v) -> values.add(k + " " + v));
+    squidConfig.add(level, CxxSquidConfiguration.DEFINES, values);
   }
 
   private void addIncludes(String level, List<Path> includes) {
+    var values = new ArrayList<String>(includes.size());
     for (var include : includes) {
-      squidConfig.add(level, CxxSquidConfiguration.INCLUDE_DIRECTORIES, include.toString());
+      values.add(include.toString());
     }
+    squidConfig.add(level, CxxSquidConfiguration.INCLUDE_DIRECTORIES, values);
   }
 
   private enum ArgNext {
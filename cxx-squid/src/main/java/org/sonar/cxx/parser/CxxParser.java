@@ -23,6 +23,9 @@ import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.impl.Parser;
 import java.io.File;
 import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 import org.sonar.cxx.config.CxxSquidConfiguration;
 import org.sonar.cxx.preprocessor.CxxPreprocessor;
 import org.sonar.cxx.preprocessor.JoinStringsPreprocessor;
@@ -34,6 +37,10 @@ public final class CxxParser {
 
   private static WeakReference<CxxPreprocessor> currentPreprocessorInstance;
 
+  // parsers of different contexts can be used in parallel, assign the preprocessor to its context
+  private static final Map<SquidAstVisitorContext<?>, WeakReference<CxxPreprocessor>> preprocessorInstances
+    = Collections.synchronizedMap(new WeakHashMap<>());
+
   private CxxParser() {
   }
 
@@ -41,6 +48,16 @@ public final class CxxParser {
     currentPreprocessorInstance.get().finishedPreprocessing(path);
   }
 
+  public static void finishedParsing(SquidAstVisitorContext<?> context, File path) {
+    var reference = preprocessorInstances.get(context);
+    CxxPreprocessor preprocessor = reference != null ? reference.get() : null;
+    if (preprocessor != null) {
+      preprocessor.finishedPreprocessing(path);
+    } else {
+      finishedParsing(path);
+    }
+  }
+
   public static Parser<Grammar> create() {
     return create(new SquidAstVisitorContextImpl<>(new SourceProject("")),
                   new CxxSquidConfiguration());
@@ -53,6 +70,7 @@ public final class CxxParser {
   public static Parser<Grammar> create(SquidAstVisitorContext<Grammar> context, CxxSquidConfiguration squidConfig) {
     var cxxpp = new CxxPreprocessor(context, squidConfig);
     currentPreprocessorInstance = new WeakReference<>(cxxpp);
+    preprocessorInstances.put(context, currentPreprocessorInstance);
     return Parser.builder(CxxGrammarImpl.create(squidConfig))
       .withLexer(CxxLexer.create(squidConfig.getCharset(), cxxpp, new JoinStringsPreprocessor()))
       .build();
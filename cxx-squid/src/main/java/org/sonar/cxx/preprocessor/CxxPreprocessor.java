@@ -27,10 +27,12 @@ import com.sonar.sslr.api.Preprocessor;
 import com.sonar.sslr.api.PreprocessorAction;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.Parser;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -40,12 +42,18 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.api.CxxMetric;
 import org.sonar.cxx.config.CxxSquidConfiguration;
+import org.sonar.cxx.config.FlagProfile;
 import org.sonar.cxx.parser.CxxLexer;
 import static org.sonar.cxx.parser.CxxTokenType.NUMBER;
 import static org.sonar.cxx.parser.CxxTokenType.PREPROCESSOR;
@@ -67,6 +75,7 @@ import static org.sonar.cxx.preprocessor.CppPunctuator.HASH;
 import static org.sonar.cxx.preprocessor.CppPunctuator.HASHHASH;
 import static org.sonar.cxx.preprocessor.CppPunctuator.LT;
 import org.sonar.cxx.squidbridge.SquidAstVisitorContext;
+import org.sonar.cxx.squidbridge.api.SourceFile;
 
 /**
  * Implements a C++ preprocessor according to '**A.12 Preprocessing directives [gram.cpp]**'.
@@ -110,17 +119,50 @@ public class CxxPreprocessor extends Preprocessor {
   private MapChain<String, Macro> globalMacros = null;
   private List<String> globalIncludeDirectories = null;
 
+  // macros and include directories of already processed flag profiles (reused for units with the same flags)
+  private final Map<FlagProfile, MapChain<String, Macro>> profileMacros = new HashMap<>();
+  private final Map<FlagProfile, List<Path>> profileIncludeRoots = new HashMap<>();
+
   private SourceCodeProvider unitCodeProvider;
   private File currentContextFile;
 
   private final Set<File> analysedFiles = new HashSet<>();
+  // hashes of the content of the included files, as read by the preprocessor
+  private final Map<String, String> includedFileHashes = new HashMap<>();
+  private Map<String, String> globalIncludedFiles = Collections.emptyMap();
+  private Set<String> globalAbsentFiles = Collections.emptySet();
+  private final Set<File> filesInProgress = new HashSet<>();
   private final Parser<Grammar> pplineParser;
 
+  // lexers and parsers are expensive to create: reuse them for all units (they are not used re-entrant)
+  private Lexer cxxLexer = null;
+  private Lexer includeLexer = null;
+  private Parser<Grammar> constantExpressionParser = null;
+  private final HeaderCache headerCache;
+  private final ExpressionCache expressionCache;
+  private final IncludeFileCache includeFileCache;
+
+  // lexed and parsed include files, shared by all preprocessors using the same configuration
+  private static final Map<CxxSquidConfiguration, HeaderCache> headerCaches
+    = Collections.synchronizedMap(new WeakHashMap<>());
+
+  // file system lookups of the include file search, shared by all preprocessors using the same configuration
+  private static final Map<CxxSquidConfiguration, IncludeFileCache> includeFileCaches
+    = Collections.synchronizedMap(new WeakHashMap<>());
+
+  // results of constant expressions, shared by all preprocessors using the same configuration
+  private static final Map<CxxSquidConfiguration, ExpressionCache> expressionCaches
+    = Collections.synchronizedMap(new WeakHashMap<>());
+
+  // configurations to which the predefined macros were already added
+  private static final Set<CxxSquidConfiguration> predefinedMacrosAdded
+    = Collections.newSetFromMap(new WeakHashMap<>());
+
   private static final String MISSING_INCLUDE_MSG = "Preprocessor: {} include directive error(s). "
                                                       + "This is only relevant if parser creates syntax errors."
                                                       + " The preprocessor searches for include files in the with "
                                                       + "'sonar.cxx.includeDirectories' defined directories and order.";
-  private static int missingIncludeFilesCounter = 0;
+  private static final AtomicInteger missingIncludeFilesCounter = new AtomicInteger();
 
   public CxxPreprocessor(SquidAstVisitorContext<Grammar> context) {
     this(context, new CxxSquidConfiguration());
@@ -142,6 +184,9 @@ public class CxxPreprocessor extends Preprocessor {
     this.squidConfig = squidConfig;
     this.mockCodeProvider = mockCodeProvider;
     pplineParser = CppParser.create(squidConfig.getCharset());
+    headerCache = headerCaches.computeIfAbsent(squidConfig, key -> new HeaderCache());
+    expressionCache = expressionCaches.computeIfAbsent(squidConfig, key -> new ExpressionCache());
+    includeFileCache = includeFileCaches.computeIfAbsent(squidConfig, key -> new IncludeFileCache());
 
     if (this.mockCodeProvider != null) {
       this.mockCodeProvider.setIncludeRoots(
@@ -156,6 +201,33 @@ public class CxxPreprocessor extends Preprocessor {
     return squidConfig.getCharset();
   }
 
+  /**
+   * Parser for constant expressions ({@code #if}), created once per preprocessor.
+   */
+  Parser<Grammar> getConstantExpressionParser() {
+    if (constantExpressionParser == null) {
+      constantExpressionParser = CppParser.createConstantExpressionParser(squidConfig.getCharset());
+    }
+    return constantExpressionParser;
+  }
+
+  /**
+   * Cache for the results of constant expressions ({@code #if}), shared with other preprocessors.
+   */
+  ExpressionCache getExpressionCache() {
+    return expressionCache;
+  }
+
+  /**
+   * Lex C++ code without preprocessing it.
+   */
+  private List<Token> lexCxx(String source) {
+    if (cxxLexer == null) {
+      cxxLexer = CxxLexer.create(squidConfig.getCharset());
+    }
+    return cxxLexer.lex(source);
+  }
+
   /**
    * Method called before the lexing starts which can be overridden to initialize a state for instance.
    *
@@ -171,20 +243,18 @@ public class CxxPreprocessor extends Preprocessor {
     if (currentContextFile != context.getFile()) {
       currentContextFile = context.getFile();
 
-      unitCodeProvider = new SourceCodeProvider(currentContextFile);
-      unitMacros = new MapChain<>();
+      unitCodeProvider = new SourceCodeProvider(currentContextFile, includeFileCache);
       String path = currentContextFile.getAbsolutePath();
 
-      if (globalMacros != null) {
-        // reuse already parsed project macros
-        unitMacros.putAll(globalMacros);
-      } else {
+      if (globalMacros == null) {
         // on project level do this only once for all units
+        unitMacros = new MapChain<>();
         addGlobalIncludeDirectories();
         addGlobalMacros();
         addGlobalForcedIncludes();
-        globalMacros = new MapChain<>();
-        globalMacros.putAll(unitMacros);
+        globalMacros = unitMacros;
+        globalIncludedFiles = new HashMap<>(includedFileHashes);
+        globalAbsentFiles = new HashSet<>(unitCodeProvider.getAbsentFiles());
 
         if (LOG.isDebugEnabled()) {
           LOG.debug("global include directories: {}", unitCodeProvider.getIncludeRoots());
@@ -195,13 +265,14 @@ public class CxxPreprocessor extends Preprocessor {
       LOG.debug("process unit '{}'", currentContextFile);
 
       // add unit specific stuff
-      boolean changes = addUnitIncludeDirectories(path);
-      if (changes && LOG.isDebugEnabled()) {
+      FlagProfile profile = squidConfig.getFlagProfile(path);
+      addUnitIncludeDirectories(profile);
+      if (!profile.getIncludeDirectories().isEmpty() && LOG.isDebugEnabled()) {
         LOG.debug("unit include directories: {}", unitCodeProvider.getIncludeRoots());
       }
-      changes = addUnitMacros(path);
-      changes |= addUnitForcedIncludes(path);
-      if (changes && LOG.isDebugEnabled()) {
+      addUnitMacros(profile);
+      addUnitForcedIncludes(profile);
+      if (!(profile.getDefines().isEmpty() && profile.getForceIncludes().isEmpty()) && LOG.isDebugEnabled()) {
         LOG.debug("unit macros: {}", unitMacros);
       }
     }
@@ -238,15 +309,26 @@ public class CxxPreprocessor extends Preprocessor {
   }
 
   private PreprocessorAction handlePreprocessorDirective(Token token, String rootFilePath) {
-    AstNode lineAst;
+    AstNode lineAst = parsePreprocessorLine(token);
+    if (lineAst == null) {
+      return oneConsumedToken(token);
+    }
+    return handlePreprocessorDirective(lineAst, token, rootFilePath, null);
+  }
+
+  @CheckForNull
+  private AstNode parsePreprocessorLine(Token token) {
     try {
-      lineAst = pplineParser.parse(token.getValue()).getFirstChild();
+      return pplineParser.parse(token.getValue()).getFirstChild();
     } catch (com.sonar.sslr.api.RecognitionException e) {
       LOG.warn("Cannot parse '{}', ignoring...", token.getValue());
       LOG.debug("Parser exception: '{}'", e.getMessage());
-      return oneConsumedToken(token);
+      return null;
     }
+  }
 
+  private PreprocessorAction handlePreprocessorDirective(AstNode lineAst, Token token, String rootFilePath,
+                                                         @Nullable Macro macro) {
     var type = (CppGrammarImpl) lineAst.getType();
     switch (type) {
       case ifLine:
@@ -270,7 +352,7 @@ public class CxxPreprocessor extends Preprocessor {
       case includeLine:
         return handleIncludeLine(lineAst, token, rootFilePath, squidConfig.getCharset());
       case defineLine:
-        return handleDefineLine(lineAst, token, rootFilePath);
+        return handleDefineLine(macro != null ? macro : parseMacroDefinition(lineAst), token);
       case ppImport:
         return handleImportLine(lineAst, token, rootFilePath, squidConfig.getCharset());
       case ppModule:
@@ -284,13 +366,13 @@ public class CxxPreprocessor extends Preprocessor {
   }
 
   public static void finalReport() {
-    if (missingIncludeFilesCounter != 0) {
-      LOG.warn(MISSING_INCLUDE_MSG, missingIncludeFilesCounter);
+    if (missingIncludeFilesCounter.get() != 0) {
+      LOG.warn(MISSING_INCLUDE_MSG, missingIncludeFilesCounter.get());
     }
   }
 
   public static void resetReport() {
-    missingIncludeFilesCounter = 0;
+    missingIncludeFilesCounter.set(0);
   }
 
   private static List<Token> stripEOF(List<Token> tokens) {
@@ -313,7 +395,7 @@ public class CxxPreprocessor extends Preprocessor {
     return ast.getChildren().stream().map(AstNode::getToken).collect(Collectors.toList());
   }
 
-  private static int matchArguments(List<Token> tokens, List<Token> arguments) {
+  private static int matchArguments(List<Token> tokens, List<Token> arguments, List<List<Token>> argumentTokens) {
     List<Token> rest = new ArrayList<>(tokens);
     try {
       rest = match(rest, "(");
@@ -323,7 +405,7 @@ public class CxxPreprocessor extends Preprocessor {
 
     try {
       do {
-        rest = matchArgument(rest, arguments);
+        rest = matchArgument(rest, arguments, argumentTokens);
         try {
           rest = match(rest, ",");
         } catch (MismatchException e) {
@@ -351,7 +433,8 @@ public class CxxPreprocessor extends Preprocessor {
     return tokens.subList(1, tokens.size());
   }
 
-  private static List<Token> matchArgument(List<Token> tokens, List<Token> arguments) throws MismatchException {
+  private static List<Token> matchArgument(List<Token> tokens, List<Token> arguments,
+                                           List<List<Token>> argumentTokens) throws MismatchException {
     var nestingLevel = 0;
     var tokensConsumed = 0;
     var noTokens = tokens.size();
@@ -370,6 +453,7 @@ public class CxxPreprocessor extends Preprocessor {
             .setValueAndOriginalValue(serialize(matchedTokens).trim())
             .setType(STRING)
             .build());
+          argumentTokens.add(matchedTokens);
         }
         return tokens.subList(tokensConsumed, noTokens);
       }
@@ -575,12 +659,37 @@ public class CxxPreprocessor extends Preprocessor {
     // A macro definition lasts (independent of block structure) until a corresponding #undef directive is encountered
     // or (if none is encountered) until the end of the translation unit.
 
+    addIncludedFilesData();
     analysedFiles.clear();
+    includedFileHashes.clear();
+    filesInProgress.clear();
     unitMacros = null;
     unitCodeProvider = null;
     currentContextFile = null;
   }
 
+  /**
+   * Store the files the unit depends on in the source file, a unit has to be analysed again if one of them changes:
+   * the included files (including global forced includes) with the hash of their content and the files searched for
+   * an include but not found.
+   */
+  private void addIncludedFilesData() {
+    var sourceCode = context.peekSourceCode();
+    if (sourceCode instanceof SourceFile) {
+      var includedFiles = new TreeMap<String, String>(globalIncludedFiles);
+      includedFiles.putAll(includedFileHashes);
+      for (var file : analysedFiles) {
+        // not read by the preprocessor (e.g. unreadable)
+        includedFiles.putIfAbsent(file.getPath(), "");
+      }
+      sourceCode.addData(CxxMetric.INCLUDED_FILES_DATA, includedFiles);
+
+      var absentFiles = new TreeSet<String>(globalAbsentFiles);
+      absentFiles.addAll(unitCodeProvider.getAbsentFiles());
+      sourceCode.addData(CxxMetric.ABSENT_FILES_DATA, absentFiles);
+    }
+  }
+
   public SourceCodeProvider getCodeProvider() {
     return mockCodeProvider != null ? mockCodeProvider : unitCodeProvider;
   }
@@ -611,6 +720,9 @@ public class CxxPreprocessor extends Preprocessor {
   /**
    * This is a collection of standard macros according to
    * http://gcc.gnu.org/onlinedocs/cpp/Standard-Predefined-Macros.html
+   *
+   * The macros are added to the configuration only once, by the first preprocessor using it. Other preprocessors
+   * (e.g. of parallel workers) wait until they are added.
    */
   private void addPredefinedMacros() {
     String[] predefinedMacros = {
@@ -628,8 +740,12 @@ public class CxxPreprocessor extends Preprocessor {
       "__has_include 1"
     };
 
-    for (var macro : predefinedMacros) {
-      squidConfig.add(CxxSquidConfiguration.PREDEFINED_MACROS, CxxSquidConfiguration.DEFINES, macro);
+    synchronized (predefinedMacrosAdded) {
+      if (predefinedMacrosAdded.add(squidConfig)) {
+        for (var macro : predefinedMacros) {
+          squidConfig.add(CxxSquidConfiguration.PREDEFINED_MACROS, CxxSquidConfiguration.DEFINES, macro);
+        }
+      }
     }
   }
 
@@ -644,17 +760,24 @@ public class CxxPreprocessor extends Preprocessor {
     }
   }
 
-  private boolean addUnitMacros(String level) {
-    var defines = squidConfig.getLevelValues(level, CxxSquidConfiguration.DEFINES);
-    if (!defines.isEmpty()) {
-      Collections.reverse(defines);
-      var macros = parseMacroDefinitions(defines);
-      if (!macros.isEmpty()) {
-        unitMacros.putAll(macros);
-        return true;
+  /**
+   * Add project and unit macros. The macros of a flag profile are parsed only once and reused for all units with the
+   * same profile: project macros, profile macros and the macros defined by the unit itself are layers of a
+   * {@code MapChain}, the lower layers are not modified while processing a unit.
+   */
+  private void addUnitMacros(FlagProfile profile) {
+    var macros = profileMacros.get(profile);
+    if (macros == null) {
+      macros = globalMacros;
+      var defines = new ArrayList<>(profile.getDefines());
+      if (!defines.isEmpty()) {
+        Collections.reverse(defines);
+        macros = new MapChain<>(globalMacros);
+        macros.putAll(parseMacroDefinitions(defines));
       }
+      profileMacros.put(profile, macros);
     }
-    return false;
+    unitMacros = new MapChain<>(macros);
   }
 
   private void addGlobalIncludeDirectories() {
@@ -663,12 +786,13 @@ public class CxxPreprocessor extends Preprocessor {
     unitCodeProvider.setIncludeRoots(globalIncludeDirectories, squidConfig.getBaseDir());
   }
 
-  private boolean addUnitIncludeDirectories(String level) {
-    List<String> unitIncludeDirectories = squidConfig.getLevelValues(level, CxxSquidConfiguration.INCLUDE_DIRECTORIES);
-    boolean hasUnitIncludes = !unitIncludeDirectories.isEmpty();
-    unitIncludeDirectories.addAll(globalIncludeDirectories);
-    unitCodeProvider.setIncludeRoots(unitIncludeDirectories, squidConfig.getBaseDir());
-    return hasUnitIncludes;
+  private void addUnitIncludeDirectories(FlagProfile profile) {
+    var roots = profileIncludeRoots.computeIfAbsent(profile, key -> {
+      var unitIncludeDirectories = new ArrayList<>(key.getIncludeDirectories());
+      unitIncludeDirectories.addAll(globalIncludeDirectories);
+      return SourceCodeProvider.resolveIncludeRoots(unitIncludeDirectories, squidConfig.getBaseDir());
+    });
+    unitCodeProvider.addIncludeRoots(roots);
   }
 
   private void addGlobalForcedIncludes() {
@@ -684,16 +808,14 @@ public class CxxPreprocessor extends Preprocessor {
   /**
    * Parse the configured forced includes and store it into the macro library.
    */
-  private boolean addUnitForcedIncludes(String level) {
-    int oldHash = unitMacros.hashCode();
-    for (var include : squidConfig.getLevelValues(level, CxxSquidConfiguration.FORCE_INCLUDES)) {
+  private void addUnitForcedIncludes(FlagProfile profile) {
+    for (var include : profile.getForceIncludes()) {
       if (!include.isEmpty()) {
         LOG.debug("parsing force include: '{}'", include);
         parseIncludeLine("#include \"" + include + "\"", "sonar.cxx.forceIncludes",
                          squidConfig.getCharset());
       }
     }
-    return oldHash != unitMacros.hashCode();
   }
 
   private PreprocessorAction handleIfdefLine(AstNode ast, Token token, String filename) {
@@ -722,7 +844,8 @@ public class CxxPreprocessor extends Preprocessor {
 
   private int expandFunctionLikeMacro(String macroName, List<Token> restTokens, List<Token> expansion) {
     List<Token> arguments = new ArrayList<>();
-    int tokensConsumedMatchingArgs = matchArguments(restTokens, arguments);
+    List<List<Token>> argumentTokens = new ArrayList<>();
+    int tokensConsumedMatchingArgs = matchArguments(restTokens, arguments, argumentTokens);
 
     Macro macro = getMacro(macroName);
     if (macro != null && macro.checkArgumentsCount(arguments.size())) {
@@ -738,21 +861,41 @@ public class CxxPreprocessor extends Preprocessor {
           .setValueAndOriginalValue(serialize(vaargs, ","))
           .setType(STRING)
           .build());
+        argumentTokens = groupVaArgs(argumentTokens, macro.params.size() - 1, firstToken);
       }
-      List<Token> replTokens = replaceParams(macro.body, macro.params, arguments);
+      List<Token> replTokens = replaceParams(macro.body, macro.params, arguments, argumentTokens);
       replTokens = evaluateHashhashOperators(replTokens);
-      expansion.addAll(expandMacro(macro.name, serialize(replTokens)));
+      expansion.addAll(expandMacro(macro.name, replTokens));
     }
 
     return tokensConsumedMatchingArgs;
   }
 
-  private List<Token> expandMacro(String macroName, String macroExpression) {
+  private static List<List<Token>> groupVaArgs(List<List<Token>> argumentTokens, int first, Token firstToken) {
+    var vaargs = new ArrayList<Token>();
+    for (var i = first; i < argumentTokens.size(); i++) {
+      if (i > first) {
+        vaargs.add(Token.builder(firstToken).setValueAndOriginalValue(",").setType(COMMA).build());
+      }
+      vaargs.addAll(argumentTokens.get(i));
+    }
+    var result = new ArrayList<>(argumentTokens.subList(0, first));
+    result.add(vaargs);
+    return result;
+  }
+
+  private List<Token> expandMacro(String macroName, List<Token> replacement) {
     // C++ standard 16.3.4/2 Macro Replacement - Rescanning and further replacement
     List<Token> tokens = null;
     unitMacros.disable(macroName);
     try {
-      tokens = stripEOF(CxxLexer.create(this).lex(macroExpression));
+      tokens = CxxTokenConverter.convert(replacement);
+      if (tokens != null) {
+        tokens = rescan(tokens);
+      } else {
+        // e.g. result of ## or # operator: lexer is needed to create the tokens
+        tokens = rescan(new ArrayList<>(stripEOF(lexCxx(serialize(replacement)))));
+      }
     } finally {
       unitMacros.enable(macroName);
     }
@@ -768,6 +911,40 @@ public class CxxPreprocessor extends Preprocessor {
     return tokens;
   }
 
+  /**
+   * Preprocess already lexed tokens. Same as the preprocessing step of the lexer (including the EOF token at the end),
+   * but without lexing the tokens again.
+   */
+  private List<Token> rescan(List<Token> tokens) {
+    if (tokens.isEmpty()) {
+      return tokens;
+    }
+    var first = tokens.get(0);
+    tokens.add(Token.builder()
+      .setLine(first.getLine())
+      .setColumn(first.getColumn())
+      .setURI(first.getURI())
+      .setValueAndOriginalValue("EOF")
+      .setType(EOF)
+      .build());
+
+    var result = new ArrayList<Token>(tokens.size());
+    var i = 0;
+    while (i < tokens.size()) {
+      PreprocessorAction action = process(tokens.subList(i, tokens.size()));
+      int consumed = action.getNumberOfConsumedTokens();
+      result.addAll(action.getTokensToInject());
+      if (consumed == 0) {
+        result.add(tokens.get(i));
+        i++;
+      } else {
+        i += consumed;
+      }
+    }
+
+    return stripEOF(result);
+  }
+
   private static void expandVaOpt(List<Token> tokens, boolean keep) {
     // va-opt-replacement:
     //    __VA_OPT__ ( pp-tokensopt )
@@ -809,10 +986,13 @@ public class CxxPreprocessor extends Preprocessor {
     }
   }
 
-  private List<Token> replaceParams(List<Token> body, List<Token> parameters, List<Token> arguments) {
+  private List<Token> replaceParams(List<Token> macroBody, List<Token> parameters, List<Token> arguments,
+                                    List<List<Token>> argumentTokens) {
     // replace all parameters by according arguments "Stringify" the argument if the according parameter is
     // preceded by an #
 
+    // work on a copy: __VA_OPT__ handling modifies the body and macros are shared between units
+    var body = new ArrayList<Token>(macroBody);
     var newTokens = new ArrayList<Token>();
     if (!body.isEmpty()) {
       var tokenPastingLeftOp = false;
@@ -872,6 +1052,7 @@ public class CxxPreprocessor extends Preprocessor {
           // in case of token pasting operator do not fully expand
           var replacement = arguments.get(index);
           String newValue;
+          List<Token> expanded = null;
           if (tokenPastingLeftOp) {
             newValue = replacement.getValue();
             tokenPastingLeftOp = false;
@@ -887,7 +1068,8 @@ public class CxxPreprocessor extends Preprocessor {
               newValue = encloseWithQuotes(quote(replacement.getValue()));
             } else {
               // otherwise the arguments have to be fully expanded before expanding the body of the macro
-              newValue = serialize(expandMacro("", replacement.getValue()));
+              expanded = expandMacro("", argumentTokens.get(index));
+              newValue = serialize(expanded);
             }
           }
 
@@ -903,6 +1085,17 @@ public class CxxPreprocessor extends Preprocessor {
                 break;
               }
             }
+          } else if (expanded != null && !expanded.isEmpty()) {
+            // keep the tokens of the expanded argument (no need to lex them again)
+            for (var expandedToken : expanded) {
+              newTokens.add(Token.builder()
+                .setLine(replacement.getLine())
+                .setColumn(replacement.getColumn())
+                .setURI(replacement.getURI())
+                .setValueAndOriginalValue(expandedToken.getValue())
+                .setType(expandedToken.getType())
+                .setGeneratedCode(true).build());
+            }
           } else {
             newTokens.add(Token.builder()
               .setLine(replacement.getLine())
@@ -990,8 +1183,7 @@ public class CxxPreprocessor extends Preprocessor {
       includedFileName = sb.toString();
     } else if ((node = ast.getFirstDescendant(CppGrammarImpl.includeBodyFreeform)) != null) {
       // expand and recurse
-      String includeBody = serialize(stripEOF(node.getTokens()), "");
-      String expandedIncludeBody = serialize(stripEOF(CxxLexer.create(this).lex(includeBody)), "");
+      String expandedIncludeBody = serialize(expandMacro("", stripEOF(node.getTokens())), "");
       var parseError = false;
       AstNode includeBodyAst = null;
       try {
@@ -1086,9 +1278,8 @@ public class CxxPreprocessor extends Preprocessor {
     return oneConsumedToken(token);
   }
 
-  PreprocessorAction handleDefineLine(AstNode ast, Token token, String filename) {
-    // Here we have a define directive. Parse it and store the macro in a dictionary.
-    Macro macro = parseMacroDefinition(ast);
+  PreprocessorAction handleDefineLine(Macro macro, Token token) {
+    // Here we have a define directive, store the macro in a dictionary.
     unitMacros.put(macro.name, macro);
 
     return oneConsumedToken(token);
@@ -1104,25 +1295,105 @@ public class CxxPreprocessor extends Preprocessor {
     // c) if not done yet, process it using a special lexer, which calls back only
     //    if it finds relevant preprocessor directives (currently: include's and define's)
     File includedFile = findIncludedFile(ast, token, filename);
+    // the modification time of a cached file is checked once per include
+    HeaderCache.Entry cached = includedFile == null || mockCodeProvider != null ? null : headerCache.get(includedFile);
     if (includedFile == null) {
-      missingIncludeFilesCounter++;
+      missingIncludeFilesCounter.incrementAndGet();
       LOG.debug("[" + filename + ":" + token.getLine()
                   + "]: preprocessor cannot find include file '" + token.getValue() + "'");
-    } else if (analysedFiles.add(includedFile.getAbsoluteFile())) {
+    } else if (!skipIncludedFile(includedFile, cached)) {
+      File file = includedFile.getAbsoluteFile();
+      filesInProgress.add(file);
       unitCodeProvider.pushFileState(includedFile);
       try {
-        LOG.debug("process include file '{}'", includedFile.getAbsoluteFile());
-        IncludeLexer.create(this).lex(getCodeProvider().getSourceCode(includedFile, charset));
+        LOG.debug("process include file '{}'", file);
+        if (mockCodeProvider != null) {
+          IncludeLexer.create(this).lex(getCodeProvider().getSourceCode(includedFile, charset));
+        } else {
+          processIncludedFile(includedFile, cached, charset);
+        }
       } catch (IOException e) {
-        LOG.error("[{}: preprocessor cannot read include file]: {}", includedFile.getAbsoluteFile(), e.getMessage());
+        LOG.error("[{}: preprocessor cannot read include file]: {}", file, e.getMessage());
       } finally {
         unitCodeProvider.popFileState();
+        filesInProgress.remove(file);
       }
     }
 
     return oneConsumedToken(token);
   }
 
+  /**
+   * Check if including a file has no effect (and can be skipped).
+   *
+   * Like GCC and Clang this uses the include guard of the file, detected the first time it was lexed: a file with an
+   * include guard macro is skipped as long as the macro is defined, a file with {@code #pragma once} after its first
+   * inclusion in the unit. Files without guard are processed again on each inclusion (e.g. X-macro headers), except
+   * recursive inclusions.
+   */
+  private boolean skipIncludedFile(File includedFile, @Nullable HeaderCache.Entry cached) {
+    File file = includedFile.getAbsoluteFile();
+    boolean firstInclusion = analysedFiles.add(file);
+    if (cached != null) {
+      includedFileHashes.put(file.getPath(), cached.getContentHash());
+    }
+    if (mockCodeProvider != null) {
+      // include files are not cached: process each file once
+      return !firstInclusion;
+    }
+
+    HeaderCache.Guard guard = cached != null ? cached.getGuard() : null;
+    if (guard != null) {
+      if (guard.isPragmaOnce() && !firstInclusion) {
+        return true;
+      }
+      String macroName = guard.getMacroName();
+      if (macroName != null && getMacro(macroName) != null) {
+        return true;
+      }
+    }
+    return filesInProgress.contains(file);
+  }
+
+  /**
+   * Replay the preprocessor directives of an include file. Lexing the file and parsing the directives is done only
+   * once, the result is stored in the shared header cache.
+   */
+  private void processIncludedFile(File includedFile, @Nullable HeaderCache.Entry cached, Charset charset)
+    throws IOException {
+    List<HeaderCache.Directive> directives;
+    if (cached != null) {
+      directives = cached.getDirectives();
+    } else {
+      directives = new ArrayList<>();
+      if (includeLexer == null) {
+        includeLexer = IncludeLexer.create(squidConfig);
+      }
+      var digest = SourceCodeProvider.newContentDigest();
+      for (var token : includeLexer.lex(getCodeProvider().getSourceCode(includedFile, charset, digest))) {
+        if (token.getType().equals(PREPROCESSOR)) {
+          AstNode lineAst = parsePreprocessorLine(token);
+          Macro macro = null;
+          if (lineAst != null && lineAst.getType().equals(defineLine)) {
+            macro = parseMacroDefinition(lineAst);
+          }
+          directives.add(new HeaderCache.Directive(token, lineAst, macro));
+        }
+      }
+      var entry = headerCache.put(includedFile, directives, SourceCodeProvider.toHex(digest));
+      directives = entry.getDirectives();
+      includedFileHashes.put(includedFile.getAbsolutePath(), entry.getContentHash());
+    }
+
+    for (var directive : directives) {
+      var lineAst = directive.getLineAst();
+      if (lineAst != null) {
+        handlePreprocessorDirective(lineAst, directive.getToken(), unitCodeProvider.getFileUnderAnalysisPath(),
+                                    directive.getMacro());
+      }
+    }
+  }
+
   PreprocessorAction handleImportLine(AstNode ast, Token token, String filename, Charset charset) {
     if (ast.getFirstDescendant(CppGrammarImpl.expandedIncludeBody) != null) {
       // import <file>
@@ -1143,8 +1414,11 @@ public class CxxPreprocessor extends Preprocessor {
     for (Token ppToken : stripEOF(serialize(ast))) {
       String value = ppToken.getValue();
       if (!value.isBlank()) {
-        // call CXX lexer to create a CXX token
-        List<Token> cxxTokens = CxxLexer.create().lex(value);
+        // convert to a CXX token (call CXX lexer if this is not possible)
+        List<Token> cxxTokens = CxxTokenConverter.convert(Collections.singletonList(ppToken));
+        if (cxxTokens == null) {
+          cxxTokens = lexCxx(value);
+        }
         var cxxToken = cxxTokens.get(0);
         var cxxType = cxxToken.getType();
 
@@ -1184,7 +1458,7 @@ public class CxxPreprocessor extends Preprocessor {
 
       if (macro.params == null) {
         tokensConsumed = 1;
-        replTokens = new LinkedList<>(expandMacro(macro.name, serialize(evaluateHashhashOperators(macro.body))));
+        replTokens = new LinkedList<>(expandMacro(macro.name, evaluateHashhashOperators(macro.body)));
       } else {
         int tokensConsumedMatchingArgs = expandFunctionLikeMacro(macro.name,
                                                                  tokens.subList(1, tokens.size()),
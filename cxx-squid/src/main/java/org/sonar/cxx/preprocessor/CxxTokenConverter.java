@@ -0,0 +1,166 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import org.sonar.cxx.parser.CxxKeyword;
+import org.sonar.cxx.parser.CxxPunctuator;
+import org.sonar.cxx.parser.CxxTokenType;
+
+/**
+ * Converts preprocessor tokens (e.g. the body of a macro) into C++ tokens without lexing their serialized text again.
+ *
+ * The conversion creates the same tokens as {@code CxxLexer} would create for the values of the tokens separated by
+ * spaces. It is limited to the common tokens (identifiers, keywords, simple numbers and literals, punctuators). For
+ * all other values (e.g. results of the {@code ##} and {@code #} operators, a macro argument consisting of several
+ * tokens, right angle brackets which have to be split) the conversion fails and the caller has to use the lexer.
+ */
+final class CxxTokenConverter {
+
+  private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[a-zA-Z_]\\w*+");
+  private static final Pattern NUMBER_PATTERN = Pattern.compile(
+    "[0-9]++[uUlLzZ]*+"
+      + "|0[xX][0-9a-fA-F]++[uUlLzZ]*+"
+      + "|[0-9]*+\\.[0-9]++(?:[eE][+-]?[0-9]++)?[fFlL]?"
+      + "|[0-9]++\\.(?:[eE][+-]?[0-9]++)?[fFlL]?");
+  private static final Pattern STRING_PATTERN = Pattern.compile("\"(?:[^\"\\\\\\r\\n]|\\\\.)*+\"");
+  private static final Pattern CHARACTER_PATTERN = Pattern.compile("'(?:[^'\\\\\\r\\n]|\\\\.)++'");
+
+  private static final Map<String, TokenType> KEYWORDS = new HashMap<>();
+  private static final Map<String, TokenType> PUNCTUATORS = new HashMap<>();
+
+  static {
+    for (var keyword : CxxKeyword.values()) {
+      KEYWORDS.put(keyword.getValue(), keyword);
+    }
+    // nullptr is a pointer literal
+    KEYWORDS.put(CxxKeyword.NULLPTR.getValue(), CxxTokenType.NUMBER);
+    for (var punctuator : CxxPunctuator.values()) {
+      PUNCTUATORS.put(punctuator.getValue(), punctuator);
+    }
+  }
+
+  private CxxTokenConverter() {
+
+  }
+
+  /**
+   * Convert tokens into C++ tokens.
+   *
+   * @param tokens tokens to convert, blank tokens are skipped
+   * @return C++ tokens or null if the tokens cannot be converted without lexing them
+   */
+  @CheckForNull
+  static List<Token> convert(List<Token> tokens) {
+    var result = new ArrayList<Token>(tokens.size() + 1);
+
+    // state of RightAngleBracketsChannel
+    var angleBracketLevel = 0;
+    var parentheseLevel = 0;
+
+    for (var token : tokens) {
+      String value = token.getValue();
+      if (value.isBlank()) {
+        continue;
+      }
+      TokenType type = tokenType(value);
+      if (type == null) {
+        return null;
+      }
+
+      switch (value.charAt(0)) {
+        case '(':
+          if (angleBracketLevel > 0) {
+            parentheseLevel++;
+          }
+          break;
+        case ')':
+          if (parentheseLevel > 0) {
+            parentheseLevel--;
+          }
+          break;
+        case ';':
+          angleBracketLevel = 0;
+          parentheseLevel = 0;
+          break;
+        case '<':
+          if (parentheseLevel == 0 && (value.length() == 1 || (value.charAt(1) != '<' && value.charAt(1) != '='))) {
+            angleBracketLevel++;
+          }
+          break;
+        case '>':
+          if (angleBracketLevel > 0) {
+            if (value.length() > 1) {
+              // lexer splits >> into two closing angle brackets
+              return null;
+            }
+            if (parentheseLevel == 0) {
+              angleBracketLevel--;
+            }
+          }
+          break;
+        default:
+          break;
+      }
+
+      result.add(Token.builder()
+        .setLine(token.getLine())
+        .setColumn(token.getColumn())
+        .setURI(token.getURI())
+        .setValueAndOriginalValue(value)
+        .setType(type)
+        .build());
+    }
+
+    return result;
+  }
+
+  @CheckForNull
+  private static TokenType tokenType(String value) {
+    if (IDENTIFIER_PATTERN.matcher(value).matches()) {
+      for (var special : CppSpecialIdentifier.values()) {
+        if (special.getValue().equals(value)) {
+          // can start a preprocessor line (PreprocessorChannel)
+          return null;
+        }
+      }
+      return KEYWORDS.getOrDefault(value, IDENTIFIER);
+    }
+    if (NUMBER_PATTERN.matcher(value).matches()) {
+      return CxxTokenType.NUMBER;
+    }
+    if (STRING_PATTERN.matcher(value).matches()) {
+      return CxxTokenType.STRING;
+    }
+    if (CHARACTER_PATTERN.matcher(value).matches()) {
+      return CxxTokenType.CHARACTER;
+    }
+    return PUNCTUATORS.get(value);
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import com.sonar.sslr.api.AstNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import javax.annotation.CheckForNull;
+
+/**
+ * Cache for the results of constant expressions ({@code #if}, {@code #elif}).
+ *
+ * The result of an expression depends only on its text and on the values of the macros referenced during its
+ * evaluation. An entry stores these values together with the result; it matches as long as all referenced macros
+ * still have the same values (undefined macros included). Expressions with function-like macros or
+ * {@code __has_include} are not cached.
+ *
+ * Additionally the cache stores the parsed syntax trees of macro values, which are evaluated as sub-expressions.
+ *
+ * The cache is bounded: when it is full, new expressions are evaluated but not added. Entries are immutable and can be
+ * shared between threads.
+ */
+public class ExpressionCache {
+
+  static final int MAX_EXPRESSIONS = 20_000;
+  static final int MAX_VARIANTS = 8;
+
+  private final Map<String, List<Entry>> results = new ConcurrentHashMap<>();
+  private final Map<String, AstNode> syntaxTrees = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the cached result of an expression.
+   *
+   * @param expression text of the expression
+   * @param valueOf current value of a macro (null if undefined)
+   * @return result of the expression or null if there is no entry matching the current macro values
+   */
+  @CheckForNull
+  public Boolean get(String expression, UnaryOperator<String> valueOf) {
+    List<Entry> entries = results.get(expression);
+    if (entries != null) {
+      for (var entry : entries) {
+        if (entry.matches(valueOf)) {
+          return entry.result;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds the result of an expression to the cache.
+   *
+   * @param expression text of the expression
+   * @param macroValues macros referenced by the evaluation and their values (null if undefined)
+   * @param result result of the expression
+   */
+  public void put(String expression, Map<String, String> macroValues, boolean result) {
+    if (results.size() >= MAX_EXPRESSIONS && !results.containsKey(expression)) {
+      return;
+    }
+    var entry = new Entry(macroValues, result);
+    results.merge(expression, Collections.singletonList(entry), (entries, added) -> {
+      if (entries.size() >= MAX_VARIANTS) {
+        return entries;
+      }
+      var merged = new ArrayList<Entry>(entries.size() + 1);
+      merged.addAll(entries);
+      merged.add(entry);
+      return Collections.unmodifiableList(merged);
+    });
+  }
+
+  /**
+   * Returns the cached syntax tree of an expression (e.g. the value of a macro).
+   */
+  @CheckForNull
+  public AstNode getSyntaxTree(String expression) {
+    return syntaxTrees.get(expression);
+  }
+
+  public void putSyntaxTree(String expression, AstNode ast) {
+    if (syntaxTrees.size() < MAX_EXPRESSIONS) {
+      syntaxTrees.put(expression, ast);
+    }
+  }
+
+  public int size() {
+    return results.size();
+  }
+
+  public void clear() {
+    results.clear();
+    syntaxTrees.clear();
+  }
+
+  private static final class Entry {
+
+    private final String[] names;
+    private final String[] values;
+    private final boolean result;
+
+    private Entry(Map<String, String> macroValues, boolean result) {
+      names = new String[macroValues.size()];
+      values = new String[macroValues.size()];
+      var i = 0;
+      for (var macroValue : macroValues.entrySet()) {
+        names[i] = macroValue.getKey();
+        values[i] = macroValue.getValue();
+        i++;
+      }
+      this.result = result;
+    }
+
+    private boolean matches(UnaryOperator<String> valueOf) {
+      for (var i = 0; i < names.length; i++) {
+        if (!Objects.equals(values[i], valueOf.apply(names[i]))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+}
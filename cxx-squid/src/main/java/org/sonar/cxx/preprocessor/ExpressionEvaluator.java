@@ -26,14 +26,22 @@ import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Parser;
 import java.math.BigInteger;
 import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.parser.CxxTokenType;
 
+/**
+ * Evaluation of constant expressions ({@code #if}, {@code #elif}).
+ *
+ * Results of expressions are memoized in the {@link ExpressionCache} of the preprocessor.
+ */
 public final class ExpressionEvaluator {
 
   private static final BigInteger UINT64_MAX = new BigInteger("FFFFFFFFFFFFFFFF", 16);
@@ -41,20 +49,42 @@ public final class ExpressionEvaluator {
   private final Parser<Grammar> parser;
   private final CxxPreprocessor preprocessor;
   private final Deque<String> macroEvaluationStack;
+  private final ExpressionCache cache;
+
+  // referenced macros and their values (key of the memoized result)
+  private final Map<String, String> macroValues = new LinkedHashMap<>();
+  private boolean cacheable = true;
 
   private ExpressionEvaluator(CxxPreprocessor preprocessor) {
-    parser = CppParser.createConstantExpressionParser(preprocessor.getCharset());
+    parser = preprocessor.getConstantExpressionParser();
 
     this.preprocessor = preprocessor;
     macroEvaluationStack = new LinkedList<>();
+    cache = preprocessor.getExpressionCache();
   }
 
   public static boolean eval(CxxPreprocessor preprocessor, String constExpr) {
-    return new ExpressionEvaluator(preprocessor).evalToBoolean(constExpr, null);
+    var evaluator = new ExpressionEvaluator(preprocessor);
+    AstNode constExprAst = evaluator.parse(constExpr, null);
+    return constExprAst != null && evaluator.evalToBoolean(constExprAst);
   }
 
   public static boolean eval(CxxPreprocessor preprocessor, AstNode constExpr) {
-    return new ExpressionEvaluator(preprocessor).evalToBoolean(constExpr);
+    var cache = preprocessor.getExpressionCache();
+    String expression = constExpr.getTokens().stream()
+      .map(Token::getValue)
+      .collect(Collectors.joining(" "));
+    Boolean cached = cache.get(expression, preprocessor::valueOf);
+    if (cached != null) {
+      return cached;
+    }
+
+    var evaluator = new ExpressionEvaluator(preprocessor);
+    boolean result = evaluator.evalToBoolean(constExpr);
+    if (evaluator.cacheable) {
+      cache.put(expression, evaluator.macroValues, result);
+    }
+    return result;
   }
 
   public static BigInteger decode(String number) {
@@ -162,16 +192,36 @@ public final class ExpressionEvaluator {
     return sibling;
   }
 
-  private BigInteger evalToInt(String constExpr, @Nullable AstNode exprAst) {
-    AstNode constExprAst;
-    try {
-      constExprAst = parser.parse(constExpr);
-    } catch (com.sonar.sslr.api.RecognitionException e) {
-      if (exprAst != null) {
-        LOG.warn("preprocessor error evaluating expression '{}' for token '{}', assuming 0", constExpr, exprAst.getToken());
-      } else {
-        LOG.warn("preprocessor error evaluating expression '{}', assuming 0", constExpr);
+  @CheckForNull
+  private AstNode parse(String constExpr, @Nullable AstNode exprAst) {
+    AstNode constExprAst = cache.getSyntaxTree(constExpr);
+    if (constExprAst == null) {
+      try {
+        constExprAst = parser.parse(constExpr);
+      } catch (com.sonar.sslr.api.RecognitionException e) {
+        if (exprAst != null) {
+          LOG.warn("preprocessor error evaluating expression '{}' for token '{}', assuming 0", constExpr,
+                   exprAst.getToken());
+        } else {
+          LOG.warn("preprocessor error evaluating expression '{}', assuming 0", constExpr);
+        }
+        return null;
       }
+      cache.putSyntaxTree(constExpr, constExprAst);
+    }
+    return constExprAst;
+  }
+
+  @CheckForNull
+  private String valueOf(String macroName) {
+    String value = preprocessor.valueOf(macroName);
+    macroValues.put(macroName, value);
+    return value;
+  }
+
+  private BigInteger evalToInt(String constExpr, @Nullable AstNode exprAst) {
+    AstNode constExprAst = parse(constExpr, exprAst);
+    if (constExprAst == null) {
       return BigInteger.ZERO;
     }
 
@@ -193,10 +243,6 @@ public final class ExpressionEvaluator {
     return !BigInteger.ZERO.equals(evalToInt(exprAst));
   }
 
-  private boolean evalToBoolean(String constExpr, @Nullable AstNode exprAst) {
-    return !BigInteger.ZERO.equals(evalToInt(constExpr, exprAst));
-  }
-
   private BigInteger evalLeaf(AstNode exprAst) {
     // Evaluation of leafs
     //
@@ -215,7 +261,7 @@ public final class ExpressionEvaluator {
                   id, id, String.join(" <- ", macroEvaluationStack));
         return BigInteger.ONE;
       }
-      final String value = preprocessor.valueOf(id);
+      final String value = valueOf(id);
       if (value == null) {
         return BigInteger.ZERO;
       }
@@ -532,11 +578,14 @@ public final class ExpressionEvaluator {
     }
 
     String macroName = child.getNextSibling().getTokenValue();
-    String value = preprocessor.valueOf(macroName);
+    String value = valueOf(macroName);
     return value == null ? BigInteger.ZERO : BigInteger.ONE;
   }
 
   private BigInteger evalFunctionlikeMacro(AstNode exprAst) {
+    // the expansion depends on more than the values of the referenced macros
+    cacheable = false;
+
     String macroName = exprAst.getFirstChild().getTokenValue();
     List<Token> tokens = exprAst.getTokens();
     List<Token> restTokens = tokens.subList(1, tokens.size());
@@ -551,6 +600,8 @@ public final class ExpressionEvaluator {
   }
 
   private BigInteger evalHasIncludeExpression(AstNode exprAst) {
+    // depends on the file system and the include directories of the unit
+    cacheable = false;
     return preprocessor.expandHasIncludeExpression(exprAst) ? BigInteger.ONE : BigInteger.ZERO;
   }
 
@@ -0,0 +1,329 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import com.sonar.sslr.api.AstNode;
+import static com.sonar.sslr.api.GenericTokenType.EOF;
+import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
+import com.sonar.sslr.api.Token;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import static org.sonar.cxx.preprocessor.CppGrammarImpl.constantExpression;
+import static org.sonar.cxx.preprocessor.CppGrammarImpl.defineLine;
+import static org.sonar.cxx.preprocessor.CppGrammarImpl.elifLine;
+import static org.sonar.cxx.preprocessor.CppGrammarImpl.elseLine;
+import static org.sonar.cxx.preprocessor.CppGrammarImpl.endifLine;
+import static org.sonar.cxx.preprocessor.CppGrammarImpl.ifLine;
+import static org.sonar.cxx.preprocessor.CppGrammarImpl.ifdefLine;
+import static org.sonar.cxx.preprocessor.CppGrammarImpl.pragmaLine;
+import static org.sonar.cxx.preprocessor.CppKeyword.IFNDEF;
+
+/**
+ * Cache for lexed and parsed include files.
+ *
+ * Processing an include file depends on the macros defined at the time of inclusion, but lexing the file and parsing
+ * its preprocessor directives does not. The result of these steps is stored here, so that the preprocessor can replay
+ * the directives of a header for following translation units (and parallel workers) without reading and lexing the
+ * file again.
+ *
+ * The entries are keyed by the canonical path of the file, an entry is only valid as long as the modification time of
+ * the file does not change. Entries are immutable and can be shared between threads.
+ *
+ * The cache is bounded by the number of directives: scanning the system headers and Google Test, a cached directive
+ * (token, syntax tree of the line and macro) retained about 2 KB of heap, so a full cache retains about 100 MB. When
+ * the cache is full, new include files are processed but not added.
+ *
+ * Like GCC and Clang, the cache detects the include guard of a file when it is added: either {@code #pragma once} or a
+ * macro guarding the whole file ({@code #ifndef X / #define X ... #endif}). With this information the preprocessor
+ * can skip an include without replaying the directives of the file.
+ */
+public class HeaderCache {
+
+  static final int MAX_DIRECTIVES = 50_000;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicInteger directiveCount = new AtomicInteger();
+
+  /**
+   * Returns the cached entry of an include file. The modification time of the file is checked once here, the entry
+   * provides both the guard and the directives of the file.
+   *
+   * @param file canonical include file
+   * @return entry of the file or null if the file is not in the cache or was modified in the meantime
+   */
+  @CheckForNull
+  public Entry get(File file) {
+    var entry = entries.get(file.getPath());
+    if (entry != null && entry.lastModified == file.lastModified()) {
+      return entry;
+    }
+    return null;
+  }
+
+  /**
+   * Adds the directives of an include file to the cache (if it is not full).
+   *
+   * @param file canonical include file
+   * @param directives preprocessor directives of the file (in order of occurrence)
+   * @param contentHash hash of the content the directives were read from
+   * @return entry of the file, also if it was not added to the cache
+   */
+  public Entry put(File file, List<Directive> directives, String contentHash) {
+    var entry = new Entry(file.lastModified(), Collections.unmodifiableList(directives), detectGuard(directives),
+                          contentHash);
+    entries.compute(file.getPath(), (key, previous) -> {
+      if (previous != null) {
+        directiveCount.addAndGet(-previous.weight());
+      }
+      if (directiveCount.addAndGet(entry.weight()) > MAX_DIRECTIVES) {
+        directiveCount.addAndGet(-entry.weight());
+        return null;
+      }
+      return entry;
+    });
+    return entry;
+  }
+
+  /**
+   * Detects the include guard of a file from its directives.
+   *
+   * A guard macro is detected if the first directive is {@code #ifndef X}, {@code #if !defined X} or
+   * {@code #if !defined(X)}, the second directive is {@code #define X} and the last directive is the {@code #endif}
+   * of the first one (without {@code #elif} or {@code #else} in between). {@code #pragma once} is detected outside of
+   * conditional blocks or inside of the guarded block.
+   *
+   * @param directives preprocessor directives of the file (in order of occurrence)
+   * @return include guard or null if the file has no guard
+   */
+  @CheckForNull
+  static Guard detectGuard(List<Directive> directives) {
+    String macroName = null;
+    if (directives.size() >= 3) {
+      macroName = guardedMacroName(directives.get(0).getLineAst());
+      var define = directives.get(1).getMacro();
+      if (define == null || !define.name.equals(macroName)) {
+        macroName = null;
+      }
+    }
+
+    var pragmaOnce = false;
+    var pragmaOnceInGuard = false;
+    var depth = 0;
+    var index = 0;
+    for (var directive : directives) {
+      var lineAst = directive.getLineAst();
+      if (lineAst != null) {
+        var type = lineAst.getType();
+        if (type.equals(ifLine) || type.equals(ifdefLine)) {
+          depth++;
+        } else if (type.equals(endifLine)) {
+          depth--;
+          if (depth == 0 && index != directives.size() - 1) {
+            // the guard block ends before the end of the file
+            macroName = null;
+          }
+        } else if ((type.equals(elifLine) || type.equals(elseLine)) && depth == 1) {
+          macroName = null;
+        } else if (type.equals(pragmaLine) && depth == 0) {
+          pragmaOnce |= isPragmaOnce(lineAst);
+        } else if (type.equals(pragmaLine) && depth == 1) {
+          pragmaOnceInGuard |= isPragmaOnce(lineAst);
+        }
+      }
+      index++;
+    }
+    if (depth != 0) {
+      macroName = null;
+    }
+    if (macroName != null) {
+      pragmaOnce |= pragmaOnceInGuard;
+    }
+
+    if (macroName == null && !pragmaOnce) {
+      return null;
+    }
+    return new Guard(macroName, pragmaOnce);
+  }
+
+  @CheckForNull
+  private static String guardedMacroName(@Nullable AstNode lineAst) {
+    if (lineAst != null) {
+      if (lineAst.getType().equals(ifdefLine)) {
+        if (lineAst.getToken().getType().equals(IFNDEF)) {
+          return lineAst.getFirstDescendant(IDENTIFIER).getTokenValue();
+        }
+      } else if (lineAst.getType().equals(ifLine)) {
+        // #if !defined X, #if !defined(X)
+        var expression = lineAst.getFirstDescendant(constantExpression);
+        List<String> values = expression == null ? Collections.emptyList() : nonBlankValues(expression);
+        if (values.size() == 3 && "!".equals(values.get(0)) && "defined".equals(values.get(1))) {
+          return values.get(2);
+        }
+        if (values.size() == 5 && "!".equals(values.get(0)) && "defined".equals(values.get(1))
+              && "(".equals(values.get(2)) && ")".equals(values.get(4))) {
+          return values.get(3);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static boolean isPragmaOnce(AstNode lineAst) {
+    List<String> values = nonBlankValues(lineAst);
+    return values.size() == 2 && "once".equals(values.get(1));
+  }
+
+  private static List<String> nonBlankValues(AstNode ast) {
+    return ast.getTokens().stream()
+      .filter(token -> !token.getType().equals(EOF))
+      .map(Token::getValue)
+      .filter(value -> !value.isBlank())
+      .collect(Collectors.toList());
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public void clear() {
+    entries.clear();
+    directiveCount.set(0);
+  }
+
+  /**
+   * A preprocessor directive (line) of an include file.
+   */
+  public static final class Directive {
+
+    private final Token token;
+    private final AstNode lineAst;
+    private final Macro macro;
+
+    /**
+     * @param token PREPROCESSOR token created by the {@code IncludeLexer}
+     * @param lineAst parsed preprocessor line, null in case of a syntax error
+     * @param macro parsed macro in case of a {@code #define}, otherwise null
+     */
+    public Directive(Token token, @Nullable AstNode lineAst, @Nullable Macro macro) {
+      this.token = token;
+      this.lineAst = lineAst;
+      this.macro = macro;
+    }
+
+    public Token getToken() {
+      return token;
+    }
+
+    @CheckForNull
+    public AstNode getLineAst() {
+      return lineAst;
+    }
+
+    @CheckForNull
+    public Macro getMacro() {
+      return macro;
+    }
+
+  }
+
+  /**
+   * Include guard of a file.
+   */
+  public static final class Guard {
+
+    private final String macroName;
+    private final boolean pragmaOnce;
+
+    Guard(@Nullable String macroName, boolean pragmaOnce) {
+      this.macroName = macroName;
+      this.pragmaOnce = pragmaOnce;
+    }
+
+    /**
+     * Macro guarding the file: including the file has no effect as long as the macro is defined.
+     */
+    @CheckForNull
+    public String getMacroName() {
+      return macroName;
+    }
+
+    /**
+     * The file contains {@code #pragma once}: it has to be processed only once per translation unit.
+     */
+    public boolean isPragmaOnce() {
+      return pragmaOnce;
+    }
+
+  }
+
+  /**
+   * Cached include file.
+   */
+  public static final class Entry {
+
+    private final long lastModified;
+    private final List<Directive> directives;
+    private final Guard guard;
+    private final String contentHash;
+
+    private Entry(long lastModified, List<Directive> directives, @Nullable Guard guard, String contentHash) {
+      this.lastModified = lastModified;
+      this.directives = directives;
+      this.guard = guard;
+      this.contentHash = contentHash;
+    }
+
+    /**
+     * Preprocessor directives of the file (in order of occurrence).
+     */
+    public List<Directive> getDirectives() {
+      return directives;
+    }
+
+    /**
+     * Include guard of the file, null if the file has no guard.
+     */
+    @CheckForNull
+    public Guard getGuard() {
+      return guard;
+    }
+
+    /**
+     * Hash of the content of the file, see {@link SourceCodeProvider#contentHash(byte[])}.
+     */
+    public String getContentHash() {
+      return contentHash;
+    }
+
+    private int weight() {
+      // files without directives are counted as well
+      return directives.size() + 1;
+    }
+
+  }
+
+}
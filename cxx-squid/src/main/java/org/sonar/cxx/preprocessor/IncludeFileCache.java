@@ -0,0 +1,199 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Cache for the file system lookups of the include file search.
+ *
+ * Searching an include file checks the existence of the file in many directories (directory of the including file,
+ * include directories). Instead of a file system call for each check, the content of each searched directory is
+ * listed once. Names which are not in the listing (the typical case when searching through many include directories)
+ * are answered from the listing, existing names are checked once with the file system. Canonical paths of found
+ * files are cached as well.
+ *
+ * Additionally the cache stores the results of the include directory search (including misses) per list of include
+ * directories, so that repeated lookups like {@code #include <vector>} cost only a hash lookup.
+ *
+ * The cache assumes that the file system does not change during the analysis. It is thread safe and shared by all
+ * preprocessors using the same configuration.
+ */
+public class IncludeFileCache {
+
+  private static final Logger LOG = Loggers.get(IncludeFileCache.class);
+
+  private final Map<Path, Listing> listings = new ConcurrentHashMap<>();
+  private final Map<Path, Boolean> regularFiles = new ConcurrentHashMap<>();
+  private final Map<File, File> canonicalFiles = new ConcurrentHashMap<>();
+  private final Map<List<Path>, Map<String, Resolution>> resolutions = new ConcurrentHashMap<>();
+
+  /**
+   * Same as {@link Files#isRegularFile}, but uses the listing of the parent directory.
+   *
+   * @param path path to check
+   * @return true if the file exists and is a regular file
+   */
+  public boolean isRegularFile(Path path) {
+    var parent = path.getParent();
+    var name = path.getFileName();
+    if (parent != null && name != null) {
+      var listing = listings.computeIfAbsent(parent, IncludeFileCache::list);
+      if (!listing.mayContain(name.toString())) {
+        return false;
+      }
+    }
+    return regularFiles.computeIfAbsent(path, Files::isRegularFile);
+  }
+
+  public boolean isRegularFile(File file) {
+    return isRegularFile(file.toPath());
+  }
+
+  /**
+   * Cached {@link File#getCanonicalFile()}.
+   *
+   * @param file existing file
+   * @return canonical file or the file itself if the canonical form cannot be determined
+   */
+  public File getCanonicalFile(File file) {
+    return canonicalFiles.computeIfAbsent(file, key -> {
+      try {
+        return key.getCanonicalFile();
+      } catch (java.io.IOException e) {
+        LOG.error("preprocessor: cannot get canonical form of: '{}'", key);
+        return key;
+      }
+    });
+  }
+
+  /**
+   * Results of the search in a list of include directories.
+   *
+   * @param includeRoots include directories in search order (list must not be modified afterwards)
+   * @return map from include file name to the result of the search
+   */
+  public Map<String, Resolution> getResolutions(List<Path> includeRoots) {
+    return resolutions.computeIfAbsent(includeRoots, key -> new ConcurrentHashMap<>());
+  }
+
+  public void clear() {
+    listings.clear();
+    regularFiles.clear();
+    canonicalFiles.clear();
+    resolutions.clear();
+  }
+
+  /**
+   * Result of the search of an include file in a list of include directories.
+   */
+  public static final class Resolution {
+
+    static final Resolution NOT_FOUND = new Resolution(null, -1);
+
+    private final File file;
+    private final int rootIndex;
+
+    Resolution(@Nullable File file, int rootIndex) {
+      this.file = file;
+      this.rootIndex = rootIndex;
+    }
+
+    /**
+     * Canonical file found, null if the file is in none of the include directories.
+     */
+    @CheckForNull
+    public File getFile() {
+      return file;
+    }
+
+    /**
+     * Index of the include directory containing the file, -1 if the file was not found.
+     */
+    public int getRootIndex() {
+      return rootIndex;
+    }
+
+  }
+
+  private static Listing list(Path directory) {
+    var names = new HashSet<String>();
+    try (var stream = Files.newDirectoryStream(directory)) {
+      for (var entry : stream) {
+        var name = entry.getFileName();
+        if (name != null) {
+          names.add(name.toString());
+        }
+      }
+    } catch (NoSuchFileException | NotDirectoryException e) {
+      // directory does not exist: contains no files
+      return Listing.EMPTY;
+    } catch (IOException | DirectoryIteratorException e) {
+      // not readable: answer all requests with the file system
+      return Listing.UNKNOWN;
+    }
+    return new Listing(names);
+  }
+
+  private static final class Listing {
+
+    private static final Listing UNKNOWN = new Listing(null);
+    private static final Listing EMPTY = new Listing(Collections.emptySet());
+
+    private final Set<String> names;
+    private final Set<String> lowerCaseNames;
+
+    private Listing(@Nullable Set<String> names) {
+      this.names = names;
+      if (names != null) {
+        // on case insensitive file systems a name can differ in case from the listed name
+        lowerCaseNames = new HashSet<>(names.size());
+        for (var name : names) {
+          lowerCaseNames.add(name.toLowerCase(Locale.ROOT));
+        }
+      } else {
+        lowerCaseNames = Collections.emptySet();
+      }
+    }
+
+    private boolean mayContain(String name) {
+      return names == null || names.contains(name) || lowerCaseNames.contains(name.toLowerCase(Locale.ROOT));
+    }
+
+  }
+
+}
@@ -21,20 +21,46 @@ package org.sonar.cxx.preprocessor;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * MapChain
  *
+ * A map with an optional parent layer. Lookups which are not found in the own layer are delegated to the parent, all
+ * modifications (including removals) are stored in the own layer only. This allows to use a large map of common
+ * entries (e.g. the project macros) for many short living maps (e.g. the macros of a translation unit) without copying
+ * it. The parent must not be modified as long as a child uses it.
+ *
+ * Entries can be temporarily disabled: a disabled key is not visible until it is enabled again.
+ *
  * @param <K>
  * @param <V>
  *
  */
 public class MapChain<K, V> {
 
-  private final Map<K, V> enabled = new HashMap<>();
-  private final Map<K, V> disabled = new HashMap<>();
+  private static final Object REMOVED = new Object();
+
+  private final MapChain<K, V> parent;
+  // own entries, REMOVED hides an entry of the parent
+  private final Map<K, Object> layer = new HashMap<>();
+  private final Set<K> disabled = new HashSet<>();
+
+  public MapChain() {
+    this(null);
+  }
+
+  /**
+   * Create a new layer on top of parent.
+   *
+   * @param parent parent layer which is not modified by this map (can be null)
+   */
+  public MapChain(MapChain<K, V> parent) {
+    this.parent = parent;
+  }
 
   /**
    * get
@@ -43,7 +69,10 @@ public class MapChain<K, V> {
    * @return V
    */
   public V get(Object key) {
-    return enabled.get(key);
+    if (!disabled.isEmpty() && disabled.contains(key)) {
+      return null;
+    }
+    return lookup(key);
   }
 
   /**
@@ -54,16 +83,27 @@ public class MapChain<K, V> {
    * @return V
    */
   public V put(K key, V value) {
-    return enabled.put(key, value);
+    return unwrap(layer.put(key, value), key);
   }
 
   public void putAll(Map<K, V> m) {
-    enabled.putAll(m);
+    layer.putAll(m);
   }
 
+  /**
+   * Copies all entries of all layers of m, disabled entries stay disabled.
+   *
+   * @param m entries to copy
+   */
   public void putAll(MapChain<K, V> m) {
-    enabled.putAll(m.enabled);
-    disabled.putAll(m.disabled);
+    layer.putAll(m.getMap());
+    for (var key : m.disabled) {
+      V value = m.lookup(key);
+      if (value != null) {
+        layer.put(key, value);
+        disabled.add(key);
+      }
+    }
   }
 
   /**
@@ -73,15 +113,21 @@ public class MapChain<K, V> {
    * @return V
    */
   public V remove(K key) {
-    return enabled.remove(key);
+    if (parent != null && parent.lookup(key) != null) {
+      return unwrap(layer.put(key, REMOVED), key);
+    }
+    return unwrap(layer.remove(key), key);
   }
 
   /**
    * clear
    */
   public void clear() {
-    enabled.clear();
+    layer.clear();
     disabled.clear();
+    if (parent != null) {
+      parent.getMap().keySet().forEach(key -> layer.put(key, REMOVED));
+    }
   }
 
   /**
@@ -90,7 +136,9 @@ public class MapChain<K, V> {
    * @param key
    */
   public void disable(K key) {
-    move(key, enabled, disabled);
+    if (lookup(key) != null) {
+      disabled.add(key);
+    }
   }
 
   /**
@@ -99,26 +147,53 @@ public class MapChain<K, V> {
    * @param key
    */
   public void enable(K key) {
-    move(key, disabled, enabled);
+    disabled.remove(key);
   }
 
+  /**
+   * Returns all enabled entries of all layers.
+   *
+   * @return unmodifiable map
+   */
   public Map<K, V> getMap() {
-    return Collections.unmodifiableMap(enabled);
+    Map<K, V> result = parent != null ? new HashMap<>(parent.getMap()) : new HashMap<>();
+    for (var entry : layer.entrySet()) {
+      if (entry.getValue() == REMOVED) {
+        result.remove(entry.getKey());
+      } else {
+        result.put(entry.getKey(), cast(entry.getValue()));
+      }
+    }
+    result.keySet().removeAll(disabled);
+    return Collections.unmodifiableMap(result);
   }
 
   @Override
   public String toString() {
-    String mapAsString = enabled.values().stream()
+    String mapAsString = getMap().values().stream()
       .map(value -> value.toString())
       .collect(Collectors.joining(", ", "[", "]"));
     return mapAsString;
   }
 
-  private void move(K key, Map<K, V> from, Map<K, V> to) {
-    V value = from.remove(key);
-    if (value != null) {
-      to.put(key, value);
+  private V lookup(Object key) {
+    Object value = layer.get(key);
+    if (value == null) {
+      return parent != null ? parent.get(key) : null;
+    }
+    return value != REMOVED ? cast(value) : null;
+  }
+
+  private V unwrap(Object previous, Object key) {
+    if (previous == null) {
+      return parent != null ? parent.get(key) : null;
     }
+    return previous != REMOVED ? cast(previous) : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V cast(Object value) {
+    return (V) value;
   }
 
 }
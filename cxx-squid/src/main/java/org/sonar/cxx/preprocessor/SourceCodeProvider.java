@@ -20,21 +20,29 @@
 package org.sonar.cxx.preprocessor;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.io.ByteOrderMark;
-import org.apache.commons.io.input.BOMInputStream;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
@@ -47,20 +55,68 @@ public class SourceCodeProvider {
 
   private static final Logger LOG = Loggers.get(SourceCodeProvider.class);
 
+  private static final ByteOrderMark[] BOMS = {
+    ByteOrderMark.UTF_32LE,
+    ByteOrderMark.UTF_32BE,
+    ByteOrderMark.UTF_8,
+    ByteOrderMark.UTF_16LE,
+    ByteOrderMark.UTF_16BE
+  };
+
   private final List<Path> includeRoots = new LinkedList<>();
   private final Deque<State> ppState = new LinkedList<>();
   private final File contextFile;
+  private final IncludeFileCache fileCache;
+  private Map<String, IncludeFileCache.Resolution> includeRootResolutions = null;
+  // candidates of the include file search which did not exist, names already looked up in the include roots
+  private final Set<String> absentFiles = new HashSet<>();
+  private final Set<String> includeRootLookups = new HashSet<>();
   private String fileUnderAnalysisPath;
 
   public SourceCodeProvider(File contextFile) {
+    this(contextFile, new IncludeFileCache());
+  }
+
+  /**
+   * @param contextFile file under analysis
+   * @param fileCache file system lookups, can be shared with other source code providers
+   */
+  public SourceCodeProvider(File contextFile, IncludeFileCache fileCache) {
     // In case "physical" file is preprocessed, SquidAstVisitorContext::getFile() cannot return null.
     // Did you forget to setup the mock properly?
     Objects.requireNonNull(contextFile, "SquidAstVisitorContext::getFile() must be non-null!");
     pushFileState(contextFile);
     this.contextFile = contextFile;
+    this.fileCache = fileCache;
   }
 
   public void setIncludeRoots(List<String> roots, String baseDir) {
+    includeRoots.addAll(resolveIncludeRoots(roots, baseDir));
+    includeRootResolutions = null;
+    includeRootLookups.clear();
+  }
+
+  /**
+   * Add already resolved include directories (see {@link #resolveIncludeRoots(List, String)}).
+   *
+   * @param roots existing include directories
+   */
+  public void addIncludeRoots(List<Path> roots) {
+    includeRoots.addAll(roots);
+    includeRootResolutions = null;
+    includeRootLookups.clear();
+  }
+
+  /**
+   * Convert include directories to real paths. Relative paths are resolved against baseDir, not existing directories
+   * are skipped.
+   *
+   * @param roots include directories
+   * @param baseDir base directory for relative paths
+   * @return list of existing include directories
+   */
+  public static List<Path> resolveIncludeRoots(List<String> roots, String baseDir) {
+    var result = new ArrayList<Path>(roots.size());
     for (var root : roots) {
       var path = Paths.get(root);
       try {
@@ -70,7 +126,7 @@ public class SourceCodeProvider {
         path = path.toRealPath(); // IOException if the file does not exist
 
         if (Files.isDirectory(path)) {
-          includeRoots.add(path);
+          result.add(path);
         } else {
           LOG.warn("preprocessor: invalid include file directory '{}'", path.toString());
         }
@@ -78,6 +134,7 @@ public class SourceCodeProvider {
         LOG.error("preprocessor: invalid include file directory '{}'", path.toString());
       }
     }
+    return result;
   }
 
   public List<Path> getIncludeRoots() {
@@ -146,8 +203,10 @@ public class SourceCodeProvider {
     // If the file name is fully specified for an include file that has a path that includes a colon
     // (for example F:\MSVC\SPECIAL\INCL\TEST.H) the preprocessor follows the path.
     if (file.isAbsolute()) {
-      if (file.isFile()) {
+      if (fileCache.isRegularFile(file)) {
         result = file;
+      } else {
+        absentFiles.add(file.getPath());
       }
     } else {
       if (quoted) {
@@ -157,10 +216,11 @@ public class SourceCodeProvider {
           cwd = ".";
         }
         var abspath = new File(new File(cwd), file.getPath());
-        if (abspath.isFile()) {
+        if (fileCache.isRegularFile(abspath)) {
           // 1) In the same directory as the file that contains the #include statement.
           result = abspath;
         } else {
+          absentFiles.add(abspath.getPath());
           result = null; // 3) fallback to use include paths instead of local folder
 
           // 2) In the directories of the currently opened include files, in the reverse order in which they were opened.
@@ -169,10 +229,11 @@ public class SourceCodeProvider {
           for (var parent : ppState) {
             if (parent.fileUnderAnalysis != contextFile) {
               abspath = new File(parent.fileUnderAnalysis.getParentFile(), file.getPath());
-              if (abspath.exists()) {
+              if (fileCache.isRegularFile(abspath)) {
                 result = abspath;
                 break;
               }
+              absentFiles.add(abspath.getPath());
             }
           }
         }
@@ -181,39 +242,163 @@ public class SourceCodeProvider {
       // Angle-bracket form: lookup relative to to the include roots.
       // The quoted case falls back to this, if its special handling wasn't successful.
       if (result == null) {
-        for (var path : includeRoots) {
-          var abspath = path.resolve(filename);
-          if (Files.isRegularFile(abspath)) {
-            result = abspath.toFile();
-            break;
-          }
-        }
+        return findInIncludeRoots(filename);
       }
     }
 
     if (result != null) {
-      try {
-        result = result.getCanonicalFile();
-      } catch (java.io.IOException e) {
-        LOG.error("preprocessor: cannot get canonical form of: '{}'", result);
-      }
+      result = fileCache.getCanonicalFile(result);
     }
 
     return result;
   }
 
+  @CheckForNull
+  private File findInIncludeRoots(String filename) {
+    if (includeRootResolutions == null) {
+      includeRootResolutions = fileCache.getResolutions(List.copyOf(includeRoots));
+    }
+    var resolution = includeRootResolutions.computeIfAbsent(filename, key -> {
+      for (var i = 0; i < includeRoots.size(); i++) {
+        var abspath = includeRoots.get(i).resolve(key);
+        if (fileCache.isRegularFile(abspath)) {
+          return new IncludeFileCache.Resolution(fileCache.getCanonicalFile(abspath.toFile()), i);
+        }
+      }
+      return IncludeFileCache.Resolution.NOT_FOUND;
+    });
+    if (includeRootLookups.add(filename)) {
+      // the file is searched in the include roots before the one containing it (all if it was not found)
+      int end = resolution.getFile() != null ? resolution.getRootIndex() : includeRoots.size();
+      for (var i = 0; i < end; i++) {
+        absentFiles.add(includeRoots.get(i).resolve(filename).toString());
+      }
+    }
+    return resolution.getFile();
+  }
+
+  /**
+   * Files which were searched by {@link #getSourceCodeFile} but did not exist: missing include files and the
+   * candidates checked before the file was found. If one of them is created, an include can resolve to another file.
+   *
+   * @return absent files (paths)
+   */
+  public Set<String> getAbsentFiles() {
+    return absentFiles;
+  }
+
+  /**
+   * Read the content of a file. A byte order mark (BOM) overrides the default charset.
+   *
+   * Files are read into a single, exactly sized buffer and decoded into a compact String, without intermediate
+   * buffers.
+   *
+   * @param file file to read
+   * @param defaultCharset charset to use if the file has no BOM
+   * @return content of the file (without BOM)
+   * @throws IOException if the file cannot be read
+   */
   public String getSourceCode(File file, Charset defaultCharset) throws IOException {
-    try ( var bomInputStream = new BOMInputStream(new FileInputStream(file),
-                                              ByteOrderMark.UTF_8,
-                                              ByteOrderMark.UTF_16LE,
-                                              ByteOrderMark.UTF_16BE,
-                                              ByteOrderMark.UTF_32LE,
-                                              ByteOrderMark.UTF_32BE)) {
-      ByteOrderMark bom = bomInputStream.getBOM();
-      Charset charset = bom != null ? Charset.forName(bom.getCharsetName()) : defaultCharset;
-      byte[] bytes = bomInputStream.readAllBytes();
-      return new String(bytes, charset);
+    return read(file, defaultCharset, null);
+  }
+
+  /**
+   * Read the content of a file like {@link #getSourceCode(File, Charset)} and add the bytes read to a digest, e.g. to
+   * detect later changes of the file with {@link #contentHash(byte[])}.
+   *
+   * @param file file to read
+   * @param defaultCharset charset to use if the file has no BOM
+   * @param digest digest created by {@link #newContentDigest()}
+   * @return content of the file (without BOM)
+   * @throws IOException if the file cannot be read
+   */
+  public String getSourceCode(File file, Charset defaultCharset, MessageDigest digest) throws IOException {
+    return read(file, defaultCharset, digest);
+  }
+
+  /**
+   * Digest for the hash of the content of a file (SHA-256).
+   */
+  public static MessageDigest newContentDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Hash of the content of a file (hex encoded), same as a digest of {@link #getSourceCode(File, Charset,
+   * MessageDigest)} converted with {@link #toHex(MessageDigest)}.
+   */
+  public static String contentHash(byte[] bytes) {
+    var digest = newContentDigest();
+    digest.update(bytes);
+    return toHex(digest);
+  }
+
+  /**
+   * Complete the digest and encode the hash as hex string.
+   */
+  public static String toHex(MessageDigest digest) {
+    byte[] bytes = digest.digest();
+    var hex = new StringBuilder(bytes.length * 2);
+    for (var b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  private static String read(File file, Charset defaultCharset, @Nullable MessageDigest digest) throws IOException {
+    try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE - 8L) {
+        throw new IOException("File too large: " + file);
+      }
+      return read(channel, (int) size, defaultCharset, digest);
+    }
+  }
+
+  /**
+   * Read up to size bytes from the channel. If the file got shorter after its size was queried, only the bytes
+   * actually read are decoded.
+   */
+  static String read(ReadableByteChannel channel, int size, Charset defaultCharset, @Nullable MessageDigest digest)
+    throws IOException {
+    var bytes = new byte[size];
+    var buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+      // read until the end of the file
+    }
+    int length = buffer.position();
+    if (digest != null) {
+      digest.update(bytes, 0, length);
+    }
+    ByteOrderMark bom = detectBOM(buffer.flip());
+    if (bom == null) {
+      return new String(bytes, 0, length, defaultCharset);
+    }
+    return new String(bytes, bom.length(), length - bom.length(), Charset.forName(bom.getCharsetName()));
+  }
+
+  /**
+   * Detect the byte order mark at the start of the buffer (without moving its position).
+   */
+  @CheckForNull
+  private static ByteOrderMark detectBOM(ByteBuffer buffer) {
+    // longest BOMs first: UTF-32LE starts with the UTF-16LE BOM
+    for (var bom : BOMS) {
+      if (buffer.remaining() >= bom.length()) {
+        var matches = true;
+        for (var i = 0; i < bom.length() && matches; i++) {
+          matches = (buffer.get(buffer.position() + i) & 0xFF) == bom.get(i);
+        }
+        if (matches) {
+          return bom;
+        }
+      }
     }
+    return null;
   }
 
   private static class State {
@@ -21,25 +21,34 @@ package org.sonar.cxx.visitors;
 
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.AstNode;
-import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.sonar.cxx.api.CxxMetric;
-import org.sonar.cxx.parser.CxxTokenType;
 import org.sonar.cxx.config.CxxSquidConfiguration;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.squidbridge.SquidAstVisitor;
 
-public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+/**
+ * Visitor that collects the tokens for the copy-paste detection.
+ *
+ * {@link org.sonar.cxx.CxxAstScanner} adds the visitor to a {@link CxxTokenMetricsVisitor}, which classifies the
+ * tokens. Registered as AST visitor alone, the visitor classifies the tokens itself.
+ */
+public class CxxCpdVisitor extends SquidAstVisitor<Grammar>
+  implements AstAndTokenVisitor, CxxTokenMetricsVisitor.TokenConsumer {
 
   private final boolean ignoreLiterals;
   private final boolean ignoreIdentifiers;
   private int isFunctionDefinition;
 
-  private List<CpdToken> cpdTokens = null;
+  private CpdTokens cpdTokens = null;
+  private boolean connected;
 
   public CxxCpdVisitor(CxxSquidConfiguration squidConfig) {
     this.ignoreLiterals = squidConfig.getBoolean(CxxSquidConfiguration.SONAR_PROJECT_PROPERTIES,
@@ -48,6 +57,11 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
                                                     CxxSquidConfiguration.CPD_IGNORE_IDENTIFIERS).orElse(Boolean.FALSE);
   }
 
+  @Override
+  public void setTokenMetricsVisitor(CxxTokenMetricsVisitor visitor) {
+    connected = true;
+  }
+
   @Override
   public void init() {
     subscribeTo(CxxGrammarImpl.functionDefinition);
@@ -55,7 +69,7 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
 
   @Override
   public void visitFile(@Nullable AstNode astNode) {
-    cpdTokens = new ArrayList<>();
+    cpdTokens = new CpdTokens();
   }
 
   @Override
@@ -74,45 +88,104 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
     isFunctionDefinition--;
   }
 
+  /**
+   * Called by the AST walker: classifies the token itself if the visitor is not added to a
+   * {@link CxxTokenMetricsVisitor}, which passes the tokens otherwise.
+   */
   @Override
   public void visitToken(Token token) {
+    if (!connected) {
+      visitToken(token, CxxTokenMetricsVisitor.classify(token));
+    }
+  }
+
+  @Override
+  public void visitToken(Token token, int tokenClass) {
     if (isFunctionDefinition > 0 && !token.isGeneratedCode()) {
       String text;
-      if (ignoreIdentifiers && token.getType().equals(GenericTokenType.IDENTIFIER)) {
-        text = "_I";
-      } else if (ignoreLiterals && token.getType().equals(CxxTokenType.NUMBER)) {
-        text = "_N";
-      } else if (ignoreLiterals && token.getType().equals(CxxTokenType.STRING)) {
-        text = "_S";
-      } else if (ignoreLiterals && token.getType().equals(CxxTokenType.CHARACTER)) {
-        text = "_C";
-      } else if (token.getType().equals(GenericTokenType.EOF)) {
-        return;
-      } else {
-        text = token.getValue();
+      switch (tokenClass) {
+        case CxxTokenMetricsVisitor.IDENTIFIER:
+          text = ignoreIdentifiers ? "_I" : token.getValue();
+          break;
+        case CxxTokenMetricsVisitor.NUMBER:
+          text = ignoreLiterals ? "_N" : token.getValue();
+          break;
+        case CxxTokenMetricsVisitor.STRING:
+          text = ignoreLiterals ? "_S" : token.getValue();
+          break;
+        case CxxTokenMetricsVisitor.CHARACTER:
+          text = ignoreLiterals ? "_C" : token.getValue();
+          break;
+        case CxxTokenMetricsVisitor.EOF:
+          return;
+        default:
+          text = token.getValue();
+          break;
       }
 
-      cpdTokens.add(new CpdToken(token.getLine(), token.getColumn(),
-                                 token.getLine(), token.getColumn() + token.getValue().length(),
-                                 text));
+      cpdTokens.add(token.getLine(), token.getColumn(),
+                    token.getLine(), token.getColumn() + token.getValue().length(),
+                    text);
     }
   }
 
-  public static class CpdToken {
+  /**
+   * Tokens of a file for the copy paste detection.
+   *
+   * Instead of an object per token, the positions of all tokens are stored in one array (startLine, startColumn,
+   * endLine, endColumn per token) and the text of a token as index into the table of the distinct texts of the file.
+   */
+  public static final class CpdTokens {
+
+    private static final int FIELDS = 4;
+
+    private int[] positions = new int[FIELDS * 256];
+    private int[] texts = new int[256];
+    private int size = 0;
+    private final List<String> textTable = new ArrayList<>();
+    private final Map<String, Integer> textIndex = new HashMap<>();
+
+    void add(int startLine, int startColumn, int endLine, int endColumn, String text) {
+      if (size == texts.length) {
+        texts = Arrays.copyOf(texts, size * 2);
+        positions = Arrays.copyOf(positions, size * 2 * FIELDS);
+      }
+      var offset = size * FIELDS;
+      positions[offset] = startLine;
+      positions[offset + 1] = startColumn;
+      positions[offset + 2] = endLine;
+      positions[offset + 3] = endColumn;
+      texts[size] = textIndex.computeIfAbsent(text, key -> {
+        textTable.add(key);
+        return textTable.size() - 1;
+      });
+      size++;
+    }
 
-    public final int startLine;
-    public final int startCol;
-    public final int endLine;
-    public final int endCol;
-    public final String token;
+    public int size() {
+      return size;
+    }
+
+    public int startLine(int index) {
+      return positions[index * FIELDS];
+    }
+
+    public int startColumn(int index) {
+      return positions[index * FIELDS + 1];
+    }
 
-    CpdToken(int startLine, int startCol, int endLine, int endCol, String token) {
-      this.startLine = startLine;
-      this.startCol = startCol;
-      this.endLine = endLine;
-      this.endCol = endCol;
-      this.token = token;
+    public int endLine(int index) {
+      return positions[index * FIELDS + 2];
     }
+
+    public int endColumn(int index) {
+      return positions[index * FIELDS + 3];
+    }
+
+    public String text(int index) {
+      return textTable.get(texts[index]);
+    }
+
   }
 
 }
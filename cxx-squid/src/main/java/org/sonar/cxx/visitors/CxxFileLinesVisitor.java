@@ -21,10 +21,9 @@ package org.sonar.cxx.visitors;
 
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.AstNode;
-import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.cxx.api.CxxMetric;
@@ -36,12 +35,17 @@ import org.sonar.cxx.squidbridge.SquidAstVisitor;
 /**
  * Visitor that computes {@link CoreMetrics#NCLOC_DATA_KEY} and {@link CoreMetrics#EXECUTABLE_LINES_DATA} metrics used
  * by the DevCockpit.
+ *
+ * {@link org.sonar.cxx.CxxAstScanner} adds the visitor to a {@link CxxTokenMetricsVisitor}, which classifies the
+ * tokens. Registered as AST visitor alone, the visitor classifies the tokens itself.
  */
-public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar>
+  implements AstAndTokenVisitor, CxxTokenMetricsVisitor.TokenConsumer {
 
-  private List<Integer> linesOfCode;
-  private List<Integer> executableLines;
+  private BitSet linesOfCode;
+  private BitSet executableLines;
   private int isWithinFunctionDefinition;
+  private boolean connected;
 
   private static boolean isDefaultOrDeleteFunctionBody(AstNode astNode) {
     var node = astNode.getFirstChild(CxxGrammarImpl.functionBody);
@@ -87,20 +91,14 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
     return !CxxPunctuator.CURLBR_LEFT.equals(type) && !CxxKeyword.DEFAULT.equals(type) && !CxxKeyword.CASE.equals(type);
   }
 
-  static void addLineNumber(List<Integer> collection, int lineNr) {
-    // use the fact, that we iterate over tokens from top to bottom.
-    // if the line was already visited its index was put at the end of
-    // collection.
-    //
-    // don't use Set, because Set would sort elements on each insert
-    // since we potentially insert line number for each token it would create
-    // large run-time overhead
-    //
-    // we sort/filter duplicates only once - on leaveFile(AstNode)
-    //
-    if (collection.isEmpty() || collection.get(collection.size() - 1) != lineNr) {
-      collection.add(lineNr);
-    }
+  static void addLineNumber(BitSet lines, int lineNr) {
+    // a bit per line: sorted and without duplicates, without boxing the line numbers
+    lines.set(lineNr);
+  }
+
+  @Override
+  public void setTokenMetricsVisitor(CxxTokenMetricsVisitor visitor) {
+    connected = true;
   }
 
   @Override
@@ -114,13 +112,25 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
                 CxxGrammarImpl.lambdaExpression);
   }
 
+  /**
+   * Called by the AST walker: classifies the token itself if the visitor is not added to a
+   * {@link CxxTokenMetricsVisitor}, which passes the tokens otherwise.
+   */
   @Override
   public void visitToken(Token token) {
-    if (token.getType().equals(GenericTokenType.EOF)) {
+    if (!connected) {
+      visitToken(token, CxxTokenMetricsVisitor.classify(token));
+    }
+  }
+
+  @Override
+  public void visitToken(Token token, int tokenClass) {
+    if (tokenClass == CxxTokenMetricsVisitor.EOF) {
       return;
     }
 
-    if ((isWithinFunctionDefinition != 0) && isCodeToken(token)) {
+    // DELIMITER: same as !isCodeToken(token)
+    if ((isWithinFunctionDefinition != 0) && tokenClass != CxxTokenMetricsVisitor.DELIMITER) {
       addLineNumber(linesOfCode, token.getLine());
     }
   }
@@ -155,8 +165,8 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
 
   @Override
   public void visitFile(AstNode astNode) {
-    linesOfCode = new ArrayList<>();
-    executableLines = new ArrayList<>();
+    linesOfCode = new BitSet();
+    executableLines = new BitSet();
   }
 
   @Override
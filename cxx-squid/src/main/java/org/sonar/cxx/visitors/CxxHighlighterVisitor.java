@@ -24,24 +24,44 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.Trivia;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
-import org.sonar.cxx.parser.CxxKeyword;
 import org.sonar.cxx.api.CxxMetric;
 import org.sonar.cxx.parser.CxxTokenType;
 import org.sonar.cxx.squidbridge.SquidAstVisitor;
 
-public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+/**
+ * Visitor that computes the syntax highlighting of a file.
+ *
+ * {@link org.sonar.cxx.CxxAstScanner} adds the visitor to a {@link CxxTokenMetricsVisitor}, which classifies the
+ * tokens. Registered as AST visitor alone, the visitor classifies the tokens itself.
+ */
+public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar>
+  implements AstAndTokenVisitor, CxxTokenMetricsVisitor.TokenConsumer {
+
+  private static final Pattern PREPROCESSOR_PATTERN = Pattern.compile("^[ \t]*#[ \t]*\\w+");
+
+  private Highlighting highlighting = null;
+
+  // last highlighted location of the current token: overlapping highlightings are skipped
+  private boolean hasLast;
+  private int lastStartLine;
+  private int lastStartLineOffset;
+  private int lastEndLine;
+  private int lastEndLineOffset;
 
-  private static final Pattern EOL_PATTERN = Pattern.compile("\\R");
-  private List<Highlight> highlighting = null;
+  private boolean connected;
+
+  @Override
+  public void setTokenMetricsVisitor(CxxTokenMetricsVisitor visitor) {
+    connected = true;
+  }
 
   @Override
   public void visitFile(@Nullable AstNode astNode) {
-    highlighting = new ArrayList<>();
+    highlighting = new Highlighting();
   }
 
   @Override
@@ -50,32 +70,50 @@ public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements A
     highlighting = null;
   }
 
+  /**
+   * Called by the AST walker: classifies the token itself if the visitor is not added to a
+   * {@link CxxTokenMetricsVisitor}, which passes the tokens otherwise.
+   */
   @Override
   public void visitToken(Token token) {
+    if (!connected) {
+      visitToken(token, CxxTokenMetricsVisitor.classify(token));
+    }
+  }
+
+  @Override
+  public void visitToken(Token token, int tokenClass) {
     if (!token.isGeneratedCode()) {
-      TokenLocation last = null;
-      if (token.getType().equals(CxxTokenType.NUMBER)) {
-        last = highlight(last, new TokenLocation(token), "c");
-      } else if (token.getType() instanceof CxxKeyword) {
-        last = highlight(last, new TokenLocation(token), "k");
-      } else if (token.getType().equals(CxxTokenType.CHARACTER)) {
-        last = highlight(last, new TokenLocation(token), "s");
-      } else if (token.getType().equals(CxxTokenType.STRING)) {
-        Optional<Trivia> triviaWithConcatenatedLiterals = getTriviaWithConcatenatedLiterals(token);
-        if (!triviaWithConcatenatedLiterals.isPresent()) {
-          last = highlight(last, new StringLocation(token), "s");
-        } else {
-          for (var concatenatedLiterals : triviaWithConcatenatedLiterals.get().getTokens()) {
-            last = highlight(last, new StringLocation(concatenatedLiterals), "s");
+      hasLast = false;
+      switch (tokenClass) {
+        case CxxTokenMetricsVisitor.NUMBER:
+          highlightToken(token, Highlighting.CONSTANT);
+          break;
+        case CxxTokenMetricsVisitor.KEYWORD:
+          highlightToken(token, Highlighting.KEYWORD);
+          break;
+        case CxxTokenMetricsVisitor.CHARACTER:
+          highlightToken(token, Highlighting.STRING);
+          break;
+        case CxxTokenMetricsVisitor.STRING:
+          Optional<Trivia> triviaWithConcatenatedLiterals = getTriviaWithConcatenatedLiterals(token);
+          if (!triviaWithConcatenatedLiterals.isPresent()) {
+            highlightString(token);
+          } else {
+            for (var concatenatedLiterals : triviaWithConcatenatedLiterals.get().getTokens()) {
+              highlightString(concatenatedLiterals);
+            }
           }
-        }
+          break;
+        default:
+          break;
       }
 
       for (var trivia : token.getTrivia()) {
         if (trivia.isComment()) {
-          highlight(last, new CommentLocation(trivia.getToken()), "cd");
+          highlightMultiLine(trivia.getToken(), Highlighting.COMMENT, false);
         } else if (trivia.isSkippedText() && trivia.getToken().getType().equals(CxxTokenType.PREPROCESSOR)) {
-          highlight(last, new PreprocessorDirectiveLocation(trivia.getToken()), "p");
+          highlightPreprocessorDirective(trivia.getToken());
         }
       }
     }
@@ -86,117 +124,140 @@ public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements A
       .filter(t -> t.isSkippedText() && CxxTokenType.STRING.equals(t.getToken().getType())).findFirst();
   }
 
-  private TokenLocation highlight(@Nullable TokenLocation last, TokenLocation current, String typeOfText) {
-    if (!current.overlaps(last)) {
-      highlighting.add(new Highlight(current.startLine(), current.startLineOffset(),
-                                     current.endLine(), current.endLineOffset(), typeOfText));
-    }
-
-    return current;
+  private void highlightToken(Token token, byte type) {
+    highlight(token.getLine(), token.getColumn(), token.getLine(), token.getColumn() + token.getValue().length(),
+              type, true);
   }
 
-  public static class Highlight {
-
-    public final int startLine;
-    public final int startLineOffset;
-    public final int endLine;
-    public final int endLineOffset;
-    public final String typeOfText;
-
-    Highlight(int startLine, int startLineOffset, int endLine, int endLineOffset, String typeOfText) {
-      this.startLine = startLine;
-      this.startLineOffset = startLineOffset;
-      this.endLine = endLine;
-      this.endLineOffset = endLineOffset;
-      this.typeOfText = typeOfText;
+  private void highlightString(Token token) {
+    if (token.getValue().startsWith("R")) { // Raw String?
+      highlightMultiLine(token, Highlighting.STRING, true);
+    } else {
+      highlightToken(token, Highlighting.STRING);
     }
-  };
-
-  private static class TokenLocation {
-
-    protected int startLine;
-    protected int startLineOffset;
-    protected int endLine;
-    protected int endLineOffset;
+  }
 
-    public TokenLocation(Token token) {
-      startLine = token.getLine();
-      startLineOffset = token.getColumn();
-      endLine = this.startLine;
-      endLineOffset = startLineOffset + token.getValue().length();
+  private void highlightMultiLine(Token token, byte type, boolean isLast) {
+    String value = token.getValue();
+    var endLine = token.getLine();
+    var endLineOffset = token.getColumn() + value.length();
+
+    // same as splitting at \R: the last line starts after the last line break
+    var length = value.length();
+    var lineBreaks = 0;
+    var lastLineStart = 0;
+    for (var i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (CxxTokenMetricsVisitor.isLineBreak(c)) {
+        if (c == '\r' && i + 1 < length && value.charAt(i + 1) == '\n') {
+          i++;
+        }
+        lineBreaks++;
+        lastLineStart = i + 1;
+      }
     }
-
-    public int startLine() {
-      return startLine;
+    if (lineBreaks > 0) {
+      endLine += lineBreaks;
+      endLineOffset = length - lastLineStart;
     }
 
-    public int startLineOffset() {
-      return startLineOffset;
-    }
+    highlight(token.getLine(), token.getColumn(), endLine, endLineOffset, type, isLast);
+  }
 
-    public int endLine() {
-      return endLine;
+  private void highlightPreprocessorDirective(Token token) {
+    var m = PREPROCESSOR_PATTERN.matcher(token.getValue());
+    var endLineOffset = token.getColumn();
+    if (m.find()) {
+      endLineOffset += m.end() - m.start();
     }
+    highlight(token.getLine(), token.getColumn(), token.getLine(), endLineOffset, Highlighting.PREPROCESS_DIRECTIVE,
+              false);
+  }
 
-    public int endLineOffset() {
-      return endLineOffset;
+  private void highlight(int startLine, int startLineOffset, int endLine, int endLineOffset, byte type,
+                         boolean isLast) {
+    boolean overlaps = hasLast
+                         && !(startLineOffset > lastEndLineOffset
+                              || lastStartLineOffset > endLineOffset
+                              || startLine > lastEndLine
+                              || lastStartLine > endLine);
+    if (!overlaps) {
+      highlighting.add(startLine, startLineOffset, endLine, endLineOffset, type);
     }
 
-    public boolean overlaps(@Nullable TokenLocation other) {
-      if (other != null) {
-        return !(startLineOffset() > other.endLineOffset()
-                 || other.startLineOffset() > endLineOffset()
-                 || startLine() > other.endLine()
-                 || other.startLine() > endLine());
-      }
-      return false;
+    if (isLast) {
+      hasLast = true;
+      lastStartLine = startLine;
+      lastStartLineOffset = startLineOffset;
+      lastEndLine = endLine;
+      lastEndLineOffset = endLineOffset;
     }
-
   }
 
-  private static class StringLocation extends TokenLocation {
 
-    public StringLocation(Token token) {
-      super(token);
-      String value = token.getValue();
-      if (value.startsWith("R")) { // Raw String?
-        String[] lines = EOL_PATTERN.split(value, -1);
-
-        if (lines.length > 1) {
-          endLine = token.getLine() + lines.length - 1;
-          endLineOffset = lines[lines.length - 1].length();
-        }
+  /**
+   * Highlightings of a file.
+   *
+   * Instead of an object per highlighting, the positions are stored in one array (startLine, startLineOffset, endLine,
+   * endLineOffset per highlighting) and the type of text as code.
+   */
+  public static final class Highlighting {
+
+    static final byte CONSTANT = 0;
+    static final byte KEYWORD = 1;
+    static final byte STRING = 2;
+    static final byte COMMENT = 3;
+    static final byte PREPROCESS_DIRECTIVE = 4;
+
+    // CSS classes of the types of text
+    private static final String[] TYPES_OF_TEXT = {"c", "k", "s", "cd", "p"};
+    private static final int FIELDS = 4;
+
+    private int[] positions = new int[FIELDS * 256];
+    private byte[] types = new byte[256];
+    private int size = 0;
+
+    void add(int startLine, int startLineOffset, int endLine, int endLineOffset, byte type) {
+      if (size == types.length) {
+        types = Arrays.copyOf(types, size * 2);
+        positions = Arrays.copyOf(positions, size * 2 * FIELDS);
       }
+      var offset = size * FIELDS;
+      positions[offset] = startLine;
+      positions[offset + 1] = startLineOffset;
+      positions[offset + 2] = endLine;
+      positions[offset + 3] = endLineOffset;
+      types[size] = type;
+      size++;
     }
-  }
 
-  private static class CommentLocation extends TokenLocation {
+    public int size() {
+      return size;
+    }
 
-    public CommentLocation(Token token) {
-      super(token);
-      String value = token.getValue();
-      String[] lines = EOL_PATTERN.split(value, -1);
+    public int startLine(int index) {
+      return positions[index * FIELDS];
+    }
 
-      if (lines.length > 1) {
-        endLine = token.getLine() + lines.length - 1;
-        endLineOffset = lines[lines.length - 1].length();
-      }
+    public int startLineOffset(int index) {
+      return positions[index * FIELDS + 1];
     }
-  }
 
-  private static class PreprocessorDirectiveLocation extends TokenLocation {
+    public int endLine(int index) {
+      return positions[index * FIELDS + 2];
+    }
 
-    public static final Pattern PREPROCESSOR_PATTERN = Pattern.compile("^[ \t]*#[ \t]*\\w+");
+    public int endLineOffset(int index) {
+      return positions[index * FIELDS + 3];
+    }
 
-    PreprocessorDirectiveLocation(Token token) {
-      super(token);
-      var m = PREPROCESSOR_PATTERN.matcher(token.getValue());
-      if (m.find()) {
-        endLineOffset = startLineOffset + (m.end() - m.start());
-      } else {
-        endLineOffset = startLineOffset;
-      }
+    /**
+     * @return CSS class of the type of text
+     */
+    public String typeOfText(int index) {
+      return TYPES_OF_TEXT[types[index]];
     }
+
   }
 
 }
@@ -21,7 +21,6 @@ package org.sonar.cxx.visitors;
 
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.AstNode;
-import static com.sonar.sslr.api.GenericTokenType.EOF;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.Trivia;
@@ -34,14 +33,26 @@ import org.sonar.cxx.squidbridge.api.SourceFile;
 /**
  * Visitor that computes the number of lines of code of a file.
  *
+ * {@link org.sonar.cxx.CxxAstScanner} adds the visitor to a {@link CxxTokenMetricsVisitor}, which classifies the
+ * tokens. Registered as AST visitor alone, the visitor classifies the tokens itself.
+ *
  * @param <GRAMMAR>
  */
 public class CxxLinesOfCodeVisitor<GRAMMAR extends Grammar>
-  extends SquidAstVisitor<GRAMMAR> implements AstAndTokenVisitor {
+  extends SquidAstVisitor<GRAMMAR> implements AstAndTokenVisitor, CxxTokenMetricsVisitor.TokenConsumer {
 
   public static final Pattern EOL_PATTERN = Pattern.compile("\\R");
 
   private int lastTokenLine;
+  private boolean connected;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setTokenMetricsVisitor(CxxTokenMetricsVisitor visitor) {
+    connected = true;
+  }
 
   /**
    * {@inheritDoc}
@@ -52,21 +63,32 @@ public class CxxLinesOfCodeVisitor<GRAMMAR extends Grammar>
   }
 
   /**
-   * {@inheritDoc}
+   * Called by the AST walker: classifies the token itself if the visitor is not added to a
+   * {@link CxxTokenMetricsVisitor}, which passes the tokens otherwise.
    */
   @Override
   public void visitToken(Token token) {
-    if (token.getType().equals(EOF)) {
+    if (!connected) {
+      visitToken(token, CxxTokenMetricsVisitor.classify(token));
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void visitToken(Token token, int tokenClass) {
+    if (tokenClass == CxxTokenMetricsVisitor.EOF) {
       return;
     }
 
     // handle all the lines of the token
-    String[] tokenLines = EOL_PATTERN.split(token.getValue(), -1);
+    int tokenLines = CxxTokenMetricsVisitor.countLines(token.getValue());
 
     int firstLineAlreadyCounted = lastTokenLine == token.getLine() ? 1 : 0;
-    getContext().peekSourceCode().add(CxxMetric.LINES_OF_CODE, (double) tokenLines.length - firstLineAlreadyCounted);
+    getContext().peekSourceCode().add(CxxMetric.LINES_OF_CODE, (double) tokenLines - firstLineAlreadyCounted);
 
-    lastTokenLine = token.getLine() + tokenLines.length - 1;
+    lastTokenLine = token.getLine() + tokenLines - 1;
 
     // handle comments
     for (var trivia : token.getTrivia()) {
@@ -80,8 +102,11 @@ public class CxxLinesOfCodeVisitor<GRAMMAR extends Grammar>
    * Search in comments for NOSONAR
    */
   public void visitComment(Trivia trivia) {
-    String[] commentLines = EOL_PATTERN
-      .split(getContext().getCommentAnalyser().getContents(trivia.getToken().getOriginalValue()), -1);
+    String contents = getContext().getCommentAnalyser().getContents(trivia.getToken().getOriginalValue());
+    if (!contents.contains("NOSONAR")) {
+      return;
+    }
+    String[] commentLines = EOL_PATTERN.split(contents, -1);
     int line = trivia.getToken().getLine();
 
     for (var commentLine : commentLines) {
@@ -23,6 +23,7 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.parser.CxxGrammarImpl;
@@ -37,16 +38,16 @@ public class CxxParseErrorLoggerVisitor<GRAMMAR extends Grammar> extends SquidAs
                                     + " Root cause are typically missing includes, "
                                     + "missing macros or compiler specific extensions.";
   private static final Logger LOG = Loggers.get(CxxParseErrorLoggerVisitor.class);
-  private static int errors = 0;
+  private static final AtomicInteger errors = new AtomicInteger();
 
   public static void finalReport() {
-    if (errors != 0) {
-      LOG.warn(SYNTAX_ERROR_MSG, errors);
+    if (errors.get() != 0) {
+      LOG.warn(SYNTAX_ERROR_MSG, errors.get());
     }
   }
 
   public static void resetReport() {
-    errors = 0;
+    errors.set(0);
   }
 
   @Override
@@ -56,7 +57,7 @@ public class CxxParseErrorLoggerVisitor<GRAMMAR extends Grammar> extends SquidAs
 
   @Override
   public void visitNode(AstNode node) {
-    errors++;
+    errors.incrementAndGet();
     if (!LOG.isDebugEnabled()) {
       return;
     }
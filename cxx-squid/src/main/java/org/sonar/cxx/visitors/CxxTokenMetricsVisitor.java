@@ -0,0 +1,176 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.sonar.cxx.parser.CxxKeyword;
+import org.sonar.cxx.parser.CxxPunctuator;
+import org.sonar.cxx.parser.CxxTokenType;
+import org.sonar.cxx.squidbridge.SquidAstVisitor;
+
+/**
+ * Token visitor for the token based metrics (lines of code, highlighting, CPD, NCLOC and executable lines).
+ *
+ * The AST walker calls every token visitor for every token, and each of them checks the type of the token again.
+ * Instead, this visitor is the only token visitor of these metrics: it classifies each token once and passes the
+ * token class to the {@link TokenConsumer}s, which switch on the class. The consumers are registered as AST visitors
+ * for their other events (file, nodes) as usual.
+ *
+ * The consumers of the cxx plugin are also {@link AstAndTokenVisitor}s: registered as AST visitor without being added
+ * to a CxxTokenMetricsVisitor, they classify the tokens themselves. The AST walker still calls them for every token,
+ * but a connected consumer returns immediately.
+ */
+public class CxxTokenMetricsVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+
+  /**
+   * Token classes
+   */
+  public static final int OTHER = 0;
+  public static final int EOF = 1;
+  public static final int IDENTIFIER = 2;
+  public static final int KEYWORD = 3;
+  public static final int NUMBER = 4;
+  public static final int STRING = 5;
+  public static final int CHARACTER = 6;
+  public static final int PUNCTUATOR = 7;
+  /**
+   * punctuators which are not counted as code: {@code ; ( ) { } [ ]}
+   */
+  public static final int DELIMITER = 8;
+
+  private static final Map<TokenType, Integer> TOKEN_CLASSES = new IdentityHashMap<>();
+
+  static {
+    TOKEN_CLASSES.put(GenericTokenType.EOF, EOF);
+    TOKEN_CLASSES.put(GenericTokenType.IDENTIFIER, IDENTIFIER);
+    TOKEN_CLASSES.put(CxxTokenType.NUMBER, NUMBER);
+    TOKEN_CLASSES.put(CxxTokenType.STRING, STRING);
+    TOKEN_CLASSES.put(CxxTokenType.CHARACTER, CHARACTER);
+    for (var keyword : CxxKeyword.values()) {
+      TOKEN_CLASSES.put(keyword, KEYWORD);
+    }
+    for (var punctuator : CxxPunctuator.values()) {
+      switch (punctuator) {
+        case SEMICOLON:
+        case BR_LEFT:
+        case BR_RIGHT:
+        case CURLBR_LEFT:
+        case CURLBR_RIGHT:
+        case SQBR_LEFT:
+        case SQBR_RIGHT:
+          TOKEN_CLASSES.put(punctuator, DELIMITER);
+          break;
+        default:
+          TOKEN_CLASSES.put(punctuator, PUNCTUATOR);
+          break;
+      }
+    }
+  }
+
+  private TokenConsumer[] consumers = new TokenConsumer[0];
+
+  public void addConsumer(TokenConsumer consumer) {
+    consumers = Arrays.copyOf(consumers, consumers.length + 1);
+    consumers[consumers.length - 1] = consumer;
+    consumer.setTokenMetricsVisitor(this);
+  }
+
+  @Override
+  public void visitToken(Token token) {
+    int tokenClass = classify(token);
+    for (var consumer : consumers) {
+      consumer.visitToken(token, tokenClass);
+    }
+  }
+
+  /**
+   * @param token token to classify
+   * @return class of the token (e.g. {@link #KEYWORD})
+   */
+  public static int classify(Token token) {
+    Integer tokenClass = TOKEN_CLASSES.get(token.getType());
+    return tokenClass != null ? tokenClass : OTHER;
+  }
+
+  /**
+   * Same as the line terminators of the regular expression {@code \R}.
+   */
+  static boolean isLineBreak(char c) {
+    switch (c) {
+      case '\n':
+      case '\u000B':
+      case '\u000C':
+      case '\r':
+      case '\u0085':
+      case '\u2028':
+      case '\u2029':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Number of lines of a text (same as {@code text.split("\\R", -1).length}).
+   */
+  static int countLines(String text) {
+    var lines = 1;
+    var length = text.length();
+    for (var i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (isLineBreak(c)) {
+        if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+          i++;
+        }
+        lines++;
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Visitor of the tokens classified by {@link CxxTokenMetricsVisitor}.
+   */
+  public interface TokenConsumer {
+
+    /**
+     * @param token visited token
+     * @param tokenClass class of the token, see {@link CxxTokenMetricsVisitor#classify}
+     */
+    void visitToken(Token token, int tokenClass);
+
+    /**
+     * Called when the consumer is added to a {@link CxxTokenMetricsVisitor}.
+     *
+     * @param visitor visitor which passes the tokens to this consumer
+     */
+    default void setTokenMetricsVisitor(CxxTokenMetricsVisitor visitor) {
+    }
+
+  }
+
+}
@@ -32,6 +32,7 @@ import org.sonar.cxx.config.CxxSquidConfiguration;
 import org.sonar.cxx.squidbridge.api.SourceFile;
 import org.sonar.cxx.squidbridge.api.SourceProject;
 import org.sonar.cxx.squidbridge.indexer.QueryByType;
+import org.sonar.cxx.visitors.CxxCpdVisitor;
 
 public class CxxAstScannerTest {
 
@@ -50,6 +51,28 @@ public class CxxAstScannerTest {
     assertThat(project.getInt(CxxMetric.FILES)).isEqualTo(2);
   }
 
+  @Test
+  public void fileScannedCallback() {
+    var scanner = CxxAstScanner.create(new CxxSquidConfiguration());
+    var scannedFiles = new ArrayList<String>();
+    scanner.setFileScannedCallback(sourceFile -> {
+      // data of the file is available in the callback and can be removed afterwards
+      assertThat(((CxxCpdVisitor.CpdTokens) sourceFile.getData(CxxMetric.CPD_TOKENS_DATA)).size()).isPositive();
+      sourceFile.removeMeasure(CxxMetric.CPD_TOKENS_DATA);
+      scannedFiles.add(sourceFile.getName());
+    });
+    scanner.scanFiles(new ArrayList<>(Arrays.asList(
+      new File("src/test/resources/metrics/trivial.cc"),
+      new File("src/test/resources/metrics/classes.cc")))
+    );
+
+    assertThat(scannedFiles).containsExactly("trivial.cc", "classes.cc");
+    var project = (SourceProject) scanner.getIndex().search(new QueryByType(SourceProject.class)).iterator().next();
+    assertThat(project.getInt(CxxMetric.FILES)).isEqualTo(2);
+    var file = (SourceFile) scanner.getIndex().search(new QueryByType(SourceFile.class)).iterator().next();
+    assertThat(file.getData(CxxMetric.CPD_TOKENS_DATA)).isNull();
+  }
+
   @Test
   public void comments() throws UnsupportedEncodingException, IOException {
     var tester = CxxFileTesterHelper.create("src/test/resources/metrics/comments.cc", ".", "");
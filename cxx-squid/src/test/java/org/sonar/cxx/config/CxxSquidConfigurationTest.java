@@ -283,6 +283,80 @@ public class CxxSquidConfigurationTest {
     softly.assertAll();
   }
 
+  @Test
+  public void testManyFiles() {
+    var db = new CxxSquidConfiguration();
+    for (int i = 0; i < 1000; i++) {
+      db.add("/a/b/file" + i + ".cpp", "key", "value" + i);
+    }
+    db.add("/a/b/file0.cpp", "key", "other");
+
+    var softly = new SoftAssertions();
+    softly.assertThat(db.get("/a/b/file0.cpp", "key")).isEqualTo(Optional.of("value0"));
+    softly.assertThat(db.getValues("/a/b/file0.cpp", "key")).containsExactly("value0", "other");
+    softly.assertThat(db.get("/A/B/FILE500.cpp", "key")).isEqualTo(Optional.of("value500"));
+    softly.assertThat(db.get("/a/b/file999.cpp", "key")).isEqualTo(Optional.of("value999"));
+    softly.assertThat(db.get("/a/b/file1000.cpp", "key")).isEmpty();
+    softly.assertThat(db.getChildrenValues(CxxSquidConfiguration.FILES, "key")).hasSize(1001);
+    softly.assertAll();
+  }
+
+  @Test
+  public void testFlagProfiles() {
+    var db = new CxxSquidConfiguration();
+    db.add("/a/b/c.cpp", CxxSquidConfiguration.DEFINES, "A 1");
+    db.add("/a/b/c.cpp", CxxSquidConfiguration.INCLUDE_DIRECTORIES, "/inc");
+    db.add("/a/b/d.cpp", CxxSquidConfiguration.DEFINES, "A 1");
+    db.add("/a/b/d.cpp", CxxSquidConfiguration.INCLUDE_DIRECTORIES, "/inc");
+    db.add("/a/b/e.cpp", CxxSquidConfiguration.DEFINES, "B 1");
+
+    FlagProfile profile1 = db.getFlagProfile("/a/b/c.cpp");
+    FlagProfile profile2 = db.getFlagProfile("/a/b/d.cpp");
+    FlagProfile profile3 = db.getFlagProfile("/a/b/e.cpp");
+
+    var softly = new SoftAssertions();
+    softly.assertThat(profile1.getId()).isPositive();
+    softly.assertThat(profile1.getDefines()).containsExactly("A 1");
+    softly.assertThat(profile1.getIncludeDirectories()).containsExactly("/inc");
+    softly.assertThat(profile1.getForceIncludes()).isEmpty();
+    softly.assertThat(profile2).isSameAs(profile1);
+    softly.assertThat(profile3).isNotEqualTo(profile1);
+    softly.assertThat(profile3.getId()).isNotEqualTo(profile1.getId());
+    softly.assertThat(db.getFlagProfile("/a/b/unknown.cpp")).isSameAs(FlagProfile.EMPTY);
+    softly.assertThat(db.getFlagProfile(CxxSquidConfiguration.GLOBAL)).isSameAs(FlagProfile.EMPTY);
+
+    // adding values to a file changes its profile
+    db.add("/a/b/d.cpp", CxxSquidConfiguration.FORCE_INCLUDES, "force.h");
+    FlagProfile profile4 = db.getFlagProfile("/a/b/d.cpp");
+    softly.assertThat(profile4).isNotEqualTo(profile1);
+    softly.assertThat(profile4.getForceIncludes()).containsExactly("force.h");
+    softly.assertThat(db.getValues("/a/b/d.cpp", CxxSquidConfiguration.FORCE_INCLUDES)).containsExactly("force.h");
+    softly.assertThat(db.getLevelValues("/a/b/c.cpp", CxxSquidConfiguration.DEFINES)).containsExactly("A 1");
+    softly.assertAll();
+  }
+
+  @Test
+  public void testFlagProfilesAreStoredOnce() {
+    var db = new CxxSquidConfiguration();
+    for (var file : new String[]{"/a/b/c.cpp", "/a/b/d.cpp", "/a/b/e.cpp"}) {
+      db.add(file, CxxSquidConfiguration.DEFINES, "A 1");
+      db.add(file, CxxSquidConfiguration.DEFINES, "B 1");
+      db.add(file, "key", "value");
+    }
+    var id = db.getFlagProfile("/a/b/c.cpp").getId();
+    var xml = db.toString();
+
+    var softly = new SoftAssertions();
+    softly.assertThat(xml).contains("<File path=\"/a/b/c.cpp\" profile=\"" + id + "\">");
+    softly.assertThat(xml).contains("<File path=\"/a/b/e.cpp\" profile=\"" + id + "\">");
+    // the profile with define "A 1" only is no longer referenced
+    softly.assertThat(xml).containsOnlyOnce("<Profile ");
+    softly.assertThat(xml).containsOnlyOnce("<Value>A 1</Value>");
+    softly.assertThat(db.getValues("/a/b/e.cpp", CxxSquidConfiguration.DEFINES)).containsExactly("A 1", "B 1");
+    softly.assertThat(db.get("/a/b/e.cpp", "key")).contains("value");
+    softly.assertAll();
+  }
+
   @Test
   public void testBoolean() {
     var db = new CxxSquidConfiguration();
@@ -22,13 +22,19 @@ package org.sonar.cxx.config;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class JsonCompilationDatabaseTest {
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   @Test
   public void testGlobalSettings() throws Exception {
     var squidConfig = new CxxSquidConfiguration();
@@ -246,6 +252,48 @@ public class JsonCompilationDatabaseTest {
       .contains(unifyPath("/usr/include"));
   }
 
+  @Test
+  public void testSingleCommandObject() throws Exception {
+    var squidConfig = new CxxSquidConfiguration();
+
+    var file = tmp.newFile("compile_commands.json");
+    Files.writeString(file.toPath(),
+                      "{ \"directory\": \".\", \"file\": \"single.cpp\", \"command\": \"gcc -DSINGLE -I/single\" }");
+
+    var jsonDb = new JsonCompilationDatabase(squidConfig);
+    jsonDb.parse(file);
+
+    var cwd = Paths.get(".");
+    var absPath = cwd.resolve("single.cpp");
+    var filename = absPath.toAbsolutePath().normalize().toString();
+
+    List<String> defines = squidConfig.getValues(filename, CxxSquidConfiguration.DEFINES);
+    List<String> includes = squidConfig.getValues(filename, CxxSquidConfiguration.INCLUDE_DIRECTORIES);
+
+    assertThat(defines).containsExactly("SINGLE 1");
+    assertThat(includes).containsExactly(unifyPath("/single"));
+  }
+
+  @Test
+  public void testIdenticalArgumentsAreShared() throws Exception {
+    var squidConfig = new CxxSquidConfiguration();
+
+    var file = new File("src/test/resources/jsondb/compile_commands.json");
+
+    var jsonDb = new JsonCompilationDatabase(squidConfig);
+    jsonDb.parse(file);
+
+    var cwd = Paths.get(".");
+    var file1 = cwd.resolve("test-with-arguments.cpp").toAbsolutePath().normalize().toString();
+    var file2 = cwd.resolve("test-with-arguments-as-list.cpp").toAbsolutePath().normalize().toString();
+
+    List<String> includes1 = squidConfig.getValues(file1, CxxSquidConfiguration.INCLUDE_DIRECTORIES);
+    List<String> includes2 = squidConfig.getValues(file2, CxxSquidConfiguration.INCLUDE_DIRECTORIES);
+
+    assertThat(includes1).isEqualTo(includes2);
+    assertThat(includes1.get(0)).isSameAs(includes2.get(0));
+  }
+
   @Test(expected = JsonMappingException.class)
   public void testInvalidJson() throws Exception {
     var squidConfig = new CxxSquidConfiguration();
@@ -22,12 +22,18 @@ package org.sonar.cxx.lexer;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import javax.annotation.Nullable;
 import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import org.sonar.cxx.config.CxxSquidConfiguration;
@@ -39,6 +45,12 @@ import org.sonar.cxx.squidbridge.SquidAstVisitorContext;
 
 public class CxxLexerIncludeTest {
 
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
   @Test
   public void quoted_include_without_IncludeDirectories() {
     // Quoted form / preprocessor include file search order:
@@ -140,6 +152,90 @@ public class CxxLexerIncludeTest {
     assertThat(result).isEqualTo("\"using: include/a.h\"");
   }
 
+  @Test
+  public void guarded_include_skipped_while_guard_defined() throws IOException {
+    writeHeader("g.h", "#ifndef G_H\n#define G_H\n#define VALUE 1\n#endif\n");
+
+    String result = lexWithHeaders("#include \"g.h\"\n#include \"g.h\"\nVALUE");
+    assertThat(result).isEqualTo("1");
+    assertThat(processedCount("g.h")).isEqualTo(1);
+  }
+
+  @Test
+  public void guarded_include_processed_after_undef_of_guard() throws IOException {
+    writeHeader("g.h", "#if !defined(G_H)\n#define G_H\n#define VALUE 1\n#endif\n");
+
+    String result = lexWithHeaders("#include \"g.h\"\n#undef VALUE\n#undef G_H\n#include \"g.h\"\nVALUE");
+    assertThat(result).isEqualTo("1");
+    assertThat(processedCount("g.h")).isEqualTo(2);
+  }
+
+  @Test
+  public void pragma_once_include_skipped() throws IOException {
+    writeHeader("p.h", "#pragma once\n#define VALUE 1\n");
+
+    String result = lexWithHeaders("#include \"p.h\"\n#undef VALUE\n#include \"p.h\"\nVALUE");
+    assertThat(result).isEqualTo("VALUE");
+    assertThat(processedCount("p.h")).isEqualTo(1);
+  }
+
+  @Test
+  public void unguarded_include_processed_each_time() throws IOException {
+    // X-macro like header: the result depends on the definitions before the include
+    writeHeader("x.h", "#ifdef FIRST\n#define VALUE1 1\n#else\n#define VALUE2 2\n#endif\n");
+
+    String result = lexAllWithHeaders("#define FIRST\n#include \"x.h\"\n#undef FIRST\n#include \"x.h\"\n"
+                                        + "VALUE1 VALUE2");
+    assertThat(result).isEqualTo("1 2");
+    assertThat(processedCount("x.h")).isEqualTo(2);
+  }
+
+  @Test
+  public void recursive_include_stopped() throws IOException {
+    writeHeader("r1.h", "#include \"r2.h\"\n#define VALUE1 1\n");
+    writeHeader("r2.h", "#include \"r1.h\"\n#include \"r2.h\"\n#define VALUE2 2\n");
+
+    String result = lexAllWithHeaders("#include \"r1.h\"\nVALUE1 VALUE2");
+    assertThat(result).isEqualTo("1 2");
+    assertThat(processedCount("r1.h")).isEqualTo(1);
+    assertThat(processedCount("r2.h")).isEqualTo(1);
+  }
+
+  private void writeHeader(String name, String content) throws IOException {
+    Files.writeString(new File(tempFolder.getRoot(), name).toPath(), content);
+  }
+
+  private long processedCount(String name) {
+    var message = "process include file '" + new File(tempFolder.getRoot(), name).getAbsolutePath() + "'";
+    return logTester.logs(LoggerLevel.DEBUG).stream().filter(message::equals).count();
+  }
+
+  private String lexWithHeaders(String fileContent) {
+    return lexHeaders(fileContent).get(0).getValue();
+  }
+
+  private String lexAllWithHeaders(String fileContent) {
+    var result = new StringBuilder();
+    for (var token : lexHeaders(fileContent)) {
+      if (!"EOF".equals(token.getValue())) {
+        result.append(result.length() > 0 ? " " : "").append(token.getValue());
+      }
+    }
+    return result.toString();
+  }
+
+  private List<Token> lexHeaders(String fileContent) {
+    logTester.setLevel(LoggerLevel.DEBUG);
+    var squidConfig = new CxxSquidConfiguration();
+    var file = new File(tempFolder.getRoot(), "root.cpp");
+    SquidAstVisitorContext<Grammar> context = mock(SquidAstVisitorContext.class);
+    when(context.getFile()).thenReturn(file);
+
+    var pp = new CxxPreprocessor(context, squidConfig);
+    var lexer = CxxLexer.create(squidConfig.getCharset(), pp, new JoinStringsPreprocessor());
+    return lexer.lex(fileContent);
+  }
+
   private File root() {
     return TestUtils.loadResource("/preprocessor/include");
   }
@@ -604,6 +604,14 @@ public class CxxLexerTest {
         -> assertThat(token).isValue(value.tokenValue).hasType(value.tokenType)));
   }
 
+  @Test
+  public void right_angle_brackets_with_reused_lexer() {
+    var reusedLexer = CxxLexer.create();
+    reusedLexer.lex("a < b < c");  // unclosed angle brackets must not influence the next source
+    assertThat(reusedLexer.lex("x >> y")).anySatisfy(token
+      -> assertThat(token).isValue(">>").hasType(CxxPunctuator.BW_RSHIFT));
+  }
+
   @Test
   public void blank_lines() {
     var softly = new SoftAssertions();
@@ -0,0 +1,101 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static com.sonar.sslr.api.GenericTokenType.EOF;
+import com.sonar.sslr.api.Token;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.Test;
+import org.sonar.cxx.parser.CxxLexer;
+
+public class CxxTokenConverterTest {
+
+  @Test
+  public void sameTokensAsLexer() {
+    String[] samples = {
+      "a + b * c",
+      "int x = 0x1F ; float y = 1.5f ; double z = .5e-3 ;",
+      "f ( \"string\" , 'c' , nullptr , true ) ;",
+      "a -> b . c :: d ... e ->* f",
+      "std :: vector < int > v ; a < b",
+      "std :: vector < std :: vector < int > > v ; a < ( b > c ) >",
+      "x <<= 2 ; y >>= 3 ; z = a <=> b",
+      "if ( a >= b && c != d || ! e ) { return ; }",
+      "p [ 0 ] ? q : r ; ~ s ^ t | u & v % w",
+      "class A { public : virtual ~ A ( ) ; } ;"
+    };
+
+    var softly = new SoftAssertions();
+    for (var sample : samples) {
+      List<Token> ppTokens = tokens(CppLexer.create().lex(sample));
+      List<Token> converted = CxxTokenConverter.convert(ppTokens);
+      List<Token> lexed = tokens(CxxLexer.create().lex(sample));
+
+      softly.assertThat(converted).as(sample).isNotNull();
+      if (converted != null) {
+        softly.assertThat(describe(converted)).as(sample).isEqualTo(describe(lexed));
+      }
+    }
+    softly.assertAll();
+  }
+
+  @Test
+  public void fallbackToLexer() {
+    String[] samples = {
+      "a ## b",
+      "# a",
+      "a < b >> c",
+      "import foo",
+      "u8\"string\"",
+      "\"a\" \"b\" c"
+    };
+
+    for (var sample : samples) {
+      List<Token> ppTokens = CppLexer.create().lex(sample);
+      // simulate a macro argument: all tokens serialized in one token
+      var argument = Token.builder(ppTokens.get(0)).setValueAndOriginalValue(sample).build();
+      assertThat(CxxTokenConverter.convert(List.of(argument))).as(sample).isNull();
+    }
+  }
+
+  @Test
+  public void blankTokensAreSkipped() {
+    List<Token> ppTokens = CppLexer.create().lex("a  b");
+    List<Token> converted = CxxTokenConverter.convert(ppTokens.subList(0, ppTokens.size() - 1));
+    assertThat(converted).extracting(Token::getValue).containsExactly("a", "b");
+  }
+
+  private static List<Token> tokens(List<Token> tokens) {
+    return tokens.stream()
+      .filter(t -> !t.getType().equals(EOF))
+      .collect(Collectors.toList());
+  }
+
+  private static List<String> describe(List<Token> tokens) {
+    return tokens.stream()
+      .filter(t -> !t.getValue().isBlank())
+      .map(t -> t.getType().getName() + ":" + t.getValue())
+      .collect(Collectors.toList());
+  }
+
+}
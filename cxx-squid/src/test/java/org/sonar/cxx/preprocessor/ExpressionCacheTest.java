@@ -0,0 +1,73 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.util.HashMap;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class ExpressionCacheTest {
+
+  @Test
+  public void emptyCache() {
+    var cache = new ExpressionCache();
+    assertThat(cache.get("A", name -> null)).isNull();
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void resultMatchesMacroValues() {
+    var cache = new ExpressionCache();
+    var values = new HashMap<String, String>();
+    values.put("A", "1");
+    values.put("B", null);
+    cache.put("A && !defined(B)", values, true);
+
+    Map<String, String> macros = new HashMap<>(Map.of("A", "1"));
+    assertThat(cache.get("A && !defined(B)", macros::get)).isTrue();
+    assertThat(cache.get("A && defined(B)", macros::get)).isNull();
+
+    macros.put("B", "");
+    assertThat(cache.get("A && !defined(B)", macros::get)).isNull();
+
+    cache.put("A && !defined(B)", Map.of("A", "1", "B", ""), false);
+    assertThat(cache.get("A && !defined(B)", macros::get)).isFalse();
+    macros.remove("B");
+    assertThat(cache.get("A && !defined(B)", macros::get)).isTrue();
+    assertThat(cache.size()).isEqualTo(1);
+
+    cache.clear();
+    assertThat(cache.get("A && !defined(B)", macros::get)).isNull();
+  }
+
+  @Test
+  public void variantsAreBounded() {
+    var cache = new ExpressionCache();
+    for (var i = 0; i < ExpressionCache.MAX_VARIANTS + 2; i++) {
+      cache.put("A > 1", Map.of("A", Integer.toString(i)), i > 1);
+    }
+
+    assertThat(cache.get("A > 1", name -> "1")).isFalse();
+    assertThat(cache.get("A > 1", name -> Integer.toString(ExpressionCache.MAX_VARIANTS - 1))).isTrue();
+    assertThat(cache.get("A > 1", name -> Integer.toString(ExpressionCache.MAX_VARIANTS))).isNull();
+  }
+
+}
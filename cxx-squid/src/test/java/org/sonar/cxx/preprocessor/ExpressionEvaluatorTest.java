@@ -22,6 +22,8 @@ package org.sonar.cxx.preprocessor;
 import com.sonar.sslr.api.Grammar;
 import java.io.File;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import static org.assertj.core.api.Assertions.assertThat;
 import org.assertj.core.api.SoftAssertions;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -40,7 +42,14 @@ public class ExpressionEvaluatorTest {
   }
 
   static boolean eval(String constExpr) {
-    return eval(constExpr, mock(CxxPreprocessor.class));
+    return eval(constExpr, mockPreprocessor());
+  }
+
+  static CxxPreprocessor mockPreprocessor() {
+    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    when(pp.getConstantExpressionParser()).thenReturn(CppParser.createConstantExpressionParser(StandardCharsets.UTF_8));
+    when(pp.getExpressionCache()).thenReturn(new ExpressionCache());
+    return pp;
   }
 
   @Test
@@ -248,14 +257,14 @@ public class ExpressionEvaluatorTest {
 
   @Test
   public void identifier_defined() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     when(pp.valueOf(anyString())).thenReturn("1");
     assertTrue(eval("LALA", pp));
   }
 
   @Test
   public void self_referential_identifier0() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     when(pp.valueOf("A")).thenReturn("A");
 
     var softly = new SoftAssertions();
@@ -267,7 +276,7 @@ public class ExpressionEvaluatorTest {
 
   @Test
   public void self_referential_identifier1() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     when(pp.valueOf("A")).thenReturn("B");
     when(pp.valueOf("B")).thenReturn("A");
 
@@ -276,7 +285,7 @@ public class ExpressionEvaluatorTest {
 
   @Test
   public void self_referential_identifier2() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     when(pp.valueOf("C")).thenReturn("B");
     when(pp.valueOf("B")).thenReturn("C");
     when(pp.valueOf("A")).thenReturn("B");
@@ -286,7 +295,7 @@ public class ExpressionEvaluatorTest {
 
   @Test
   public void self_referential_identifier3() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     when(pp.valueOf("C")).thenReturn("B");
     when(pp.valueOf("B")).thenReturn("C");
     when(pp.valueOf("A1")).thenReturn("1");
@@ -299,7 +308,7 @@ public class ExpressionEvaluatorTest {
   @Test
   public void self_referential_identifier4() {
     // https://gcc.gnu.org/onlinedocs/gcc-3.0.1/cpp_3.html#SEC31
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     when(pp.valueOf("x")).thenReturn("(4 + y)");
     when(pp.valueOf("y")).thenReturn("(2 * x)");
 
@@ -316,28 +325,28 @@ public class ExpressionEvaluatorTest {
 
   @Test
   public void functionlike_macro_defined_true() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     when(pp.expandFunctionLikeMacro(anyString(), anyList())).thenReturn("1");
     assertTrue(eval("has_feature(URG)", pp));
   }
 
   @Test
   public void functionlike_macro_defined_false() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     when(pp.valueOf(anyString())).thenReturn("0");
     assertFalse(eval("has_feature(URG)", pp));
   }
 
   @Test
   public void functionlike_macro_undefined() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     when(pp.valueOf(anyString())).thenReturn(null);
     assertFalse(eval("has_feature(URG)", pp));
   }
 
   @Test
   public void defined_true_without_parantheses() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     var macro = "LALA";
     when(pp.valueOf(macro)).thenReturn("1");
     assertTrue(eval("defined " + macro, pp));
@@ -350,7 +359,7 @@ public class ExpressionEvaluatorTest {
 
   @Test
   public void defined_true_with_parantheses() {
-    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    CxxPreprocessor pp = mockPreprocessor();
     var macro = "LALA";
     when(pp.valueOf(macro)).thenReturn("1");
     assertTrue(eval("defined (" + macro + ")", pp));
@@ -389,6 +398,58 @@ public class ExpressionEvaluatorTest {
     assertEquals(ExpressionEvaluator.decode("0xAAAA'bbbb"), new BigInteger("AAAAbbbb", 16));
   }
 
+  @Test
+  public void values_at_64_bit_boundaries() {
+    var softly = new SoftAssertions();
+    softly.assertThat(eval("0xFFFFFFFFFFFFFFFF == 18446744073709551615")).as("0xFFFFFFFFFFFFFFFF == 18446744073709551615").isTrue();
+    softly.assertThat(eval("0xFFFFFFFFFFFFFFFF > 0")).as("0xFFFFFFFFFFFFFFFF > 0").isTrue();
+    softly.assertThat(eval("9223372036854775807 + 1 > 9223372036854775807")).as("9223372036854775807 + 1 > 9223372036854775807").isTrue();
+    softly.assertThat(eval("-9223372036854775807 - 2 < 0")).as("-9223372036854775807 - 2 < 0").isTrue();
+    softly.assertThat(eval("4294967296 * 4294967296 == 0")).as("4294967296 * 4294967296 == 0").isFalse();
+    softly.assertThat(eval("~0 == 0xFFFFFFFFFFFFFFFF")).as("~0 == 0xFFFFFFFFFFFFFFFF").isTrue();
+    softly.assertThat(eval("~-1 == 0")).as("~-1 == 0").isTrue();
+    softly.assertThat(eval("(1 << 63) == 0x8000000000000000")).as("(1 << 63) == 0x8000000000000000").isTrue();
+    softly.assertThat(eval("(1 << 64) == 0")).as("(1 << 64) == 0").isTrue();
+    softly.assertThat(eval("(1 << 62) == 0x4000000000000000")).as("(1 << 62) == 0x4000000000000000").isTrue();
+    softly.assertThat(eval("(-8 >> 1) == -4")).as("(-8 >> 1) == -4").isTrue();
+    softly.assertThat(eval("(-8 >> 70) == -1")).as("(-8 >> 70) == -1").isTrue();
+    softly.assertThat(eval("(0 - 7) % 3 == 2")).as("(0 - 7) % 3 == 2").isTrue();
+    softly.assertThat(eval("-7 / 2 == -3")).as("-7 / 2 == -3").isTrue();
+    softly.assertAll();
+  }
+
+  @Test
+  public void cached_results_depend_on_macro_values() {
+    CxxPreprocessor pp = mockPreprocessor();
+    var cache = pp.getExpressionCache();
+    var expression = CppParser.createConstantExpressionParser(StandardCharsets.UTF_8)
+      .parse("defined(_MSC_VER) && _MSC_VER >= 1900");
+
+    assertFalse(ExpressionEvaluator.eval(pp, expression));
+    when(pp.valueOf("_MSC_VER")).thenReturn("1800");
+    assertFalse(ExpressionEvaluator.eval(pp, expression));
+    when(pp.valueOf("_MSC_VER")).thenReturn("1920");
+    assertTrue(ExpressionEvaluator.eval(pp, expression));
+    assertThat(cache.size()).isEqualTo(1);
+
+    // served from the cache
+    when(pp.getConstantExpressionParser()).thenThrow(IllegalStateException.class);
+    assertTrue(ExpressionEvaluator.eval(pp, expression));
+    when(pp.valueOf("_MSC_VER")).thenReturn(null);
+    assertFalse(ExpressionEvaluator.eval(pp, expression));
+  }
+
+  @Test
+  public void functionlike_macros_are_not_cached() {
+    CxxPreprocessor pp = mockPreprocessor();
+    var cache = pp.getExpressionCache();
+    when(pp.expandFunctionLikeMacro(anyString(), anyList())).thenReturn("1");
+    var expression = CppParser.createConstantExpressionParser(StandardCharsets.UTF_8).parse("has_feature(URG)");
+
+    assertTrue(ExpressionEvaluator.eval(pp, expression));
+    assertThat(cache.size()).isZero();
+  }
+
   @Test(expected = EvaluationException.class)
   public void throw_on_invalid_expressions() {
     eval("\"\"");
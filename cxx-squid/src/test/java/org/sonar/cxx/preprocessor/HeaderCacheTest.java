@@ -0,0 +1,167 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import com.sonar.sslr.api.AstNode;
+import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
+import com.sonar.sslr.api.Token;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.sonar.cxx.parser.CxxTokenType.PREPROCESSOR;
+
+public class HeaderCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void emptyCache() {
+    var cache = new HeaderCache();
+    assertThat(cache.get(new File("src/test/resources/codeprovider/source.hh"))).isNull();
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void getCachedDirectives() {
+    var cache = new HeaderCache();
+    var file = new File("src/test/resources/codeprovider/source.hh").getAbsoluteFile();
+    var directive = new HeaderCache.Directive(token("#define A 1"), null, null);
+    cache.put(file, List.of(directive), "hash");
+
+    assertThat(cache.get(file).getDirectives()).containsExactly(directive);
+    assertThat(cache.get(file).getContentHash()).isEqualTo("hash");
+    assertThat(cache.size()).isEqualTo(1);
+
+    cache.clear();
+    assertThat(cache.get(file)).isNull();
+  }
+
+  @Test
+  public void modifiedFileIsNotReturned() throws IOException {
+    var cache = new HeaderCache();
+    var file = tempFolder.newFile("header.h");
+    Files.writeString(file.toPath(), "#define A 1\n");
+    cache.put(file, List.of(new HeaderCache.Directive(token("#define A 1"), null, null)), "");
+
+    Files.writeString(file.toPath(), "#define A 2\n");
+    assertThat(file.setLastModified(file.lastModified() + 2000)).isTrue();
+
+    assertThat(cache.get(file)).isNull();
+  }
+
+  @Test
+  public void detectIncludeGuardMacro() {
+    var softly = new SoftAssertions();
+    softly.assertThat(guardMacro("#ifndef H", "#define H", "#include <a.h>", "#endif")).isEqualTo("H");
+    softly.assertThat(guardMacro("#if !defined(H)", "#define H", "#define A 1", "#endif")).isEqualTo("H");
+    softly.assertThat(guardMacro("#if !defined H", "#define H", "#ifdef A", "#endif", "#endif")).isEqualTo("H");
+
+    softly.assertThat(guardMacro("#ifdef H", "#define H", "#define A 1", "#endif")).isNull();
+    softly.assertThat(guardMacro("#ifndef H", "#define X", "#define A 1", "#endif")).isNull();
+    softly.assertThat(guardMacro("#ifndef H", "#define H", "#endif", "#define A 1")).isNull();
+    softly.assertThat(guardMacro("#ifndef H", "#define H", "#else", "#endif")).isNull();
+    softly.assertThat(guardMacro("#if !defined(H) && A", "#define H", "#define A 1", "#endif")).isNull();
+    softly.assertAll();
+  }
+
+  @Test
+  public void detectPragmaOnce() {
+    var softly = new SoftAssertions();
+    softly.assertThat(HeaderCache.detectGuard(directives("#pragma once", "#define A 1"))).isNotNull()
+      .extracting(HeaderCache.Guard::isPragmaOnce).isEqualTo(true);
+    softly.assertThat(HeaderCache.detectGuard(directives("#ifndef H", "#define H", "#pragma once", "#endif")))
+      .isNotNull().extracting(HeaderCache.Guard::isPragmaOnce).isEqualTo(true);
+    softly.assertThat(HeaderCache.detectGuard(directives("#ifdef A", "#pragma once", "#endif"))).isNull();
+    softly.assertThat(HeaderCache.detectGuard(directives("#pragma pack(1)", "#define A 1"))).isNull();
+    softly.assertAll();
+  }
+
+  @Test
+  public void getGuardOfCachedFile() {
+    var cache = new HeaderCache();
+    var file = new File("src/test/resources/codeprovider/source.hh").getAbsoluteFile();
+    assertThat(cache.get(file)).isNull();
+
+    cache.put(file, directives("#ifndef SOURCE_HH", "#define SOURCE_HH", "#endif"), "");
+    assertThat(cache.get(file).getGuard().getMacroName()).isEqualTo("SOURCE_HH");
+    assertThat(cache.get(file).getGuard().isPragmaOnce()).isFalse();
+  }
+
+  @Test
+  public void fullCacheDoesNotAddFiles() throws IOException {
+    var cache = new HeaderCache();
+    var directive = new HeaderCache.Directive(token("#define A 1"), null, null);
+    var large = tempFolder.newFile("large.h");
+    cache.put(large, Collections.nCopies(HeaderCache.MAX_DIRECTIVES - 1, directive), "");
+    assertThat(cache.get(large)).isNotNull();
+
+    var file = tempFolder.newFile("header.h");
+    var entry = cache.put(file, List.of(directive), "");
+    assertThat(entry.getDirectives()).containsExactly(directive);
+    assertThat(cache.get(file)).isNull();
+    assertThat(cache.size()).isEqualTo(1);
+
+    // replacing an entry releases its directives
+    cache.put(large, List.of(directive), "");
+    cache.put(file, List.of(directive), "");
+    assertThat(cache.get(file)).isNotNull();
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  private static String guardMacro(String... lines) {
+    HeaderCache.Guard guard = HeaderCache.detectGuard(directives(lines));
+    return guard != null ? guard.getMacroName() : null;
+  }
+
+  private static List<HeaderCache.Directive> directives(String... lines) {
+    var parser = CppParser.create(StandardCharsets.UTF_8);
+    var directives = new ArrayList<HeaderCache.Directive>();
+    for (var line : lines) {
+      AstNode lineAst = parser.parse(line).getFirstChild();
+      Macro macro = null;
+      if (lineAst.getType().equals(CppGrammarImpl.defineLine)) {
+        macro = new Macro(lineAst.getFirstDescendant(IDENTIFIER).getTokenValue(), null, null, false);
+      }
+      directives.add(new HeaderCache.Directive(token(line), lineAst, macro));
+    }
+    return directives;
+  }
+
+  private static Token token(String value) {
+    return Token.builder()
+      .setLine(1)
+      .setColumn(0)
+      .setURI(new File("header.h").toURI())
+      .setValueAndOriginalValue(value)
+      .setType(PREPROCESSOR)
+      .build();
+  }
+
+}
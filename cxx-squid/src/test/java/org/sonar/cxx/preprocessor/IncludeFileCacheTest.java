@@ -0,0 +1,128 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncludeFileCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void regularFiles() throws IOException {
+    var cache = new IncludeFileCache();
+    var header = tempFolder.newFile("header.h");
+    var dir = tempFolder.newFolder("sys");
+
+    assertThat(cache.isRegularFile(header)).isTrue();
+    assertThat(cache.isRegularFile(new File(tempFolder.getRoot(), "missing.h"))).isFalse();
+    assertThat(cache.isRegularFile(dir)).isFalse();
+    assertThat(cache.isRegularFile(new File(dir, "types.h"))).isFalse();
+    assertThat(cache.isRegularFile(new File(tempFolder.getRoot(), "missing/types.h"))).isFalse();
+    assertThat(cache.isRegularFile(new File(tempFolder.getRoot(), "sys/../header.h"))).isTrue();
+  }
+
+  @Test
+  public void directoriesAreListedOnce() throws IOException {
+    var cache = new IncludeFileCache();
+    var header = new File(tempFolder.getRoot(), "header.h");
+    assertThat(cache.isRegularFile(header)).isFalse();
+
+    // the file system is assumed to be unchanged during the analysis
+    assertThat(header.createNewFile()).isTrue();
+    assertThat(cache.isRegularFile(header)).isFalse();
+
+    cache.clear();
+    assertThat(cache.isRegularFile(header)).isTrue();
+  }
+
+  @Test
+  public void canonicalFiles() throws IOException {
+    var cache = new IncludeFileCache();
+    var header = tempFolder.newFile("header.h");
+    tempFolder.newFolder("sys");
+
+    assertThat(cache.getCanonicalFile(new File(tempFolder.getRoot(), "sys/../header.h")))
+      .isEqualTo(header.getCanonicalFile());
+  }
+
+  @Test
+  public void resolutionsAreSharedForSameIncludeRoots() throws IOException {
+    var cache = new IncludeFileCache();
+    var root1 = tempFolder.newFolder("a").toPath();
+    var root2 = tempFolder.newFolder("b").toPath();
+
+    var resolutions = cache.getResolutions(List.of(root1, root2));
+    assertThat(cache.getResolutions(List.of(root1, root2))).isSameAs(resolutions);
+    assertThat(cache.getResolutions(List.of(root2, root1))).isNotSameAs(resolutions);
+  }
+
+  @Test
+  public void sourceCodeProvidersShareLookups() throws IOException {
+    var cache = new IncludeFileCache();
+    var root1 = tempFolder.newFolder("a");
+    var root2 = tempFolder.newFolder("b");
+    var header = new File(root2, "header.h");
+    assertThat(header.createNewFile()).isTrue();
+    List<String> roots = List.of(root1.getPath(), root2.getPath());
+
+    var provider1 = new SourceCodeProvider(new File(tempFolder.getRoot(), "unit1.cpp"), cache);
+    provider1.setIncludeRoots(roots, tempFolder.getRoot().getPath());
+    assertThat(provider1.getSourceCodeFile("header.h", false)).isEqualTo(header.getCanonicalFile());
+    assertThat(provider1.getSourceCodeFile("missing.h", false)).isNull();
+
+    var provider2 = new SourceCodeProvider(new File(tempFolder.getRoot(), "unit2.cpp"), cache);
+    provider2.setIncludeRoots(roots, tempFolder.getRoot().getPath());
+    assertThat(provider2.getSourceCodeFile("header.h", true)).isEqualTo(header.getCanonicalFile());
+    assertThat(cache.getResolutions(provider2.getIncludeRoots())).containsOnlyKeys("header.h", "missing.h");
+  }
+
+  @Test
+  public void sourceCodeProviderRecordsAbsentFiles() throws IOException {
+    var cache = new IncludeFileCache();
+    var root1 = tempFolder.newFolder("a").getCanonicalFile();
+    var root2 = tempFolder.newFolder("b").getCanonicalFile();
+    assertThat(new File(root2, "header.h").createNewFile()).isTrue();
+    List<String> roots = List.of(root1.getPath(), root2.getPath());
+
+    var provider1 = new SourceCodeProvider(new File(tempFolder.getRoot(), "unit1.cpp"), cache);
+    provider1.setIncludeRoots(roots, tempFolder.getRoot().getPath());
+    provider1.getSourceCodeFile("header.h", false);
+    provider1.getSourceCodeFile("missing.h", false);
+    assertThat(provider1.getAbsentFiles()).containsOnly(
+      new File(root1, "header.h").getPath(), new File(root1, "missing.h").getPath(),
+      new File(root2, "missing.h").getPath());
+
+    // lookups answered by the shared resolutions are recorded as well
+    var provider2 = new SourceCodeProvider(new File(tempFolder.getRoot(), "unit2.cpp"), cache);
+    provider2.setIncludeRoots(roots, tempFolder.getRoot().getPath());
+    provider2.getSourceCodeFile("header.h", true);
+    assertThat(provider2.getAbsentFiles()).containsOnly(
+      new File(tempFolder.getRoot(), "header.h").getPath(), new File(root1, "header.h").getPath());
+  }
+
+}
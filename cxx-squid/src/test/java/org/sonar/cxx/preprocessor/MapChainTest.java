@@ -19,8 +19,10 @@
  */
 package org.sonar.cxx.preprocessor;
 
+import java.util.Map;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
 public class MapChainTest {
@@ -71,4 +73,82 @@ public class MapChainTest {
     assertEquals("v", mc.get("k"));
   }
 
+  @Test
+  public void getParentMapping() {
+    mc.put("k", "v");
+    var child = new MapChain<String, String>(mc);
+    assertEquals("v", child.get("k"));
+  }
+
+  @Test
+  public void overrideParentMapping() {
+    mc.put("k", "v");
+    var child = new MapChain<String, String>(mc);
+    assertEquals("v", child.put("k", "w"));
+    assertEquals("w", child.get("k"));
+    assertEquals("v", mc.get("k"));
+  }
+
+  @Test
+  public void removeParentMapping() {
+    mc.put("k", "v");
+    var child = new MapChain<String, String>(mc);
+    assertEquals("v", child.remove("k"));
+    assertNull(child.get("k"));
+    assertEquals("v", mc.get("k"));
+    child.put("k", "w");
+    assertEquals("w", child.get("k"));
+  }
+
+  @Test
+  public void clearParentMapping() {
+    mc.put("k", "v");
+    var child = new MapChain<String, String>(mc);
+    child.clear();
+    assertNull(child.get("k"));
+    assertTrue(child.getMap().isEmpty());
+    assertEquals("v", mc.get("k"));
+  }
+
+  @Test
+  public void disableParentMapping() {
+    mc.put("k", "v");
+    var child = new MapChain<String, String>(mc);
+    child.disable("k");
+    assertNull(child.get("k"));
+    assertEquals("v", mc.get("k"));
+    child.enable("k");
+    assertEquals("v", child.get("k"));
+  }
+
+  @Test
+  public void getMapOfAllLayers() {
+    mc.put("a", "1");
+    mc.put("b", "2");
+    var child = new MapChain<String, String>(mc);
+    child.put("b", "3");
+    child.put("c", "4");
+    child.remove("a");
+    assertEquals(Map.of("b", "3", "c", "4"), child.getMap());
+  }
+
+  @Test
+  public void putAllKeepsDisabledEntries() {
+    mc.put("a", "1");
+    var other = new MapChain<String, String>(mc);
+    other.put("b", "2");
+    other.put("c", "3");
+    other.disable("a");
+    other.disable("b");
+
+    var copy = new MapChain<String, String>();
+    copy.putAll(other);
+    assertNull(copy.get("a"));
+    assertNull(copy.get("b"));
+    assertEquals("3", copy.get("c"));
+    copy.enable("a");
+    copy.enable("b");
+    assertEquals(Map.of("a", "1", "b", "2", "c", "3"), copy.getMap());
+  }
+
 }
@@ -19,17 +19,27 @@
  */
 package org.sonar.cxx.preprocessor;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class SourceCodeProviderTest {
 
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
   private final File expected1 = new File(new File("src/test/resources/codeprovider/source.hh").getAbsolutePath());
   private final File expected2 = new File(new File("src/test/resources/codeprovider/source").getAbsolutePath());
   private final File root = new File(new File("src/test/resources/codeprovider").getAbsolutePath());
@@ -228,4 +238,35 @@ public class SourceCodeProviderTest {
                                             Charset.defaultCharset()));
   }
 
+  @Test
+  public void getting_source_code_of_large_file() throws IOException {
+    var codeProvider = new SourceCodeProvider(new File("dummy"));
+    var content = "#define A \"\u00e4\u00f6\u00fc\"\n".repeat(100_000);
+
+    var utf8 = tempFolder.newFile("large-utf-8.hh");
+    Files.write(utf8.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    assertEquals(content, codeProvider.getSourceCode(utf8, StandardCharsets.UTF_8));
+
+    var utf16 = tempFolder.newFile("large-utf-16le-bom.hh");
+    var bytes = new ByteArrayOutputStream();
+    bytes.write(new byte[]{(byte) 0xFF, (byte) 0xFE});
+    bytes.write(content.getBytes(StandardCharsets.UTF_16LE));
+    Files.write(utf16.toPath(), bytes.toByteArray());
+    assertEquals(content, codeProvider.getSourceCode(utf16, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void getting_source_code_of_file_shrunk_after_size_query() throws IOException {
+    var content = "#define A 1\n";
+    var channel = Channels.newChannel(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    var digest = SourceCodeProvider.newContentDigest();
+    assertEquals(content, SourceCodeProvider.read(channel, content.length() + 100, StandardCharsets.UTF_8, digest));
+    assertEquals(SourceCodeProvider.contentHash(content.getBytes(StandardCharsets.UTF_8)),
+                 SourceCodeProvider.toHex(digest));
+
+    var bom = new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'x'};
+    channel = Channels.newChannel(new ByteArrayInputStream(bom));
+    assertEquals("x", SourceCodeProvider.read(channel, 10, StandardCharsets.ISO_8859_1, null));
+  }
+
 }
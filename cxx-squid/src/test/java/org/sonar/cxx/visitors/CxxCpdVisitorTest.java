@@ -21,8 +21,8 @@ package org.sonar.cxx.visitors;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.api.SoftAssertions;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.cxx.CxxAstScanner;
@@ -49,8 +49,19 @@ public class CxxCpdVisitorTest {
 
   @Test
   public void testCpdTokens() throws Exception {
-    List<CxxCpdVisitor.CpdToken> data = (List<CxxCpdVisitor.CpdToken>) sourceFile.getData(CxxMetric.CPD_TOKENS_DATA);
-    assertThat(data).hasSize(391);
+    var data = (CxxCpdVisitor.CpdTokens) sourceFile.getData(CxxMetric.CPD_TOKENS_DATA);
+    assertThat(data.size()).isEqualTo(391);
+
+    // bits unixtime1(bits ld, bits ex)
+    var softly = new SoftAssertions();
+    softly.assertThat(data.text(0)).isEqualTo("unixtime1");
+    softly.assertThat(data.startLine(0)).isEqualTo(2);
+    softly.assertThat(data.startColumn(0)).isEqualTo(5);
+    softly.assertThat(data.endLine(0)).isEqualTo(2);
+    softly.assertThat(data.endColumn(0)).isEqualTo(14);
+    softly.assertThat(data.text(1)).isEqualTo("(");
+    softly.assertThat(data.startColumn(1)).isEqualTo(14);
+    softly.assertAll();
   }
 
 }
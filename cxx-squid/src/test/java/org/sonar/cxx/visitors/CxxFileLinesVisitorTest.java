@@ -21,6 +21,7 @@ package org.sonar.cxx.visitors;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -52,7 +53,7 @@ public class CxxFileLinesVisitorTest {
       58, 59, 63, 65, 67, 68, 69, 70, 71, 72, 73, 74, 75, 76, 79, 82, 84, 86, 87, 89,
       90, 95, 98, 99, 100, 102, 107, 108, 109, 110, 111, 113, 115, 118, 119, 124, 126)
       .collect(Collectors.toCollection(HashSet::new));
-    List<Integer> linesOfCode = (List<Integer>) sourceFile.getData(CxxMetric.NCLOC_DATA);
+    List<Integer> linesOfCode = lines(CxxMetric.NCLOC_DATA);
     var softly = new SoftAssertions();
     softly.assertThat(linesOfCode).containsExactlyInAnyOrderElementsOf(testLines);
     softly.assertAll();
@@ -60,10 +61,14 @@ public class CxxFileLinesVisitorTest {
 
   @Test
   public void testExecutableLinesOfCode() throws UnsupportedEncodingException, IOException {
-    List<Integer> executableLines = (List<Integer>) sourceFile.getData(CxxMetric.EXECUTABLE_LINES_DATA);
+    List<Integer> executableLines = lines(CxxMetric.EXECUTABLE_LINES_DATA);
     assertThat(executableLines).containsExactlyInAnyOrder(
       10, 26, 34, 35, 56, 59, 69, 70, 72, 73,
       75, 76, 79, 87, 90, 98, 102, 118, 119, 126);
   }
 
+  private List<Integer> lines(CxxMetric metric) {
+    return ((BitSet) sourceFile.getData(metric)).stream().boxed().collect(Collectors.toList());
+  }
+
 }
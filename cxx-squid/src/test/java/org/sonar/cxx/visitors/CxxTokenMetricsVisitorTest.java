@@ -0,0 +1,132 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.Test;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxFileTesterHelper;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.config.CxxSquidConfiguration;
+import org.sonar.cxx.parser.CxxKeyword;
+import org.sonar.cxx.parser.CxxParser;
+import org.sonar.cxx.parser.CxxPunctuator;
+import org.sonar.cxx.parser.CxxTokenType;
+import org.sonar.cxx.squidbridge.AstScanner;
+import org.sonar.cxx.squidbridge.CommentAnalyser;
+import org.sonar.cxx.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.cxx.squidbridge.api.SourceFile;
+import org.sonar.cxx.squidbridge.api.SourceProject;
+import org.sonar.cxx.squidbridge.indexer.QueryByType;
+
+public class CxxTokenMetricsVisitorTest {
+
+  @Test
+  public void testClassify() {
+    var softly = new SoftAssertions();
+    softly.assertThat(classify(GenericTokenType.EOF, "EOF")).isEqualTo(CxxTokenMetricsVisitor.EOF);
+    softly.assertThat(classify(GenericTokenType.IDENTIFIER, "a")).isEqualTo(CxxTokenMetricsVisitor.IDENTIFIER);
+    softly.assertThat(classify(CxxKeyword.CLASS, "class")).isEqualTo(CxxTokenMetricsVisitor.KEYWORD);
+    softly.assertThat(classify(CxxTokenType.NUMBER, "1")).isEqualTo(CxxTokenMetricsVisitor.NUMBER);
+    softly.assertThat(classify(CxxTokenType.STRING, "\"s\"")).isEqualTo(CxxTokenMetricsVisitor.STRING);
+    softly.assertThat(classify(CxxTokenType.CHARACTER, "'c'")).isEqualTo(CxxTokenMetricsVisitor.CHARACTER);
+    softly.assertThat(classify(CxxPunctuator.PLUS, "+")).isEqualTo(CxxTokenMetricsVisitor.PUNCTUATOR);
+    softly.assertThat(classify(CxxPunctuator.SEMICOLON, ";")).isEqualTo(CxxTokenMetricsVisitor.DELIMITER);
+    softly.assertThat(classify(CxxTokenType.PREPROCESSOR, "#define")).isEqualTo(CxxTokenMetricsVisitor.OTHER);
+    softly.assertAll();
+  }
+
+  @Test
+  public void testDelimitersAreNoCodeTokens() {
+    for (var punctuator : CxxPunctuator.values()) {
+      var token = token(punctuator, punctuator.getValue());
+      assertThat(CxxTokenMetricsVisitor.classify(token) != CxxTokenMetricsVisitor.DELIMITER)
+        .isEqualTo(CxxFileLinesVisitor.isCodeToken(token));
+    }
+  }
+
+  @Test
+  public void testCountLines() {
+    var softly = new SoftAssertions();
+    for (var text : new String[]{"", "a", "a\nb", "a\r\nb", "a\rb\n", "\n\n", "a\r\n\r\nb", "a b\u0085c"}) {
+      softly.assertThat(CxxTokenMetricsVisitor.countLines(text)).as(text).isEqualTo(text.split("\\R", -1).length);
+    }
+    softly.assertAll();
+  }
+
+  @Test
+  public void testConsumersWithoutTokenMetricsVisitor() throws IOException {
+    var squidConfig = new CxxSquidConfiguration();
+    var context = new SquidAstVisitorContextImpl<>(new SourceProject("Cxx Project"));
+    var scanner = AstScanner.<Grammar>builder(context)
+      .setBaseParser(CxxParser.create(context, squidConfig))
+      .withMetrics(CxxMetric.values())
+      .setFilesMetric(CxxMetric.FILES)
+      .setCommentAnalyser(new CommentAnalyser() {
+        @Override
+        public boolean isBlank(String line) {
+          return line.isBlank();
+        }
+
+        @Override
+        public String getContents(String comment) {
+          return comment;
+        }
+      })
+      .withSquidAstVisitor(new CxxLinesOfCodeVisitor<>())
+      .withSquidAstVisitor(new CxxCpdVisitor(squidConfig))
+      .build();
+    scanner.scanFile(new File("src/test/resources/metrics/classes.cc"));
+    var standalone = (SourceFile) scanner.getIndex().search(new QueryByType(SourceFile.class)).iterator().next();
+
+    var tester = CxxFileTesterHelper.create("src/test/resources/metrics/classes.cc", ".", "");
+    var connected = CxxAstScanner.scanSingleInputFile(tester.asInputFile());
+
+    assertThat(standalone.getInt(CxxMetric.LINES_OF_CODE))
+      .isPositive()
+      .isEqualTo(connected.getInt(CxxMetric.LINES_OF_CODE));
+    var standaloneTokens = (CxxCpdVisitor.CpdTokens) standalone.getData(CxxMetric.CPD_TOKENS_DATA);
+    var connectedTokens = (CxxCpdVisitor.CpdTokens) connected.getData(CxxMetric.CPD_TOKENS_DATA);
+    assertThat(standaloneTokens.size()).isPositive().isEqualTo(connectedTokens.size());
+  }
+
+  private static int classify(TokenType type, String value) {
+    return CxxTokenMetricsVisitor.classify(token(type, value));
+  }
+
+  private static Token token(TokenType type, String value) {
+    return Token.builder()
+      .setType(type)
+      .setValueAndOriginalValue(value)
+      .setURI(URI.create("tests://unittest"))
+      .setLine(1)
+      .setColumn(0)
+      .build();
+  }
+
+}
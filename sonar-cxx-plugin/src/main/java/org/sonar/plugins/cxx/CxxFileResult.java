@@ -0,0 +1,376 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cxx;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.CxxMetrics;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.squidbridge.api.SourceFile;
+import org.sonar.cxx.visitors.CxxCpdVisitor;
+import org.sonar.cxx.visitors.CxxHighlighterVisitor;
+import org.sonar.cxx.visitors.MultiLocatitionSquidCheck;
+
+/**
+ * Results of the analysis of one source file which are saved to the sensor context.
+ *
+ * The results are stored in a compact form (arrays of primitives and strings), independent of the checks and of the
+ * syntax tree. They can be written to and read from a stream to reuse them in an incremental analysis.
+ */
+final class CxxFileResult {
+
+  private static final Logger LOG = Loggers.get(CxxFileResult.class);
+
+  /**
+   * Metrics saved for each file, the measures are stored in this order.
+   */
+  static final List<Metric<Integer>> METRICS = List.of(
+    CoreMetrics.NCLOC,
+    CoreMetrics.STATEMENTS,
+    CoreMetrics.FUNCTIONS,
+    CoreMetrics.CLASSES,
+    CoreMetrics.COMPLEXITY,
+    CoreMetrics.COGNITIVE_COMPLEXITY,
+    CoreMetrics.COMMENT_LINES,
+    CxxMetrics.PUBLIC_API,
+    CxxMetrics.PUBLIC_UNDOCUMENTED_API,
+    CxxMetrics.COMPLEX_FUNCTIONS,
+    CxxMetrics.COMPLEX_FUNCTIONS_LOC,
+    CxxMetrics.LOC_IN_FUNCTIONS,
+    CxxMetrics.BIG_FUNCTIONS,
+    CxxMetrics.BIG_FUNCTIONS_LOC
+  );
+
+  private static final List<CxxMetric> SOURCE_METRICS = List.of(
+    CxxMetric.LINES_OF_CODE,
+    CxxMetric.STATEMENTS,
+    CxxMetric.FUNCTIONS,
+    CxxMetric.CLASSES,
+    CxxMetric.COMPLEXITY,
+    CxxMetric.COGNITIVE_COMPLEXITY,
+    CxxMetric.COMMENT_LINES,
+    CxxMetric.PUBLIC_API,
+    CxxMetric.PUBLIC_UNDOCUMENTED_API,
+    CxxMetric.COMPLEX_FUNCTIONS,
+    CxxMetric.COMPLEX_FUNCTIONS_LOC,
+    CxxMetric.LOC_IN_FUNCTIONS,
+    CxxMetric.BIG_FUNCTIONS,
+    CxxMetric.BIG_FUNCTIONS_LOC
+  );
+
+  private final int[] measures;
+  private final int[] noSonarLines;
+  private final List<Issue> issues;
+  private final int[] nclocLines;
+  private final int[] executableLines;
+  // four values per token: startLine, startColumn, endLine, endColumn
+  private final int[] cpdRanges;
+  private final String[] cpdTokens;
+  // four values per highlighting: startLine, startLineOffset, endLine, endLineOffset
+  private final int[] highlightingRanges;
+  private final String[] highlightingTypes;
+
+  private CxxFileResult(int[] measures, int[] noSonarLines, List<Issue> issues, int[] nclocLines,
+                        int[] executableLines, int[] cpdRanges, String[] cpdTokens, int[] highlightingRanges,
+                        String[] highlightingTypes) {
+    this.measures = measures;
+    this.noSonarLines = noSonarLines;
+    this.issues = issues;
+    this.nclocLines = nclocLines;
+    this.executableLines = executableLines;
+    this.cpdRanges = cpdRanges;
+    this.cpdTokens = cpdTokens;
+    this.highlightingRanges = highlightingRanges;
+    this.highlightingTypes = highlightingTypes;
+  }
+
+  /**
+   * Collect the results of an analysed source file.
+   *
+   * @param sourceFile analysed source file
+   * @param ruleOf returns the rule name of the check which created a message (null if unknown)
+   * @return results of the file
+   */
+  static CxxFileResult of(SourceFile sourceFile, Function<Object, String> ruleOf) {
+    var measures = new int[SOURCE_METRICS.size()];
+    for (var i = 0; i < measures.length; i++) {
+      measures[i] = sourceFile.getInt(SOURCE_METRICS.get(i));
+    }
+
+    var issues = new ArrayList<Issue>();
+    if (sourceFile.hasCheckMessages()) {
+      for (var message : sourceFile.getCheckMessages()) {
+        String rule = ruleOf.apply(message.getCheck());
+        if (rule != null) {
+          var line = 1;
+          if (message.getLine() != null && message.getLine() > 0) {
+            line = message.getLine();
+          }
+          issues.add(new Issue(rule, new int[]{line}, new String[]{message.getText(Locale.ENGLISH)}));
+        } else {
+          LOG.debug("Unknown rule key: %s", message);
+        }
+      }
+    }
+    if (MultiLocatitionSquidCheck.hasMultiLocationCheckMessages(sourceFile)) {
+      for (var issue : MultiLocatitionSquidCheck.getMultiLocationCheckMessages(sourceFile)) {
+        var locations = issue.getLocations();
+        var lines = new int[locations.size()];
+        var messages = new String[locations.size()];
+        for (var i = 0; i < lines.length; i++) {
+          lines[i] = Integer.parseInt(locations.get(i).getLine());
+          messages[i] = locations.get(i).getInfo();
+        }
+        issues.add(new Issue(issue.getRuleId(), lines, messages));
+      }
+    }
+
+    var cpd = (CxxCpdVisitor.CpdTokens) sourceFile.getData(CxxMetric.CPD_TOKENS_DATA);
+    var cpdSize = cpd != null ? cpd.size() : 0;
+    var cpdRanges = new int[cpdSize * 4];
+    var cpdTokens = new String[cpdSize];
+    for (var i = 0; i < cpdSize; i++) {
+      cpdRanges[i * 4] = cpd.startLine(i);
+      cpdRanges[i * 4 + 1] = cpd.startColumn(i);
+      cpdRanges[i * 4 + 2] = cpd.endLine(i);
+      cpdRanges[i * 4 + 3] = cpd.endColumn(i);
+      cpdTokens[i] = cpd.text(i);
+    }
+
+    var highlighting = (CxxHighlighterVisitor.Highlighting) sourceFile.getData(CxxMetric.HIGHLIGTHING_DATA);
+    var highlightingSize = highlighting != null ? highlighting.size() : 0;
+    var highlightingRanges = new int[highlightingSize * 4];
+    var highlightingTypes = new String[highlightingSize];
+    for (var i = 0; i < highlightingSize; i++) {
+      highlightingRanges[i * 4] = highlighting.startLine(i);
+      highlightingRanges[i * 4 + 1] = highlighting.startLineOffset(i);
+      highlightingRanges[i * 4 + 2] = highlighting.endLine(i);
+      highlightingRanges[i * 4 + 3] = highlighting.endLineOffset(i);
+      highlightingTypes[i] = highlighting.typeOfText(i);
+    }
+
+    return new CxxFileResult(measures,
+                             toArray(sourceFile.getNoSonarTagLines()),
+                             issues,
+                             lines(sourceFile, CxxMetric.NCLOC_DATA),
+                             lines(sourceFile, CxxMetric.EXECUTABLE_LINES_DATA),
+                             cpdRanges, cpdTokens, highlightingRanges, highlightingTypes);
+  }
+
+  int getMeasure(int index) {
+    return measures[index];
+  }
+
+  int[] getNoSonarLines() {
+    return noSonarLines;
+  }
+
+  List<Issue> getIssues() {
+    return issues;
+  }
+
+  int[] getNclocLines() {
+    return nclocLines;
+  }
+
+  int[] getExecutableLines() {
+    return executableLines;
+  }
+
+  int getCpdTokenCount() {
+    return cpdTokens.length;
+  }
+
+  /**
+   * @return startLine, startColumn, endLine, endColumn of token {@code i} are stored at offset {@code i * 4}
+   */
+  int[] getCpdRanges() {
+    return cpdRanges;
+  }
+
+  String getCpdToken(int index) {
+    return cpdTokens[index];
+  }
+
+  int getHighlightingCount() {
+    return highlightingTypes.length;
+  }
+
+  /**
+   * @return startLine, startLineOffset, endLine, endLineOffset of highlighting {@code i} are stored at offset
+   * {@code i * 4}
+   */
+  int[] getHighlightingRanges() {
+    return highlightingRanges;
+  }
+
+  String getHighlightingType(int index) {
+    return highlightingTypes[index];
+  }
+
+  void write(DataOutput out) throws IOException {
+    writeInts(out, measures);
+    writeInts(out, noSonarLines);
+    out.writeInt(issues.size());
+    for (var issue : issues) {
+      writeString(out, issue.rule);
+      writeInts(out, issue.lines);
+      writeStrings(out, issue.messages);
+    }
+    writeInts(out, nclocLines);
+    writeInts(out, executableLines);
+    writeInts(out, cpdRanges);
+    writeStrings(out, cpdTokens);
+    writeInts(out, highlightingRanges);
+    writeStrings(out, highlightingTypes);
+  }
+
+  static CxxFileResult read(DataInput in) throws IOException {
+    int[] measures = readInts(in);
+    if (measures.length != SOURCE_METRICS.size()) {
+      throw new IOException("unexpected number of measures: " + measures.length);
+    }
+    int[] noSonarLines = readInts(in);
+    int size = in.readInt();
+    var issues = new ArrayList<Issue>(size);
+    for (var i = 0; i < size; i++) {
+      issues.add(new Issue(readString(in), readInts(in), readStrings(in)));
+    }
+    return new CxxFileResult(measures, noSonarLines, issues, readInts(in), readInts(in), readInts(in),
+                             readStrings(in), readInts(in), readStrings(in));
+  }
+
+  private static int[] lines(SourceFile sourceFile, CxxMetric metric) {
+    var lines = (BitSet) sourceFile.getData(metric);
+    return lines != null ? lines.stream().toArray() : new int[0];
+  }
+
+  private static int[] toArray(@Nullable Collection<Integer> values) {
+    if (values == null) {
+      return new int[0];
+    }
+    var result = new int[values.size()];
+    var i = 0;
+    for (var value : values) {
+      result[i++] = value;
+    }
+    return result;
+  }
+
+  private static void writeInts(DataOutput out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (var value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(DataInput in) throws IOException {
+    var values = new int[readLength(in)];
+    for (var i = 0; i < values.length; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+
+  private static void writeStrings(DataOutput out, String[] values) throws IOException {
+    out.writeInt(values.length);
+    for (var value : values) {
+      writeString(out, value);
+    }
+  }
+
+  private static String[] readStrings(DataInput in) throws IOException {
+    var values = new String[readLength(in)];
+    for (var i = 0; i < values.length; i++) {
+      values[i] = readString(in);
+    }
+    return values;
+  }
+
+  /**
+   * Unlike {@link DataOutput#writeUTF} there is no length limit (tokens can be long string literals).
+   */
+  static void writeString(DataOutput out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInput in) throws IOException {
+    var bytes = new byte[readLength(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int readLength(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("invalid length: " + length);
+    }
+    return length;
+  }
+
+  /**
+   * Issue of a check, the first location is the primary location.
+   */
+  static final class Issue {
+
+    private final String rule;
+    private final int[] lines;
+    private final String[] messages;
+
+    private Issue(String rule, int[] lines, String[] messages) {
+      this.rule = rule;
+      this.lines = lines;
+      this.messages = messages;
+    }
+
+    String getRule() {
+      return rule;
+    }
+
+    int getLocationCount() {
+      return lines.length;
+    }
+
+    int getLine(int location) {
+      return lines[location];
+    }
+
+    String getMessage(int location) {
+      return messages[location];
+    }
+
+  }
+
+}
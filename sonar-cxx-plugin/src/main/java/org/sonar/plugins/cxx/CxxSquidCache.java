@@ -0,0 +1,346 @@
+/*
+ * C++ Community Plugin (cxx plugin)
+ * Copyright (C) 2010-2022 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cxx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.preprocessor.IncludeFileCache;
+import org.sonar.cxx.preprocessor.SourceCodeProvider;
+
+/**
+ * Persistent cache of the analysis results of the source files (incremental analysis).
+ *
+ * An entry stores the results of a source file together with a hash of the file content and flags (unit hash), the
+ * hashes of all files included by the unit (of the content read by the preprocessor) and the files the include search
+ * looked for but did not find (missing includes, include directories searched before the one containing the file).
+ * The results are reused as long as none of the included files changed and none of the absent files exists. The
+ * whole cache is invalidated if the configuration (sensor properties, active rules, plugin version) changes.
+ *
+ * Entries of files which are no longer analysed are dropped when the cache is stored.
+ */
+class CxxSquidCache {
+
+  static final String FILE_NAME = "cxx-squid-cache.bin";
+
+  private static final Logger LOG = Loggers.get(CxxSquidCache.class);
+  private static final int MAGIC = 0x43585843;
+  private static final int VERSION = 2;
+
+  private final Path file;
+  private final String configHash;
+  private final Map<String, Entry> previousEntries;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final Map<String, String> unitHashes = new HashMap<>();
+  private final Map<String, String> fileHashes = new HashMap<>();
+  private final IncludeFileCache fileCache = new IncludeFileCache();
+  // paths are shared by many entries
+  private final Map<String, String> paths = new HashMap<>();
+
+  private CxxSquidCache(Path file, String configHash, Map<String, Entry> previousEntries) {
+    this.file = file;
+    this.configHash = configHash;
+    this.previousEntries = previousEntries;
+  }
+
+  /**
+   * Read the cache of the previous analysis.
+   *
+   * @param directory directory of the cache file
+   * @param configHash hash of the current configuration, entries of a different configuration are not reused
+   * @return cache (empty if there is no cache file or it cannot be used)
+   */
+  static CxxSquidCache load(Path directory, String configHash) {
+    var file = directory.resolve(FILE_NAME);
+    var previousEntries = new HashMap<String, Entry>();
+    if (Files.isRegularFile(file)) {
+      try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        if (in.readInt() == MAGIC && in.readInt() == VERSION
+              && configHash.equals(CxxFileResult.readString(in))) {
+          var paths = new String[readSize(in)];
+          for (var i = 0; i < paths.length; i++) {
+            paths[i] = CxxFileResult.readString(in);
+          }
+          int size = readSize(in);
+          for (var i = 0; i < size; i++) {
+            String key = CxxFileResult.readString(in);
+            previousEntries.put(key, Entry.read(in, paths));
+          }
+        } else {
+          LOG.info("Incremental analysis: configuration changed, all files are analysed");
+        }
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("Incremental analysis: cannot read cache file '{}', all files are analysed: {}", file,
+                 e.getMessage());
+        previousEntries.clear();
+      }
+    }
+    return new CxxSquidCache(file, configHash, previousEntries);
+  }
+
+  /**
+   * Get the results of the previous analysis of a file.
+   *
+   * If there are results for the file, they are kept in the cache. Otherwise the unit hash is remembered for a later
+   * {@link #put}.
+   *
+   * @param key key of the file
+   * @param unitHash current hash of the content and flags of the file
+   * @return results of the previous analysis or null if the file has to be analysed
+   */
+  @CheckForNull
+  CxxFileResult get(String key, String unitHash) {
+    var entry = previousEntries.get(key);
+    if (entry != null && entry.unitHash.equals(unitHash) && includedFilesUnchanged(entry)
+          && absentFilesStillAbsent(entry)) {
+      entries.put(key, entry);
+      return entry.result;
+    }
+    unitHashes.put(key, unitHash);
+    return null;
+  }
+
+  /**
+   * Add the results of an analysed file.
+   *
+   * @param key key of the file, {@link #get} must have been called before
+   * @param includedFiles paths of the files included by the unit and the hashes of the content read by the
+   * preprocessor
+   * @param absentFiles paths of the files searched for an include but not found
+   * @param result results of the analysis
+   */
+  void put(String key, Map<String, String> includedFiles, Collection<String> absentFiles, CxxFileResult result) {
+    String unitHash = unitHashes.remove(key);
+    if (unitHash != null) {
+      var included = new String[includedFiles.size()];
+      var hashes = new String[included.length];
+      var i = 0;
+      for (var includedFile : includedFiles.entrySet()) {
+        included[i] = path(includedFile.getKey());
+        hashes[i] = includedFile.getValue();
+        i++;
+      }
+      var absent = new String[absentFiles.size()];
+      i = 0;
+      for (var absentFile : absentFiles) {
+        absent[i++] = path(absentFile);
+      }
+      entries.put(key, new Entry(unitHash, included, hashes, absent, result));
+    }
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Write the cache (all entries added by {@link #get} and {@link #put}).
+   */
+  void store() {
+    try {
+      Files.createDirectories(file.getParent());
+      var tempFile = file.resolveSibling(FILE_NAME + ".tmp");
+      try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        CxxFileResult.writeString(out, configHash);
+        var pathIds = new HashMap<String, Integer>();
+        for (var entry : entries.values()) {
+          entry.addPaths(pathIds);
+        }
+        var pathTable = new String[pathIds.size()];
+        pathIds.forEach((path, id) -> pathTable[id] = path);
+        out.writeInt(pathTable.length);
+        for (var path : pathTable) {
+          CxxFileResult.writeString(out, path);
+        }
+        out.writeInt(entries.size());
+        for (var entry : entries.entrySet()) {
+          CxxFileResult.writeString(out, entry.getKey());
+          entry.getValue().write(out, pathIds);
+        }
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOG.warn("Incremental analysis: cannot write cache file '{}': {}", file, e.getMessage());
+    }
+  }
+
+  /**
+   * Hash of the content of a file (empty if the file cannot be read), same as the hash of the content read by the
+   * preprocessor.
+   */
+  String fileHash(String path) {
+    return fileHashes.computeIfAbsent(path, key -> {
+      try {
+        return SourceCodeProvider.contentHash(Files.readAllBytes(Path.of(key)));
+      } catch (IOException | RuntimeException e) {
+        return "";
+      }
+    });
+  }
+
+  /**
+   * Hash of a list of values.
+   */
+  static String hash(Iterable<?> values) {
+    var digest = newDigest();
+    for (var value : values) {
+      digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+    return toHex(digest.digest());
+  }
+
+  private boolean includedFilesUnchanged(Entry entry) {
+    for (var i = 0; i < entry.includedFiles.length; i++) {
+      if (!entry.includedFileHashes[i].equals(fileHash(entry.includedFiles[i]))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A new file at the location of an absent file would be found by the include search (a missing include or a file
+   * shadowing the file found before).
+   */
+  private boolean absentFilesStillAbsent(Entry entry) {
+    for (var absentFile : entry.absentFiles) {
+      try {
+        if (fileCache.isRegularFile(Path.of(absentFile))) {
+          return false;
+        }
+      } catch (InvalidPathException e) {
+        // cannot exist
+      }
+    }
+    return true;
+  }
+
+  private String path(String path) {
+    return paths.computeIfAbsent(path, key -> key);
+  }
+
+  private static int readSize(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    if (size < 0) {
+      throw new IOException("invalid size: " + size);
+    }
+    return size;
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    var hex = new StringBuilder(bytes.length * 2);
+    for (var b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  private static final class Entry {
+
+    private final String unitHash;
+    private final String[] includedFiles;
+    private final String[] includedFileHashes;
+    private final String[] absentFiles;
+    private final CxxFileResult result;
+
+    private Entry(String unitHash, String[] includedFiles, String[] includedFileHashes, String[] absentFiles,
+                  CxxFileResult result) {
+      this.unitHash = unitHash;
+      this.includedFiles = includedFiles;
+      this.includedFileHashes = includedFileHashes;
+      this.absentFiles = absentFiles;
+      this.result = result;
+    }
+
+    private void addPaths(Map<String, Integer> pathIds) {
+      for (var path : includedFiles) {
+        pathIds.putIfAbsent(path, pathIds.size());
+      }
+      for (var path : absentFiles) {
+        pathIds.putIfAbsent(path, pathIds.size());
+      }
+    }
+
+    private void write(DataOutputStream out, Map<String, Integer> pathIds) throws IOException {
+      CxxFileResult.writeString(out, unitHash);
+      out.writeInt(includedFiles.length);
+      for (var i = 0; i < includedFiles.length; i++) {
+        out.writeInt(pathIds.get(includedFiles[i]));
+        CxxFileResult.writeString(out, includedFileHashes[i]);
+      }
+      out.writeInt(absentFiles.length);
+      for (var path : absentFiles) {
+        out.writeInt(pathIds.get(path));
+      }
+      result.write(out);
+    }
+
+    private static Entry read(DataInputStream in, String[] paths) throws IOException {
+      String unitHash = CxxFileResult.readString(in);
+      var includedFiles = new String[readSize(in)];
+      var includedFileHashes = new String[includedFiles.length];
+      for (var i = 0; i < includedFiles.length; i++) {
+        includedFiles[i] = path(in, paths);
+        includedFileHashes[i] = CxxFileResult.readString(in);
+      }
+      var absentFiles = new String[readSize(in)];
+      for (var i = 0; i < absentFiles.length; i++) {
+        absentFiles[i] = path(in, paths);
+      }
+      return new Entry(unitHash, includedFiles, includedFileHashes, absentFiles, CxxFileResult.read(in));
+    }
+
+    private static String path(DataInputStream in, String[] paths) throws IOException {
+      int id = in.readInt();
+      if (id < 0 || id >= paths.length) {
+        throw new IOException("invalid path: " + id);
+      }
+      return paths[id];
+    }
+
+  }
+
+}
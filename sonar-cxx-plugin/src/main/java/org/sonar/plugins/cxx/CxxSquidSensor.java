@@ -21,15 +21,23 @@ package org.sonar.plugins.cxx;
 
 import com.sonar.sslr.api.Grammar;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.PropertyType;
 import org.sonar.api.batch.fs.InputFile;
@@ -52,18 +60,15 @@ import org.sonar.api.scanner.sensor.ProjectSensor;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxAstScanner;
-import org.sonar.cxx.CxxMetrics;
 import org.sonar.cxx.api.CxxMetric;
 import org.sonar.cxx.checks.CheckList;
 import org.sonar.cxx.config.CxxSquidConfiguration;
+import org.sonar.cxx.config.FlagProfile;
 import org.sonar.cxx.config.MsBuild;
+import org.sonar.cxx.sensors.utils.CxxIssuesReportSensor;
 import org.sonar.cxx.sensors.utils.CxxUtils;
 import org.sonar.cxx.squidbridge.SquidAstVisitor;
-import org.sonar.cxx.squidbridge.api.SourceCode;
 import org.sonar.cxx.squidbridge.api.SourceFile;
-import org.sonar.cxx.squidbridge.indexer.QueryByType;
-import org.sonar.cxx.visitors.CxxCpdVisitor;
-import org.sonar.cxx.visitors.CxxHighlighterVisitor;
 import org.sonar.cxx.visitors.CxxPublicApiVisitor;
 import org.sonar.cxx.visitors.MultiLocatitionSquidCheck;
 
@@ -73,6 +78,8 @@ import org.sonar.cxx.visitors.MultiLocatitionSquidCheck;
 public class CxxSquidSensor implements ProjectSensor {
 
   public static final String SQUID_DISABLED_KEY = "sonar.cxx.squid.disabled";
+  public static final String SQUID_THREADS_KEY = "sonar.cxx.squid.threads";
+  public static final String SQUID_CACHE_DIR_KEY = "sonar.cxx.squid.cacheDir";
   public static final String DEFINES_KEY = "sonar.cxx.defines";
   public static final String INCLUDE_DIRECTORIES_KEY = "sonar.cxx.includeDirectories";
   public static final String ERROR_RECOVERY_KEY = "sonar.cxx.errorRecoveryEnabled";
@@ -87,8 +94,17 @@ public class CxxSquidSensor implements ProjectSensor {
 
   private static final Logger LOG = Loggers.get(CxxSquidSensor.class);
 
+  // per line data of a source file, not needed after the results of the file are saved
+  private static final List<CxxMetric> DATA_METRICS = List.of(
+    CxxMetric.NCLOC_DATA, CxxMetric.EXECUTABLE_LINES_DATA, CxxMetric.CPD_TOKENS_DATA, CxxMetric.HIGHLIGTHING_DATA,
+    CxxMetric.INCLUDED_FILES_DATA, CxxMetric.ABSENT_FILES_DATA
+  );
+
   private final FileLinesContextFactory fileLinesContextFactory;
+  private final CheckFactory checkFactory;
+  private final CustomCxxRulesDefinition[] customRulesDefinition;
   private final CxxChecks checks;
+  private final List<CxxChecks> workerChecks = new ArrayList<>();
   private final NoSonarFilter noSonarFilter;
 
   private SensorContext context;
@@ -109,9 +125,9 @@ public class CxxSquidSensor implements ProjectSensor {
                         CheckFactory checkFactory,
                         NoSonarFilter noSonarFilter,
                         @Nullable CustomCxxRulesDefinition[] customRulesDefinition) {
-    this.checks = CxxChecks.createCxxCheck(checkFactory)
-      .addChecks(CheckList.REPOSITORY_KEY, CheckList.getChecks())
-      .addCustomChecks(customRulesDefinition);
+    this.checkFactory = checkFactory;
+    this.customRulesDefinition = customRulesDefinition != null ? customRulesDefinition.clone() : null;
+    this.checks = createChecks();
     this.fileLinesContextFactory = fileLinesContextFactory;
     this.noSonarFilter = noSonarFilter;
   }
@@ -158,6 +174,33 @@ public class CxxSquidSensor implements ProjectSensor {
         .onQualifiers(Qualifiers.PROJECT)
         .type(PropertyType.BOOLEAN)
         .build(),
+      PropertyDefinition.builder(SQUID_THREADS_KEY)
+        .defaultValue("1")
+        .name("Squid Sensor Threads")
+        .description(
+          "Number of threads used to parse the source code and to generate the metrics."
+            + " With a value greater than `1` the source files are parsed in parallel, each thread is using its own"
+            + " preprocessor, parser and checks. `0` uses the number of available processors."
+        )
+        .category("CXX")
+        .subCategory("(1) General")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(SQUID_CACHE_DIR_KEY)
+        .name("Incremental Analysis Cache Directory")
+        .description(
+          "Directory where the analysis results of the source files are stored for the next analysis. If set, only"
+            + " source files which changed since the previous analysis (including their include files and flags) are"
+            + " parsed, the results of all other files are taken from the cache. Changing the configuration or the"
+            + " active rules invalidates the whole cache. The path may be either absolute or relative to the project"
+            + " base directory, it must not be inside the scanner working directory (which is deleted before each"
+            + " analysis). Empty (default) disables the incremental analysis."
+        )
+        .category("CXX")
+        .subCategory("(1) General")
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
       PropertyDefinition.builder(DEFINES_KEY)
         .name("(2.1) Macros")
         .description(
@@ -181,6 +224,20 @@ public class CxxSquidSensor implements ProjectSensor {
         .onQualifiers(Qualifiers.PROJECT)
         .type(PropertyType.BOOLEAN)
         .build(),
+      PropertyDefinition.builder(CxxIssuesReportSensor.REPORT_THREADS_KEY)
+        .defaultValue("1")
+        .name("Report Import Threads")
+        .description(
+          "Number of threads used to read the report files of a sensor importing issues. With a value greater"
+            + " than `1` the reports of a sensor are parsed in parallel, the issues are saved in the order of the"
+            + " reports. The lines of a single compiler report are matched in parallel. `0` uses the number of"
+            + " available processors."
+        )
+        .category("CXX")
+        .subCategory("(1) General")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
       PropertyDefinition.builder(MsBuild.REPORT_PATH_KEY)
         .name("(2.5) Path(s) to MSBuild Log(s)")
         .description(
@@ -294,31 +351,49 @@ public class CxxSquidSensor implements ProjectSensor {
   @Override
   public void execute(SensorContext context) {
     this.context = context;
+    workerChecks.clear();
 
-    // add visitor only if corresponding rule is active
-    var visitors = new ArrayList<SquidAstVisitor<Grammar>>();
-    for (var check : checks.all()) {
-      RuleKey key = checks.ruleKey(check);
-      if (key != null) {
-        if (context.activeRules().find(key) != null) {
-          visitors.add(check);
-        }
-      }
-    }
-
-    var scanner = CxxAstScanner.create(
-      createConfiguration(),
-      visitors.toArray(new SquidAstVisitor[visitors.size()])
-    );
+    var squidConfig = createConfiguration();
+    var scanner = CxxAstScanner.create(squidConfig, activeChecks(checks));
 
     Iterable<InputFile> inputFiles = context.fileSystem().inputFiles(
       context.fileSystem().predicates().and(context.fileSystem().predicates().hasLanguage("cxx"),
                                             context.fileSystem().predicates().hasType(InputFile.Type.MAIN))
     );
-    scanner.scanInputFiles(inputFiles);
 
-    Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
-    save(squidSourceFiles);
+    // incremental analysis: scan only changed files, take the results of the other files from the cache
+    CxxSquidCache cache = loadCache(squidConfig);
+    var cachedResults = new LinkedHashMap<InputFile, CxxFileResult>();
+    if (cache != null) {
+      var changedFiles = new ArrayList<InputFile>();
+      for (var inputFile : inputFiles) {
+        String path = path(inputFile);
+        CxxFileResult result = cache.get(path, unitHash(cache, squidConfig, path));
+        if (result != null) {
+          cachedResults.put(inputFile, result);
+        } else {
+          changedFiles.add(inputFile);
+        }
+      }
+      LOG.info("Incremental analysis: {} unchanged files, {} files to analyse", cachedResults.size(),
+               changedFiles.size());
+      inputFiles = changedFiles;
+    }
+
+    // save the results of each file as soon as it is scanned (the data of all files together is too large)
+    scanner.setFileScannedCallback(sourceFile -> save(sourceFile, cache));
+    scanner.scanInputFiles(inputFiles, getThreads(), () -> {
+      // each worker needs its own instances of the checks
+      var cxxChecks = createChecks();
+      workerChecks.add(cxxChecks);
+      return CxxAstScanner.create(squidConfig, activeChecks(cxxChecks));
+    });
+
+    cachedResults.forEach(this::save);
+
+    if (cache != null) {
+      cache.store();
+    }
   }
 
   @Override
@@ -326,6 +401,56 @@ public class CxxSquidSensor implements ProjectSensor {
     return getClass().getSimpleName();
   }
 
+  private CxxChecks createChecks() {
+    return CxxChecks.createCxxCheck(checkFactory)
+      .addChecks(CheckList.REPOSITORY_KEY, CheckList.getChecks())
+      .addCustomChecks(customRulesDefinition);
+  }
+
+  /**
+   * add visitor only if corresponding rule is active
+   */
+  private SquidAstVisitor<Grammar>[] activeChecks(CxxChecks cxxChecks) {
+    var visitors = new ArrayList<SquidAstVisitor<Grammar>>();
+    for (var check : cxxChecks.all()) {
+      RuleKey key = cxxChecks.ruleKey(check);
+      if (key != null) {
+        if (context.activeRules().find(key) != null) {
+          visitors.add(check);
+        }
+      }
+    }
+    return visitors.toArray(new SquidAstVisitor[visitors.size()]);
+  }
+
+  @CheckForNull
+  private RuleKey ruleKey(SquidAstVisitor<Grammar> check) {
+    RuleKey ruleKey = checks.ruleKey(check);
+    if (ruleKey == null) {
+      for (var cxxChecks : workerChecks) {
+        ruleKey = cxxChecks.ruleKey(check);
+        if (ruleKey != null) {
+          break;
+        }
+      }
+    }
+    return ruleKey;
+  }
+
+  @CheckForNull
+  private String ruleName(Object check) {
+    RuleKey key = ruleKey((SquidAstVisitor<Grammar>) check);
+    return key != null ? key.rule() : null;
+  }
+
+  private int getThreads() {
+    int threads = context.config().getInt(SQUID_THREADS_KEY).orElse(1);
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    return threads;
+  }
+
   private String[] stripValue(String key, String regex) {
     Optional<String> value = context.config().get(key);
     if (value.isPresent()) {
@@ -372,159 +497,201 @@ public class CxxSquidSensor implements ProjectSensor {
     return squidConfig;
   }
 
-  private void save(Collection<SourceCode> sourceCodeFiles) {
-    for (var sourceCodeFile : sourceCodeFiles) {
-      try {
-        var sourceFile = (SourceFile) sourceCodeFile;
-        var ioFile = new File(sourceFile.getKey());
-        InputFile inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().is(ioFile));
-
-        saveMeasures(inputFile, sourceFile);
-        saveViolations(inputFile, sourceFile);
-        saveFileLinesContext(inputFile, sourceFile);
-        saveCpdTokens(inputFile, sourceFile);
-        saveHighlighting(inputFile, sourceFile);
-      } catch (IllegalStateException e) {
-        var msg = "Cannot save all measures for file '" + sourceCodeFile.getKey() + "'";
-        CxxUtils.validateRecovery(msg, e, context.config());
+  @CheckForNull
+  private CxxSquidCache loadCache(CxxSquidConfiguration squidConfig) {
+    Optional<String> cacheDir = context.config().get(SQUID_CACHE_DIR_KEY).filter(dir -> !dir.isBlank());
+    if (cacheDir.isEmpty()) {
+      return null;
+    }
+    Path directory = context.fileSystem().baseDir().toPath().resolve(cacheDir.get().trim());
+    return CxxSquidCache.load(directory, configHash(squidConfig));
+  }
+
+  /**
+   * Hash of everything that influences the results of all files: plugin, sensor properties, global macros and include
+   * directories, active rules.
+   */
+  private String configHash(CxxSquidConfiguration squidConfig) {
+    var values = new ArrayList<Object>();
+    values.add(pluginVersion());
+    values.add(context.fileSystem().encoding());
+    for (var property : properties()) {
+      String key = property.key();
+      if (!SQUID_THREADS_KEY.equals(key) && !SQUID_CACHE_DIR_KEY.equals(key)) {
+        values.add(key + "=" + context.config().get(key).orElse(""));
       }
     }
+    values.add(squidConfig.getValues(CxxSquidConfiguration.GLOBAL, CxxSquidConfiguration.DEFINES));
+    values.add(squidConfig.getValues(CxxSquidConfiguration.GLOBAL, CxxSquidConfiguration.INCLUDE_DIRECTORIES));
+    values.add(squidConfig.getValues(CxxSquidConfiguration.GLOBAL, CxxSquidConfiguration.FORCE_INCLUDES));
+    context.activeRules().findAll().stream()
+      .map(rule -> rule.ruleKey() + new TreeMap<>(rule.params()).toString())
+      .sorted()
+      .forEach(values::add);
+    return CxxSquidCache.hash(values);
   }
 
-  private void saveMeasures(InputFile inputFile, SourceFile sourceFile) {
+  private static String pluginVersion() {
+    try {
+      var codeSource = CxxSquidSensor.class.getProtectionDomain().getCodeSource();
+      if (codeSource != null) {
+        var location = Path.of(codeSource.getLocation().toURI());
+        return location + ":" + Files.size(location) + ":" + Files.getLastModifiedTime(location);
+      }
+    } catch (IOException | URISyntaxException | RuntimeException e) {
+      LOG.debug("Cannot determine plugin location: {}", e.getMessage());
+    }
+    return "";
+  }
 
-    // NOSONAR
-    noSonarFilter.noSonarInFile(inputFile, sourceFile.getNoSonarTagLines());
-
-    // CORE METRICS
-    saveMetric(inputFile, CoreMetrics.NCLOC, sourceFile.getInt(CxxMetric.LINES_OF_CODE));
-    saveMetric(inputFile, CoreMetrics.STATEMENTS, sourceFile.getInt(CxxMetric.STATEMENTS));
-    saveMetric(inputFile, CoreMetrics.FUNCTIONS, sourceFile.getInt(CxxMetric.FUNCTIONS));
-    saveMetric(inputFile, CoreMetrics.CLASSES, sourceFile.getInt(CxxMetric.CLASSES));
-    saveMetric(inputFile, CoreMetrics.COMPLEXITY, sourceFile.getInt(CxxMetric.COMPLEXITY));
-    saveMetric(inputFile, CoreMetrics.COGNITIVE_COMPLEXITY, sourceFile.getInt(CxxMetric.COGNITIVE_COMPLEXITY));
-    saveMetric(inputFile, CoreMetrics.COMMENT_LINES, sourceFile.getInt(CxxMetric.COMMENT_LINES));
-
-    // CUSTOM METRICS
-    //
-    // non-core metrics are not aggregated automatically, see AggregateMeasureComputer
-    // below metrics are calculated by means of DensityMeasureComputer
-    //
-    // 1. PUBLIC API
-    saveMetric(inputFile, CxxMetrics.PUBLIC_API, sourceFile.getInt(CxxMetric.PUBLIC_API));
-    saveMetric(inputFile, CxxMetrics.PUBLIC_UNDOCUMENTED_API, sourceFile.getInt(CxxMetric.PUBLIC_UNDOCUMENTED_API));
-
-    // 2. FUNCTION COMPLEXITY
-    saveMetric(inputFile, CxxMetrics.COMPLEX_FUNCTIONS, sourceFile.getInt(CxxMetric.COMPLEX_FUNCTIONS));
-    saveMetric(inputFile, CxxMetrics.COMPLEX_FUNCTIONS_LOC, sourceFile.getInt(CxxMetric.COMPLEX_FUNCTIONS_LOC));
-
-    // 3. FUNCTION SIZE
-    saveMetric(inputFile, CxxMetrics.LOC_IN_FUNCTIONS, sourceFile.getInt(CxxMetric.LOC_IN_FUNCTIONS));
-    saveMetric(inputFile, CxxMetrics.BIG_FUNCTIONS, sourceFile.getInt(CxxMetric.BIG_FUNCTIONS));
-    saveMetric(inputFile, CxxMetrics.BIG_FUNCTIONS_LOC, sourceFile.getInt(CxxMetric.BIG_FUNCTIONS_LOC));
+  /**
+   * Hash of the content and the flags of a unit.
+   */
+  private static String unitHash(CxxSquidCache cache, CxxSquidConfiguration squidConfig, String path) {
+    FlagProfile profile = squidConfig.getFlagProfile(path);
+    return CxxSquidCache.hash(List.of(cache.fileHash(path), profile.getDefines(), profile.getIncludeDirectories(),
+                                      profile.getForceIncludes()));
   }
 
-  private void saveViolations(InputFile inputFile, SourceFile sourceFile) {
-    if (sourceFile.hasCheckMessages()) {
-      for (var message : sourceFile.getCheckMessages()) {
-        var line = 1;
-        if (message.getLine() != null && message.getLine() > 0) {
-          line = message.getLine();
-        }
+  private static String path(InputFile inputFile) {
+    return new File(inputFile.uri().getPath()).getAbsolutePath();
+  }
 
-        RuleKey ruleKey = checks.ruleKey((SquidAstVisitor<Grammar>) message.getCheck());
-        if (ruleKey != null) {
-          var newIssue = context.newIssue().forRule(RuleKey.of(CheckList.REPOSITORY_KEY, ruleKey.rule()));
-          var location = newIssue.newLocation()
-            .on(inputFile)
-            .at(inputFile.selectLine(line))
-            .message(message.getText(Locale.ENGLISH));
-
-          newIssue.at(location);
-          newIssue.save();
-        } else {
-          LOG.debug("Unknown rule key: %s", message);
-        }
+  /**
+   * Save the results of a scanned file and remove the data which is no longer needed from the source file (only the
+   * measures for the aggregation are kept). Called by the scanner threads after each file.
+   */
+  private synchronized void save(SourceFile sourceFile, @Nullable CxxSquidCache cache) {
+    try {
+      var ioFile = new File(sourceFile.getKey());
+      InputFile inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().is(ioFile));
+
+      var result = CxxFileResult.of(sourceFile, this::ruleName);
+      if (cache != null) {
+        var includedFiles = (Map<String, String>) sourceFile.getData(CxxMetric.INCLUDED_FILES_DATA);
+        var absentFiles = (Collection<String>) sourceFile.getData(CxxMetric.ABSENT_FILES_DATA);
+        cache.put(path(inputFile), includedFiles != null ? includedFiles : Collections.emptyMap(),
+                  absentFiles != null ? absentFiles : Collections.emptyList(), result);
+      }
+      save(inputFile, result);
+    } catch (IllegalStateException e) {
+      var msg = "Cannot save all measures for file '" + sourceFile.getKey() + "'";
+      CxxUtils.validateRecovery(msg, e, context.config());
+    } finally {
+      for (var metric : DATA_METRICS) {
+        sourceFile.removeMeasure(metric);
       }
+      sourceFile.getCheckMessages().clear();
+      MultiLocatitionSquidCheck.eraseMultilineCheckMessages(sourceFile);
+    }
+  }
+
+  private void save(InputFile inputFile, CxxFileResult result) {
+    try {
+      saveMeasures(inputFile, result);
+      saveViolations(inputFile, result);
+      saveFileLinesContext(inputFile, result);
+      saveCpdTokens(inputFile, result);
+      saveHighlighting(inputFile, result);
+    } catch (IllegalStateException e) {
+      var msg = "Cannot save all measures for file '" + inputFile + "'";
+      CxxUtils.validateRecovery(msg, e, context.config());
+    }
+  }
+
+  private void saveMeasures(InputFile inputFile, CxxFileResult result) {
+
+    // NOSONAR
+    var noSonarLines = new HashSet<Integer>();
+    for (var line : result.getNoSonarLines()) {
+      noSonarLines.add(line);
+    }
+    noSonarFilter.noSonarInFile(inputFile, noSonarLines);
+
+    // CORE METRICS and CUSTOM METRICS
+    //
+    // non-core metrics are not aggregated automatically, see AggregateMeasureComputer
+    // density metrics are calculated by means of DensityMeasureComputer
+    for (var i = 0; i < CxxFileResult.METRICS.size(); i++) {
+      saveMetric(inputFile, CxxFileResult.METRICS.get(i), result.getMeasure(i));
     }
+  }
 
-    if (MultiLocatitionSquidCheck.hasMultiLocationCheckMessages(sourceFile)) {
-      for (var issue : MultiLocatitionSquidCheck.getMultiLocationCheckMessages(sourceFile)) {
-        var newIssue = context.newIssue().forRule(RuleKey.of(CheckList.REPOSITORY_KEY, issue.getRuleId()));
-        var locationNr = 0;
-        for (var location : issue.getLocations()) {
-          final Integer line = Integer.valueOf(location.getLine());
-          final NewIssueLocation newIssueLocation = newIssue.newLocation().on(inputFile).at(inputFile.selectLine(line))
-            .message(location.getInfo());
-          if (locationNr == 0) {
-            newIssue.at(newIssueLocation);
-          } else {
-            newIssue.addLocation(newIssueLocation);
-          }
-          ++locationNr;
+  private void saveViolations(InputFile inputFile, CxxFileResult result) {
+    for (var issue : result.getIssues()) {
+      var newIssue = context.newIssue().forRule(RuleKey.of(CheckList.REPOSITORY_KEY, issue.getRule()));
+      for (var locationNr = 0; locationNr < issue.getLocationCount(); locationNr++) {
+        final NewIssueLocation newIssueLocation = newIssue.newLocation()
+          .on(inputFile)
+          .at(inputFile.selectLine(issue.getLine(locationNr)))
+          .message(issue.getMessage(locationNr));
+        if (locationNr == 0) {
+          newIssue.at(newIssueLocation);
+        } else {
+          newIssue.addLocation(newIssueLocation);
         }
-        newIssue.save();
       }
-      MultiLocatitionSquidCheck.eraseMultilineCheckMessages(sourceFile);
+      newIssue.save();
     }
   }
 
-  private void saveFileLinesContext(InputFile inputFile, SourceFile sourceFile) {
+  private void saveFileLinesContext(InputFile inputFile, CxxFileResult result) {
     // measures for the lines of file
     var fileLinesContext = fileLinesContextFactory.createFor(inputFile);
-    List<Integer> linesOfCode = (List<Integer>) sourceFile.getData(CxxMetric.NCLOC_DATA);
-    linesOfCode.stream().sequential().distinct().forEach((line) -> {
+    for (var line : result.getNclocLines()) {
       try {
         fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, 1);
       } catch (IllegalArgumentException | IllegalStateException e) {
         // ignore errors: parsing errors could lead to wrong location data
         LOG.debug("NCLOC error in file '{}' at line:{}", inputFile.filename(), line);
       }
-    });
-    List<Integer> executableLines = (List<Integer>) sourceFile.getData(CxxMetric.EXECUTABLE_LINES_DATA);
-    executableLines.stream().sequential().distinct().forEach((line) -> {
+    }
+    for (var line : result.getExecutableLines()) {
       try {
         fileLinesContext.setIntValue(CoreMetrics.EXECUTABLE_LINES_DATA_KEY, line, 1);
       } catch (IllegalArgumentException | IllegalStateException e) {
         // ignore errors: parsing errors could lead to wrong location data
         LOG.debug("EXECUTABLE LINES error in file '{}' at line:{}", inputFile.filename(), line);
       }
-    });
+    }
     fileLinesContext.save();
   }
 
-  private void saveCpdTokens(InputFile inputFile, SourceFile sourceFile) {
+  private void saveCpdTokens(InputFile inputFile, CxxFileResult result) {
     NewCpdTokens cpdTokens = context.newCpdTokens().onFile(inputFile);
 
-    List<CxxCpdVisitor.CpdToken> data = (List<CxxCpdVisitor.CpdToken>) sourceFile.getData(CxxMetric.CPD_TOKENS_DATA);
-    data.forEach((item) -> {
+    int[] ranges = result.getCpdRanges();
+    for (var i = 0; i < result.getCpdTokenCount(); i++) {
+      var offset = i * 4;
       try {
-        TextRange range = inputFile.newRange(item.startLine, item.startCol, item.endLine, item.endCol);
-        cpdTokens.addToken(range, item.token);
+        TextRange range = inputFile.newRange(ranges[offset], ranges[offset + 1], ranges[offset + 2],
+                                             ranges[offset + 3]);
+        cpdTokens.addToken(range, result.getCpdToken(i));
       } catch (IllegalArgumentException | IllegalStateException e) {
         // ignore range errors: parsing errors could lead to wrong location data
-        LOG.debug("CPD error in file '{}' at line:{}, column:{}", inputFile.filename(), item.startLine, item.startCol);
+        LOG.debug("CPD error in file '{}' at line:{}, column:{}", inputFile.filename(), ranges[offset],
+                  ranges[offset + 1]);
       }
-    });
+    }
 
     cpdTokens.save();
   }
 
-  private void saveHighlighting(InputFile inputFile, SourceFile sourceFile) {
+  private void saveHighlighting(InputFile inputFile, CxxFileResult result) {
     NewHighlighting newHighlighting = context.newHighlighting().onFile(inputFile);
 
-    List<CxxHighlighterVisitor.Highlight> data = (List<CxxHighlighterVisitor.Highlight>) sourceFile.getData(
-      CxxMetric.HIGHLIGTHING_DATA);
-    data.forEach((item) -> {
+    int[] ranges = result.getHighlightingRanges();
+    for (var i = 0; i < result.getHighlightingCount(); i++) {
+      var offset = i * 4;
       try {
-        newHighlighting.highlight(item.startLine, item.startLineOffset, item.endLine, item.endLineOffset,
-                                  TypeOfText.forCssClass(item.typeOfText));
+        newHighlighting.highlight(ranges[offset], ranges[offset + 1], ranges[offset + 2], ranges[offset + 3],
+                                  TypeOfText.forCssClass(result.getHighlightingType(i)));
       } catch (IllegalArgumentException | IllegalStateException e) {
         // ignore highlight errors: parsing errors could lead to wrong location data
         LOG.debug("Highlighting error in file '{}' at start:{}:{} end:{}:{}", inputFile.filename(),
-                  item.startLine, item.startLineOffset, item.endLine, item.endLineOffset);
+                  ranges[offset], ranges[offset + 1], ranges[offset + 2], ranges[offset + 3]);
       }
-    });
+    }
 
     newHighlighting.save();
   }
@@ -21,28 +21,46 @@ package org.sonar.plugins.cxx;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.assertj.core.api.SoftAssertions;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.rule.internal.NewActiveRule;
 import org.sonar.api.batch.sensor.cpd.internal.TokensLine;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
 import org.sonar.api.batch.sensor.issue.internal.DefaultNoSonarFilter;
+import org.sonar.api.batch.sensor.measure.Measure;
 import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.cxx.CxxMetrics;
+import org.sonar.cxx.checks.CheckList;
 
 public class CxxSquidSensorTest {
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
   private CxxSquidSensor sensor;
   private final MapSettings settings = new MapSettings();
 
@@ -245,4 +263,162 @@ public class CxxSquidSensorTest {
     assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(1);
   }
 
+  @Test
+  public void testParallelScanning() throws IOException {
+    File baseDir = TestUtils.loadResource("/org/sonar/plugins/cxx");
+    String[] files = {"cpd.cc", "highlighter.cc", "ncloc.cc", "source.cc"};
+
+    var sequentialContext = SensorContextTester.create(baseDir);
+    var parallelContext = SensorContextTester.create(baseDir);
+    settings.setProperty(CxxSquidSensor.SQUID_THREADS_KEY, 2);
+    parallelContext.setSettings(settings);
+    for (var file : files) {
+      sequentialContext.fileSystem().add(TestUtils.buildInputFile(baseDir, file));
+      parallelContext.fileSystem().add(TestUtils.buildInputFile(baseDir, file));
+    }
+
+    // checks with issues in the files, each worker needs its own instances
+    var activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "TooLongLine"))
+        .setParam("maximumLineLength", "40")
+        .build())
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "TooManyStatementsPerLine"))
+        .build())
+      .build();
+    sequentialContext.setActiveRules(activeRules);
+    parallelContext.setActiveRules(activeRules);
+    var checkFactory = new CheckFactory(activeRules);
+    newSensor(checkFactory).execute(sequentialContext);
+    newSensor(checkFactory).execute(parallelContext);
+
+    var softly = new SoftAssertions();
+    for (var file : files) {
+      var key = "ProjectKey:" + file;
+      softly.assertThat(measures(sequentialContext, key)).as(key).isNotEmpty();
+      softly.assertThat(measures(parallelContext, key)).as(key).isEqualTo(measures(sequentialContext, key));
+      softly.assertThat(cpdTokens(parallelContext, key)).as(key).isEqualTo(cpdTokens(sequentialContext, key));
+    }
+    softly.assertThat(issues(sequentialContext)).isNotEmpty();
+    softly.assertThat(issues(parallelContext)).isEqualTo(issues(sequentialContext));
+    softly.assertAll();
+  }
+
+  @Test
+  public void testIncrementalAnalysis() throws IOException {
+    File baseDir = tmp.newFolder("project");
+    var header = new File(baseDir, "statements.h");
+    Files.writeString(header.toPath(), "#define STATEMENTS a = 1; b = 2;\n");
+    Files.writeString(new File(baseDir, "source.cc").toPath(),
+                      "#include \"statements.h\"\nvoid f() {\n  int a, b;\n  STATEMENTS\n}\n");
+    settings.setProperty(CxxSquidSensor.SQUID_CACHE_DIR_KEY, tmp.newFolder("cache").getAbsolutePath());
+    var key = "ProjectKey:source.cc";
+
+    // first analysis: file is parsed
+    var first = executeIncremental(baseDir, "source.cc");
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Incremental analysis: 0 unchanged files, 1 files to analyse");
+    int statements = first.measure(key, CoreMetrics.STATEMENTS).value();
+
+    // nothing changed: results are taken from the cache
+    logTester.clear();
+    var second = executeIncremental(baseDir, "source.cc");
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Incremental analysis: 1 unchanged files, 0 files to analyse");
+    var softly = new SoftAssertions();
+    softly.assertThat(second.measure(key, CoreMetrics.STATEMENTS).value()).isEqualTo(statements);
+    softly.assertThat(second.measure(key, CoreMetrics.NCLOC).value())
+      .isEqualTo(first.measure(key, CoreMetrics.NCLOC).value());
+    softly.assertThat(second.cpdTokens(key)).hasSameSizeAs(first.cpdTokens(key));
+    softly.assertThat(second.highlightingTypeAt(key, 2, 0)).isEqualTo(first.highlightingTypeAt(key, 2, 0));
+    softly.assertAll();
+
+    // included file changed: file is parsed again
+    logTester.clear();
+    Files.writeString(header.toPath(), "#define STATEMENTS a = 1;\n");
+    var third = executeIncremental(baseDir, "source.cc");
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Incremental analysis: 0 unchanged files, 1 files to analyse");
+    assertThat(third.measure(key, CoreMetrics.STATEMENTS).value()).isEqualTo(statements - 1);
+  }
+
+  @Test
+  public void testIncrementalAnalysisMissingIncludeAdded() throws IOException {
+    File baseDir = tmp.newFolder("project");
+    Files.writeString(new File(baseDir, "source.cc").toPath(),
+                      "#include \"config.h\"\nvoid f() {\n  int a, b;\n  a = 1;\n#ifdef EXTRA\n  b = 2;\n#endif\n}\n");
+    settings.setProperty(CxxSquidSensor.SQUID_CACHE_DIR_KEY, tmp.newFolder("cache").getAbsolutePath());
+    var key = "ProjectKey:source.cc";
+
+    var first = executeIncremental(baseDir, "source.cc");
+    int statements = first.measure(key, CoreMetrics.STATEMENTS).value();
+
+    // include was missing and exists now: file is parsed again
+    logTester.clear();
+    Files.writeString(new File(baseDir, "config.h").toPath(), "#define EXTRA\n");
+    var second = executeIncremental(baseDir, "source.cc");
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Incremental analysis: 0 unchanged files, 1 files to analyse");
+    assertThat(second.measure(key, CoreMetrics.STATEMENTS).value()).isEqualTo(statements + 1);
+  }
+
+  @Test
+  public void testIncrementalAnalysisIncludeShadowed() throws IOException {
+    File baseDir = tmp.newFolder("project");
+    var inc1 = new File(baseDir, "inc1");
+    var inc2 = new File(baseDir, "inc2");
+    assertThat(inc1.mkdir() && inc2.mkdir()).isTrue();
+    Files.writeString(new File(inc2, "statements.h").toPath(), "#define STATEMENTS a = 1;\n");
+    Files.writeString(new File(baseDir, "source.cc").toPath(),
+                      "#include <statements.h>\nvoid f() {\n  int a, b;\n  STATEMENTS\n}\n");
+    settings.setProperty(CxxSquidSensor.SQUID_CACHE_DIR_KEY, tmp.newFolder("cache").getAbsolutePath());
+    settings.setProperty(CxxSquidSensor.INCLUDE_DIRECTORIES_KEY,
+                         inc1.getAbsolutePath() + "," + inc2.getAbsolutePath());
+    var key = "ProjectKey:source.cc";
+
+    var first = executeIncremental(baseDir, "source.cc");
+    int statements = first.measure(key, CoreMetrics.STATEMENTS).value();
+
+    // new header in an include directory searched first: file is parsed again
+    logTester.clear();
+    Files.writeString(new File(inc1, "statements.h").toPath(), "#define STATEMENTS a = 1; b = 2;\n");
+    var second = executeIncremental(baseDir, "source.cc");
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Incremental analysis: 0 unchanged files, 1 files to analyse");
+    assertThat(second.measure(key, CoreMetrics.STATEMENTS).value()).isEqualTo(statements + 1);
+  }
+
+  private static CxxSquidSensor newSensor(CheckFactory checkFactory) {
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(Mockito.any(InputFile.class))).thenReturn(mock(FileLinesContext.class));
+    return new CxxSquidSensor(fileLinesContextFactory, checkFactory, new DefaultNoSonarFilter(), null);
+  }
+
+  private static Map<String, Object> measures(SensorContextTester context, String key) {
+    return context.measures(key).stream()
+      .collect(Collectors.toMap(measure -> measure.metric().key(), Measure::value));
+  }
+
+  private static List<String> cpdTokens(SensorContextTester context, String key) {
+    return context.cpdTokens(key).stream()
+      .map(line -> line.getStartLine() + ":" + line.getValue())
+      .collect(Collectors.toList());
+  }
+
+  private static List<String> issues(SensorContextTester context) {
+    return context.allIssues().stream()
+      .map(issue -> {
+        var location = issue.primaryLocation();
+        var range = location.textRange();
+        return location.inputComponent().key() + ":" + (range != null ? range.start().line() : 0) + " "
+                 + issue.ruleKey() + " " + location.message();
+      })
+      .sorted()
+      .collect(Collectors.toList());
+  }
+
+  private SensorContextTester executeIncremental(File baseDir, String file) throws IOException {
+    var context = SensorContextTester.create(baseDir);
+    context.setSettings(settings);
+    context.fileSystem().add(TestUtils.buildInputFile(baseDir, file));
+    sensor.execute(context);
+    return context;
+  }
+
 }